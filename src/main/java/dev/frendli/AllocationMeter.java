@@ -0,0 +1,152 @@
+package dev.frendli;
+
+/**
+ * The allocation meter - accounts for the approximate number of bytes
+ * allocated for the values of a program (texts, environments, functions)
+ * and aborts the program with a RuntimeError once its quota is exceeded.
+ * The quota is a budget for all allocations rather than a limit of the
+ * memory in use, as memory no longer used is never credited (which would
+ * need to know when values become garbage), though reused objects (e.g.
+ * pooled frames) are not accounted for again.
+ * The sizes are estimates of the objects allocated (assuming a 64-bit JVM
+ * with compressed references) rather than measurements, so accounting only
+ * costs an addition and a comparison.
+ */
+public class AllocationMeter {
+    /**
+     * The quota when unlimited.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    /**
+     * Approximate size of an environment (including its first inline bindings).
+     */
+    public static final int ENVIRONMENT_BYTES = 96;
+    /**
+     * Approximate size of a user-defined function (closure).
+     */
+    public static final int FUNCTION_BYTES = 24;
+    /**
+     * Approximate size of a call (its list of arguments).
+     */
+    public static final int CALL_BYTES = 40;
+    /**
+     * Approximate size of a text, excluding its characters.
+     */
+    public static final int TEXT_BYTES = 40;
+    /**
+     * Approximate size of a task (its interpreter and future, excluding
+     * its thread, whose number is limited by the max number of tasks).
+     */
+    public static final int TASK_BYTES = 512;
+    /**
+     * Max number of bytes the program may allocate.
+     */
+    private final long quota;
+    /**
+     * Number of bytes allocated so far.
+     */
+    private long allocated;
+    /**
+     * Number of bytes allocated before this meter was forked
+     * (not yet accounted for by the meter forked from).
+     */
+    private final long forkedAllocated;
+
+    public AllocationMeter(long quota) {
+        this(quota, 0);
+    }
+
+    private AllocationMeter(long quota, long allocated) {
+        this.quota = quota;
+        this.allocated = allocated;
+        this.forkedAllocated = allocated;
+    }
+
+    /**
+     * Create a meter for a task running in parallel with others (e.g. the
+     * repetitions of "repeat parallel"), so that no counter is shared
+     * between threads. The meter starts from the bytes allocated so far.
+     *
+     * @return The forked meter.
+     */
+    public AllocationMeter fork() {
+        return new AllocationMeter(quota, allocated);
+    }
+
+    /**
+     * Account for the bytes allocated by a forked meter once its task is
+     * done. (The tasks together may exceed the quota before it is verified.)
+     *
+     * @param forked The forked meter.
+     */
+    public void join(AllocationMeter forked) {
+        allocated += forked.allocated - forked.forkedAllocated;
+    }
+
+    /**
+     * Account for an allocation and verify that the quota is not exceeded.
+     *
+     * @param bytes The approximate number of bytes allocated.
+     * @param location The position of the nearest token.
+     */
+    public void allocate(long bytes, long location) {
+        allocated += bytes;
+        check(location);
+    }
+
+    /**
+     * Concatenate two texts, accounting for the text allocated. Long texts
+     * are usually concatenated into ropes in place, which only allocate the
+     * characters appended, unless their builder is grown or copied (see Rope).
+     *
+     * @param left The left text (a string or a rope).
+     * @param right The right text (a string or a rope).
+     * @param location The position of the operator.
+     * @return The concatenated text (a string or a rope).
+     */
+    public Object concatenate(Object left, Object right, long location) {
+        Object text = Rope.concatenate(left, right);
+        allocate(TEXT_BYTES + Rope.allocatedLengthOf(text), location);
+
+        return text;
+    }
+
+    /**
+     * Account for an allocation without a location to report. (The
+     * quota is verified at the next allocation or check with a location.)
+     *
+     * @param bytes The approximate number of bytes allocated.
+     */
+    public void record(long bytes) {
+        allocated += bytes;
+    }
+
+    /**
+     * Verify that the quota is not exceeded and throw a RuntimeError if it is.
+     *
+     * @param location The position of the nearest token.
+     */
+    public void check(long location) {
+        if (allocated > quota) {
+            throw new LimitError(location, ExitCode.ALLOCATION_LIMIT_ERROR, "The program has allocated more memory in total than it is allowed to (" + quota + " bytes).");
+        }
+    }
+
+    /**
+     * Get the number of bytes allocated so far.
+     *
+     * @return The number of bytes.
+     */
+    public long getAllocated() {
+        return allocated;
+    }
+
+    /**
+     * Get the max number of bytes the program may allocate.
+     *
+     * @return The quota.
+     */
+    public long getQuota() {
+        return quota;
+    }
+}
@@ -0,0 +1,280 @@
+package dev.frendli;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The batch runner - runs every Frendli program in a directory tree in
+ * one JVM, concurrently on a bounded pool of threads. Each program runs
+ * in a context of its own (see FrendliContext) whose output and errors
+ * are captured, and the result of each program is handed over as soon as
+ * it is done. Each program has a time limit (by default DEFAULT_MAX_MILLISECONDS),
+ * and a program still running well after its limit is cancelled, so that
+ * no program holds up the batch.
+ */
+public class BatchRunner {
+    /**
+     * Number of programs per running program that have started and
+     * take turns running (see Scheduler). The other programs wait to start.
+     */
+    private static final int STARTED_PROGRAMS_PER_THREAD = 16;
+    /**
+     * Default max number of milliseconds each program may run for.
+     */
+    public static final long DEFAULT_MAX_MILLISECONDS = 10_000;
+    /**
+     * Number of milliseconds a program may keep running after its time
+     * limit (which it aborts at by itself) before it is cancelled.
+     */
+    private static final long CANCEL_GRACE_MILLISECONDS = 1_000;
+    /**
+     * Number of milliseconds between verifications of the programs running
+     * for too long.
+     */
+    private static final long CANCEL_CHECK_MILLISECONDS = 100;
+    /**
+     * The engine creating the context of each program.
+     */
+    private final FrendliEngine engine;
+    /**
+     * Max number of programs running at the same time.
+     */
+    private final int threadCount;
+    /**
+     * Number of milliseconds after which a program still running is cancelled.
+     */
+    private final long cancelMilliseconds;
+
+    public BatchRunner(FrendliEngine engine, int threadCount) {
+        this.engine = engine;
+        this.threadCount = threadCount;
+        // Without a scheduler, all programs started would run at the same time.
+        if (engine.getScheduler() == null) {
+            engine.setScheduler(new Scheduler(threadCount));
+        }
+        // Without a time limit, a program running forever would never be done.
+        if (engine.getMaxMilliseconds() == Interpreter.UNLIMITED) {
+            engine.setMaxMilliseconds(DEFAULT_MAX_MILLISECONDS);
+        }
+        cancelMilliseconds = Math.min(engine.getMaxMilliseconds(), Long.MAX_VALUE - CANCEL_GRACE_MILLISECONDS) + CANCEL_GRACE_MILLISECONDS;
+    }
+
+    /**
+     * Run all programs (".frendli" files) in a directory and its subdirectories.
+     *
+     * @param directory The directory.
+     * @param handler The handler of each result, called (on the calling thread)
+     *                in the order the programs are done.
+     * @return The number of programs run.
+     * @throws IOException If the directory cannot be read.
+     */
+    public int run(Path directory, Consumer<Result> handler) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(directory)) {
+            paths = files
+                .filter(path -> Files.isRegularFile(path) && path.toString().toLowerCase().endsWith(".frendli"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        // The programs are CPU-bound, so no more run at the same time than
+        // there are threads (cores). More programs are started, though, and
+        // take turns (time slices) running, so that short programs do not
+        // wait behind long ones for the whole of their runs.
+        long startedCount = (long)threadCount * STARTED_PROGRAMS_PER_THREAD;
+        ExecutorService executor = Executors.newFixedThreadPool((int)Math.max(1, Math.min(startedCount, paths.size())));
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        try {
+            Map<Future<Result>, Program> pending = new HashMap<>();
+            for (Path path : paths) {
+                Program program = new Program(directory.relativize(path).toString());
+                pending.put(completion.submit(() -> runProgram(program, path)), program);
+            }
+
+            while (!pending.isEmpty()) {
+                Future<Result> future = completion.poll(CANCEL_CHECK_MILLISECONDS, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    cancelOverdue(pending, handler);
+                }
+                // Cancelled programs are already handled.
+                else if (pending.remove(future) != null) {
+                    handler.accept(future.get());
+                }
+            }
+
+            return paths.size();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The batch was interrupted.", e);
+        }
+        catch (ExecutionException e) {
+            // Programs never throw (their errors are part of the results).
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Cancel the programs running for longer than allowed (e.g. blocked
+     * without ever reaching their time limit), handling their results.
+     *
+     * @param pending The programs not yet done, by their futures.
+     * @param handler The handler of each result.
+     */
+    private void cancelOverdue(Map<Future<Result>, Program> pending, Consumer<Result> handler) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Future<Result>, Program>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Future<Result>, Program> entry = iterator.next();
+            Program program = entry.getValue();
+            long start = program.start;
+            if (start == 0 || TimeUnit.NANOSECONDS.toMillis(now - start) <= cancelMilliseconds) {
+                continue;
+            }
+
+            // The thread is interrupted, which stops the program (and its tasks).
+            entry.getKey().cancel(true);
+            iterator.remove();
+            handler.accept(new Result(program.path, ExitCode.TIME_LIMIT_ERROR, "", "The program was cancelled since it kept running after its time limit.\n", TimeUnit.NANOSECONDS.toMillis(now - start)));
+        }
+    }
+
+    /**
+     * Format the summary of a result.
+     *
+     * @param result The result.
+     * @return The summary.
+     */
+    public static String format(Result result) {
+        return "Program " + result.path + "\n" +
+                "  > Status: " + result.status.getValue() + " (" + result.status + ")\n" +
+                "  > Time: " + result.milliseconds + " ms\n" +
+                "  > Output:\n" + indent(result.output) +
+                "  > Diagnostics:\n" + indent(result.diagnostics);
+    }
+
+    /**
+     * Run a program in a new context, capturing its output and errors.
+     *
+     * @param program The program.
+     * @param path The path to the program.
+     * @return The result.
+     */
+    private Result runProgram(Program program, Path path) {
+        StringBuilder output = new StringBuilder();
+        StringBuilder diagnostics = new StringBuilder();
+        long start = System.nanoTime();
+        program.start = start;
+
+        ExitCode status;
+        try {
+            String source = Frendli.readSource(path);
+            FrendliContext context = engine.createContext(
+                message -> output.append(message).append("\n"),
+                message -> diagnostics.append(message).append("\n")
+            );
+            status = context.execute(source);
+        }
+        catch (IOException e) {
+            diagnostics.append("The file could not be read: ").append(e.getMessage()).append("\n");
+            status = ExitCode.INPUT_FILE_ERROR;
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            // An error in jfrendli itself must not stop the other programs.
+            diagnostics.append("The program could not be run: ").append(e).append("\n");
+            status = ExitCode.INTERNAL_SOFTWARE_ERROR;
+        }
+
+        long milliseconds = (System.nanoTime() - start) / 1_000_000;
+
+        return new Result(program.path, status, output.toString(), diagnostics.toString(), milliseconds);
+    }
+
+    /**
+     * Indent each line of a text by one level of the summary.
+     *
+     * @param text The text (each line terminated by a newline).
+     * @return The indented text.
+     */
+    private static String indent(String text) {
+        StringBuilder indented = new StringBuilder();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                indented.append("     ").append(line).append("\n");
+            }
+        }
+
+        return indented.toString();
+    }
+
+    /**
+     * A program of a batch, not yet done.
+     */
+    private static class Program {
+        /**
+         * The path to the program (relative to the directory of the batch).
+         */
+        final String path;
+        /**
+         * The time (of System.nanoTime) the program started running at,
+         * or 0 if it has not started yet.
+         */
+        volatile long start = 0;
+
+        Program(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * The result of running a program in a batch.
+     */
+    public static class Result {
+        /**
+         * The path to the program (relative to the directory of the batch).
+         */
+        public final String path;
+        /**
+         * The exit status.
+         */
+        public final ExitCode status;
+        /**
+         * The output (e.g. displayed values).
+         */
+        public final String output;
+        /**
+         * The errors reported.
+         */
+        public final String diagnostics;
+        /**
+         * The wall time of scanning through interpreting the program.
+         */
+        public final long milliseconds;
+
+        public Result(String path, ExitCode status, String output, String diagnostics, long milliseconds) {
+            this.path = path;
+            this.status = status;
+            this.output = output;
+            this.diagnostics = diagnostics;
+            this.milliseconds = milliseconds;
+        }
+    }
+}
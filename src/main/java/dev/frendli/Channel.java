@@ -0,0 +1,114 @@
+package dev.frendli;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A channel - a buffer of a bounded number of values that tasks (see
+ * Task) put values into and take values out of, in order, to pass them
+ * to each other without sharing variables (runtime representation).
+ * Putting into a full channel waits until a value is taken out, and
+ * taking out of an empty channel waits until a value is put into it.
+ * The buffer grows as values are put into it (up to the capacity), so
+ * a channel only takes memory for the values it holds.
+ */
+public final class Channel {
+    /**
+     * The value stored in the buffer in place of "empty" (null), which
+     * the buffer cannot store.
+     */
+    private static final Object EMPTY = new Object();
+    /**
+     * Number of values the buffer has room for when the channel is created.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 16;
+    /**
+     * Max number of values the channel holds.
+     */
+    private final int capacity;
+    /**
+     * The values put into the channel but not yet taken out. (The buffer
+     * is an array guarded by one lock, so once it has grown, tasks never
+     * allocate when passing values.)
+     */
+    private final ArrayDeque<Object> buffer;
+    /**
+     * The lock guarding the buffer.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signalled when a value is taken out of the buffer.
+     */
+    private final Condition notFull = lock.newCondition();
+    /**
+     * Signalled when a value is put into the buffer.
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    public Channel(int capacity) {
+        this.capacity = capacity;
+        this.buffer = new ArrayDeque<>(Math.min(capacity, INITIAL_BUFFER_SIZE));
+    }
+
+    /**
+     * Put a value into the channel, waiting while it is full.
+     *
+     * @param value The value.
+     * @param timeout The max number of nanoseconds to wait for.
+     * @throws InterruptedException If the thread waiting was interrupted.
+     * @throws TimeoutException If the channel is still full after the timeout.
+     */
+    void put(Object value, long timeout) throws InterruptedException, TimeoutException {
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeout;
+            while (buffer.size() == capacity) {
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            buffer.addLast((value == null) ? EMPTY : value);
+            notEmpty.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the first value out of the channel, waiting while it is empty.
+     *
+     * @param timeout The max number of nanoseconds to wait for.
+     * @return The value.
+     * @throws InterruptedException If the thread waiting was interrupted.
+     * @throws TimeoutException If the channel is still empty after the timeout.
+     */
+    Object take(long timeout) throws InterruptedException, TimeoutException {
+        Object stored;
+        lock.lockInterruptibly();
+        try {
+            long remaining = timeout;
+            while (buffer.isEmpty()) {
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            stored = buffer.removeFirst();
+            notFull.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+
+        return (stored == EMPTY) ? null : stored;
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
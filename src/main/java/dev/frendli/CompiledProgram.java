@@ -0,0 +1,92 @@
+package dev.frendli;
+
+import java.util.List;
+
+import dev.frendli.ir.IrLowering;
+import dev.frendli.ir.IrProgram;
+
+/**
+ * A compiled program - the syntax tree of a program once scanned, parsed,
+ * resolved, and optimized (or its IR). Compiling stores all resolved data
+ * (e.g. the distances of variables) in the tree, and executing a program
+ * never changes it, so one compiled program may be executed any number of
+ * times, also concurrently, by contexts that each have their own globals
+ * and output (see FrendliContext).
+ */
+public final class CompiledProgram {
+    /**
+     * The statements, or null if compiled to IR.
+     */
+    final List<Statement> statements;
+    /**
+     * The IR, or null if compiled to a syntax tree.
+     */
+    final IrProgram irProgram;
+    /**
+     * The symbol table the program was compiled with.
+     */
+    final Symbols symbols;
+
+    private CompiledProgram(List<Statement> statements, IrProgram irProgram, Symbols symbols) {
+        this.statements = statements;
+        this.irProgram = irProgram;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compile a program.
+     *
+     * @param source The source code.
+     * @param symbols The symbol table to intern the lexemes in (e.g. shared
+     *                by the programs of an interactive session).
+     * @param reporter The reporter of compile-time errors.
+     * @param isLoweringToIr Whether to compile to IR rather than a syntax tree.
+     * @param maxFullyUnrolledTimes Max number of times a loop may be repeated to be fully unrolled.
+     * @param unrollFactor Number of body copies per iteration of a partially unrolled loop.
+     * @return The compiled program, or null if compile-time errors were reported.
+     */
+    static CompiledProgram compile(String source, Symbols symbols, ErrorReporter reporter, boolean isLoweringToIr, int maxFullyUnrolledTimes, int unrollFactor) {
+        Scanner scanner = new Scanner(source, symbols, reporter);
+        List<Token> tokens = scanner.scan();
+        Parser parser = new Parser(tokens, reporter);
+        List<Statement> statements = parser.parse();
+
+        // If any syntax errors were found, do not continue resolving.
+        if (reporter.hadCompileTimeError()) {
+            return null;
+        }
+
+        // The resolver stores the resolved data directly in the syntax tree.
+        // (The IR interpreter cannot run tasks, so the natives using them
+        // are rejected when compiling to IR.)
+        List<String> unavailableNativeNames = isLoweringToIr ? NativeFunction.getConcurrentNames() : List.of();
+        Resolver resolver = new Resolver(NativeFunction.getNames(), unavailableNativeNames, symbols, reporter);
+        resolver.resolve(statements);
+
+        // If any resolution errors were found, do not continue interpreting.
+        if (reporter.hadCompileTimeError()) {
+            return null;
+        }
+
+        // Replace calls to pure functions with constant arguments
+        // by their results, computed at compile time.
+        PartialEvaluator partialEvaluator = new PartialEvaluator(symbols);
+        partialEvaluator.evaluate(statements);
+
+        // Prove the types of expressions so that the interpreter
+        // can skip verifying the operands of safe operations.
+        TypeInferrer typeInferrer = new TypeInferrer();
+        typeInferrer.infer(statements);
+
+        // Unroll loops repeated a constant number of times to
+        // reduce the overhead of executing each iteration.
+        LoopUnroller loopUnroller = new LoopUnroller(maxFullyUnrolledTimes, unrollFactor);
+        loopUnroller.unroll(statements);
+
+        if (isLoweringToIr) {
+            return new CompiledProgram(null, new IrLowering(symbols).lower(statements), symbols);
+        }
+
+        return new CompiledProgram(List.copyOf(statements), null, symbols);
+    }
+}
@@ -5,5 +5,6 @@ package dev.frendli;
  */
 public enum ContextType {
     NONE,
-    FUNCTION
+    FUNCTION,
+    PARALLEL_REPETITION
 }
@@ -1,7 +1,7 @@
 package dev.frendli;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * The environment - stores all variable bindings and keeps track
@@ -10,42 +10,101 @@ import java.util.Map;
 public class Environment {
     /**
      * The enclosing environment.
-     * (Used for looking up variables in outer scopes.)
+     * (Used for looking up variables in outer scopes. Only
+     * changed when a pooled function frame is reused.)
      */
-    public final Environment enclosing;
+    public Environment enclosing;
     /**
-     * Variable bindings (maps variable names to values) in this environment.
+     * Max number of bindings stored inline before promoting them to a hash table.
      */
-    private final Map<String, Object> values = new HashMap<>();
+    private static final int MAX_INLINE_SIZE = 8;
+    /**
+     * Marker for an empty slot of the hash table.
+     */
+    private static final int EMPTY_SLOT = -1;
+    /**
+     * Initial number of inline bindings allocated on the first definition.
+     */
+    private static final int INITIAL_INLINE_CAPACITY = 4;
+    /**
+     * Marker for a name not bound in this environment.
+     * (Bound values may be null, i.e. "empty".)
+     */
+    private static final Object ABSENT = new Object();
+    /**
+     * Symbol ids of the names of the bindings (see Symbols): inline in the
+     * order defined, or in the slots of an open-addressing hash table
+     * (EMPTY_SLOT if unused) once there are too many to store inline.
+     * (Allocated on the first definition, as most scopes hold few bindings.)
+     */
+    private int[] symbols = null;
+    /**
+     * Values of the bindings, at the same index as their symbols.
+     */
+    private Object[] values = null;
+    /**
+     * Number of bindings.
+     */
+    private int size = 0;
+    /**
+     * Whether the bindings are stored in a hash table (sized by the number
+     * of bindings, not by the symbol ids) rather than inline.
+     */
+    private boolean isHashed = false;
+    /**
+     * Variable bindings of an environment shared by threads (e.g. the
+     * global environment of tasks), or null if only used by one thread.
+     */
+    private final ConcurrentBindings concurrentBindings;
 
     // Global scope
     public Environment() {
         enclosing = null;
+        concurrentBindings = null;
+    }
+
+    // Global scope shared by threads
+    private Environment(ConcurrentBindings concurrentBindings) {
+        this.enclosing = null;
+        this.concurrentBindings = concurrentBindings;
+    }
+
+    /**
+     * Create a global environment that threads may look up, define, and
+     * assign variables in at the same time (e.g. the interpreter and the
+     * tasks it starts). Lookups never lock, and definitions and assignments
+     * only lock when the bindings grow to fit new names.
+     *
+     * @return The environment.
+     */
+    public static Environment createConcurrent() {
+        return new Environment(new ConcurrentBindings());
     }
 
     // Local scope
     public Environment(Environment enclosing) {
         this.enclosing = enclosing;
+        this.concurrentBindings = null;
     }
 
     /**
      * Look up a variable.
      *
-     * @param name The variable name.
+     * @param name The position of the variable name.
+     * @param symbols The symbol table of the program (for the error).
      * @return The bound value.
      */
-    public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
-
-        // Look in outer scopes. This calls the get method in the outer/enclosing
-        // environment, causing recursive lookup up the scope chain.
-        if (enclosing != null) {
-            return enclosing.get(name);
+    public Object get(long name, Symbols symbols) {
+        // Look in this and then outer scopes, up the scope chain.
+        int symbol = SourcePosition.getSymbol(name);
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            Object value = environment.lookup(symbol);
+            if (value != ABSENT) {
+                return value;
+            }
         }
 
-        throw new RuntimeError(name, "'" + name.lexeme + "' has not been created or defined. To create it, use 'create', or define it using 'define'.");
+        throw new RuntimeError(name, "'" + SourcePosition.getLexeme(name, symbols) + "' has not been created or defined. To create it, use 'create', or define it using 'define'.");
     }
 
     /**
@@ -53,33 +112,43 @@ public class Environment {
      * distance from the current one.
      *
      * @param distance The distance from the current environment.
-     * @param name The variable name.
+     * @param name The position of the variable name.
      * @return The bound value.
      */
-    public Object getAt(int distance, Token name) {
+    public Object getAt(int distance, long name) {
         // This code assumes the resolver has correctly resolved the variables.
-        return getEnclosingEnvironment(distance).values.get(name.lexeme);
+        Object value = getEnclosingEnvironment(distance).lookup(SourcePosition.getSymbol(name));
+
+        return (value == ABSENT) ? null : value;
     }
 
     /**
      * Define a variable by binding its name to a value.
      *
-     * @param name The variable name.
+     * @param name The position of the variable name.
+     * @param symbols The symbol table of the program (for the error).
      * @param value The value.
      */
-    public void define(Token name, Object value) {
+    public void define(long name, Symbols symbols, Object value) {
         // Redefining a variable in the same scope is not allowed
         // (e.g. two "create" or "define" statements with the same variable name)
-        if (values.containsKey(name.lexeme)) {
-            String message = "'" + name.lexeme + "' has already been created. If you meant to change it, use 'change'.";
-            if (values.get(name.lexeme) instanceof FrendliFunction) {
-                message = "'" + name.lexeme + "' has already been defined.";
-            }
-
-            throw new RuntimeError(name, message);
+        Object existing = putIfAbsent(SourcePosition.getSymbol(name), value);
+        if (existing != ABSENT) {
+            throw new RuntimeError(name, getRedefinitionMessage(SourcePosition.getLexeme(name, symbols), existing));
         }
+    }
 
-        values.put(name.lexeme, value);
+    /**
+     * Define a variable by binding its name to a value, unless the name
+     * is already bound in this environment. (The caller reports the error,
+     * as the lexeme of the name is in the symbol table of the program.)
+     *
+     * @param name The position of the variable name.
+     * @param value The value.
+     * @return Whether the variable was defined.
+     */
+    public boolean define(long name, Object value) {
+        return putIfAbsent(SourcePosition.getSymbol(name), value) == ABSENT;
     }
 
     /**
@@ -91,29 +160,58 @@ public class Environment {
     public void defineNative(String name, Object value) {
         // Native definitions should occur before anything else and
         // are not checked if their names already exist.
-        values.put(name, value);
+        put(Symbols.ofNative(name), value);
     }
 
     /**
-     * Assign a value to an already-existing variable.
-     *
-     * @param name The variable name.
-     * @param value The value.
+     * Remove all variable bindings in this environment.
+     * (Used for reusing the environment of a loop body.)
      */
-    public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+    public void clear() {
+        if (concurrentBindings != null) {
+            concurrentBindings.clear();
             return;
         }
+        if (isHashed) {
+            // The next bindings are stored inline again.
+            symbols = null;
+            values = null;
+            isHashed = false;
+        }
+        else if (values != null) {
+            Arrays.fill(values, 0, size, null);
+        }
+        size = 0;
+    }
 
-        // Look in outer scopes. This calls the assign method in the outer/enclosing
-        // environment, causing recursive lookup up the scope chain.
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
+    /**
+     * Remove all variable bindings and set a new enclosing environment.
+     * (Used for reusing a pooled function frame for another call.)
+     *
+     * @param newEnclosing The new enclosing environment, or null when released.
+     */
+    public void reset(Environment newEnclosing) {
+        clear();
+        enclosing = newEnclosing;
+    }
+
+    /**
+     * Assign a value to an already-existing variable.
+     *
+     * @param name The position of the variable name.
+     * @param symbols The symbol table of the program (for the error).
+     * @param value The value.
+     */
+    public void assign(long name, Symbols symbols, Object value) {
+        // Look in this and then outer scopes, up the scope chain.
+        int symbol = SourcePosition.getSymbol(name);
+        for (Environment environment = this; environment != null; environment = environment.enclosing) {
+            if (environment.replace(symbol, value)) {
+                return;
+            }
         }
 
-        throw new RuntimeError(name, "'" + name.lexeme + "' has not yet been created. To create it, use 'create'. Only then may you later change it using 'change'.");
+        throw new RuntimeError(name, "'" + SourcePosition.getLexeme(name, symbols) + "' has not yet been created. To create it, use 'create'. Only then may you later change it using 'change'.");
     }
 
     /**
@@ -121,12 +219,12 @@ public class Environment {
      * environment at a certain distance from the current one.
      *
      * @param distance The distance from the current environment.
-     * @param name The variable name.
+     * @param name The position of the variable name.
      * @param value The value.
      */
-    public void assignAt(int distance, Token name, Object value) {
+    public void assignAt(int distance, long name, Object value) {
         Environment environment = getEnclosingEnvironment(distance);
-        environment.values.put(name.lexeme, value);
+        environment.put(SourcePosition.getSymbol(name), value);
     }
 
     /**
@@ -145,4 +243,375 @@ public class Environment {
 
         return environment;
     }
+
+    /**
+     * Get the message of the error for redefining a variable
+     * in the same scope (e.g. two "create" or "define" statements
+     * with the same variable name).
+     *
+     * @param name The variable name.
+     * @param existing The value already bound.
+     * @return The message.
+     */
+    static String getRedefinitionMessage(String name, Object existing) {
+        if (existing instanceof FrendliFunction) {
+            return "'" + name + "' has already been defined.";
+        }
+
+        return "'" + name + "' has already been created. If you meant to change it, use 'change'.";
+    }
+
+    /**
+     * Look up a name in this environment only.
+     *
+     * @param symbol The symbol id of the name.
+     * @return The bound value, or ABSENT if not bound.
+     */
+    private Object lookup(int symbol) {
+        if (concurrentBindings != null) {
+            return concurrentBindings.lookup(symbol);
+        }
+        int index = indexOf(symbol);
+        return (index == -1) ? ABSENT : values[index];
+    }
+
+    /**
+     * Bind a name to a value in this environment unless already bound.
+     *
+     * @param symbol The symbol id of the name.
+     * @param value The value.
+     * @return The value already bound, or ABSENT if the name was not bound.
+     */
+    private Object putIfAbsent(int symbol, Object value) {
+        if (concurrentBindings != null) {
+            return concurrentBindings.putIfAbsent(symbol, value);
+        }
+        Object existing = lookup(symbol);
+        if (existing == ABSENT) {
+            append(symbol, value);
+        }
+
+        return existing;
+    }
+
+    /**
+     * Bind a name to a value in this environment, replacing any value already bound.
+     *
+     * @param symbol The symbol id of the name.
+     * @param value The value.
+     */
+    private void put(int symbol, Object value) {
+        if (concurrentBindings != null) {
+            concurrentBindings.put(symbol, value);
+            return;
+        }
+        if (!replace(symbol, value)) {
+            append(symbol, value);
+        }
+    }
+
+    /**
+     * Replace the value bound to a name in this environment.
+     *
+     * @param symbol The symbol id of the name.
+     * @param value The value.
+     * @return Whether the name was bound.
+     */
+    private boolean replace(int symbol, Object value) {
+        if (concurrentBindings != null) {
+            return concurrentBindings.replace(symbol, value);
+        }
+        int index = indexOf(symbol);
+        if (index == -1) {
+            return false;
+        }
+        values[index] = value;
+        return true;
+    }
+
+    /**
+     * Find the index of a binding.
+     *
+     * @param symbol The symbol id of the name.
+     * @return The index, or -1 if not bound.
+     */
+    private int indexOf(int symbol) {
+        if (isHashed) {
+            int slot = findSlot(symbol);
+            return (symbols[slot] == symbol) ? slot : -1;
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (symbols[i] == symbol) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Add a new binding (of a name not yet bound), growing the inline
+     * bindings or promoting them to a table when there are too many.
+     *
+     * @param symbol The symbol id of the name.
+     * @param value The value.
+     */
+    private void append(int symbol, Object value) {
+        if (isHashed) {
+            bindInTable(symbol, value);
+            return;
+        }
+
+        if (values == null) {
+            symbols = new int[INITIAL_INLINE_CAPACITY];
+            values = new Object[INITIAL_INLINE_CAPACITY];
+        }
+        else if (size == values.length) {
+            if (size == MAX_INLINE_SIZE) {
+                rehash(MAX_INLINE_SIZE * 4);
+                bindInTable(symbol, value);
+                return;
+            }
+
+            symbols = Arrays.copyOf(symbols, MAX_INLINE_SIZE);
+            values = Arrays.copyOf(values, MAX_INLINE_SIZE);
+        }
+
+        symbols[size] = symbol;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Bind a name (not yet bound) to a value in the hash table, growing it
+     * to keep it at most half full.
+     *
+     * @param symbol The symbol id of the name.
+     * @param value The value.
+     */
+    private void bindInTable(int symbol, Object value) {
+        if ((size + 1) * 2 > symbols.length) {
+            rehash(symbols.length * 2);
+        }
+        int slot = findSlot(symbol);
+        symbols[slot] = symbol;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Move the bindings (inline or hashed) into a new hash table.
+     *
+     * @param capacity The number of slots (a power of 2).
+     */
+    private void rehash(int capacity) {
+        int[] previousSymbols = symbols;
+        Object[] previousValues = values;
+        boolean wasHashed = isHashed;
+        int previousSize = size;
+
+        symbols = new int[capacity];
+        Arrays.fill(symbols, EMPTY_SLOT);
+        values = new Object[capacity];
+        isHashed = true;
+        size = 0;
+        int length = wasHashed ? previousSymbols.length : previousSize;
+        for (int i = 0; i < length; i++) {
+            if (previousSymbols[i] != EMPTY_SLOT) {
+                bindInTable(previousSymbols[i], previousValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Find the slot of a name in the hash table (linear probing).
+     *
+     * @param symbol The symbol id of the name.
+     * @return The slot bound to the name, or the empty slot it would be bound in.
+     */
+    private int findSlot(int symbol) {
+        // Symbol ids are dense, so they spread over the slots as they are.
+        int mask = symbols.length - 1;
+        int slot = symbol & mask;
+        while (symbols[slot] != EMPTY_SLOT && symbols[slot] != symbol) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    /**
+     * Variable bindings that threads may use at the same time. The values
+     * are indexed by the symbol ids of their names, in pages of a fixed
+     * size that are never moved once created, so that lookups and
+     * assignments (compare-and-set) never lock. Only creating a page (or
+     * growing the directory of pages) locks, once per PAGE_SIZE names.
+     */
+    private static final class ConcurrentBindings {
+        /**
+         * Number of bits of a symbol id indexing within its page.
+         */
+        private static final int PAGE_BITS = 8;
+        /**
+         * Number of bindings per page.
+         */
+        private static final int PAGE_SIZE = 1 << PAGE_BITS;
+        /**
+         * Marker for a name bound to "empty" (null), as null marks a name not bound.
+         */
+        private static final Object EMPTY = new Object();
+        /**
+         * The pages (indexed by the symbol id without its PAGE_BITS), or
+         * null where no name of a page has been bound. The directory is
+         * replaced when grown, but it keeps the same pages.
+         */
+        private volatile AtomicReferenceArray<AtomicReferenceArray<Object>> pages = new AtomicReferenceArray<>(1);
+
+        /**
+         * Look up a name.
+         *
+         * @param symbol The symbol id of the name.
+         * @return The bound value, or ABSENT if not bound.
+         */
+        Object lookup(int symbol) {
+            AtomicReferenceArray<Object> page = getPage(symbol);
+            if (page == null) {
+                return ABSENT;
+            }
+
+            return unwrap(page.get(symbol & (PAGE_SIZE - 1)));
+        }
+
+        /**
+         * Bind a name to a value unless already bound (atomically).
+         *
+         * @param symbol The symbol id of the name.
+         * @param value The value.
+         * @return The value already bound, or ABSENT if the name was not bound.
+         */
+        Object putIfAbsent(int symbol, Object value) {
+            AtomicReferenceArray<Object> page = getOrCreatePage(symbol);
+
+            return unwrap(page.compareAndExchange(symbol & (PAGE_SIZE - 1), null, wrap(value)));
+        }
+
+        /**
+         * Bind a name to a value, replacing any value already bound.
+         *
+         * @param symbol The symbol id of the name.
+         * @param value The value.
+         */
+        void put(int symbol, Object value) {
+            getOrCreatePage(symbol).set(symbol & (PAGE_SIZE - 1), wrap(value));
+        }
+
+        /**
+         * Replace the value bound to a name (atomically, so that a name
+         * is never bound by replacing it).
+         *
+         * @param symbol The symbol id of the name.
+         * @param value The value.
+         * @return Whether the name was bound.
+         */
+        boolean replace(int symbol, Object value) {
+            AtomicReferenceArray<Object> page = getPage(symbol);
+            if (page == null) {
+                return false;
+            }
+
+            int index = symbol & (PAGE_SIZE - 1);
+            Object wrapped = wrap(value);
+            Object current;
+            do {
+                current = page.get(index);
+                if (current == null) {
+                    return false;
+                }
+            } while (!page.compareAndSet(index, current, wrapped));
+
+            return true;
+        }
+
+        /**
+         * Remove all bindings. (Only while no other thread uses them.)
+         */
+        synchronized void clear() {
+            pages = new AtomicReferenceArray<>(1);
+        }
+
+        /**
+         * Get the page of a symbol.
+         *
+         * @param symbol The symbol id.
+         * @return The page, or null if not yet created.
+         */
+        private AtomicReferenceArray<Object> getPage(int symbol) {
+            AtomicReferenceArray<AtomicReferenceArray<Object>> directory = pages;
+            int pageIndex = symbol >>> PAGE_BITS;
+
+            return (pageIndex < directory.length()) ? directory.get(pageIndex) : null;
+        }
+
+        /**
+         * Get the page of a symbol, creating it (and growing the directory
+         * to fit it) if not yet created.
+         *
+         * @param symbol The symbol id.
+         * @return The page.
+         */
+        private AtomicReferenceArray<Object> getOrCreatePage(int symbol) {
+            AtomicReferenceArray<Object> page = getPage(symbol);
+            if (page != null) {
+                return page;
+            }
+
+            synchronized (this) {
+                // Another thread may have created it since it was looked up.
+                int pageIndex = symbol >>> PAGE_BITS;
+                AtomicReferenceArray<AtomicReferenceArray<Object>> directory = pages;
+                if (pageIndex >= directory.length()) {
+                    AtomicReferenceArray<AtomicReferenceArray<Object>> grown = new AtomicReferenceArray<>(Math.max(pageIndex + 1, directory.length() * 2));
+                    for (int i = 0; i < directory.length(); i++) {
+                        grown.set(i, directory.get(i));
+                    }
+                    directory = grown;
+                }
+                page = directory.get(pageIndex);
+                if (page == null) {
+                    page = new AtomicReferenceArray<>(PAGE_SIZE);
+                    directory.set(pageIndex, page);
+                }
+                // Published after the page is set, so readers of the
+                // directory see the page (and all pages created before).
+                pages = directory;
+
+                return page;
+            }
+        }
+
+        /**
+         * Get the value to store for a value (null marks a name not bound).
+         *
+         * @param value The value.
+         * @return The value to store.
+         */
+        private static Object wrap(Object value) {
+            return (value == null) ? EMPTY : value;
+        }
+
+        /**
+         * Get the value of a stored value.
+         *
+         * @param stored The stored value (or null if not bound).
+         * @return The value, or ABSENT if not bound.
+         */
+        private static Object unwrap(Object stored) {
+            if (stored == null) {
+                return ABSENT;
+            }
+
+            return (stored == EMPTY) ? null : stored;
+        }
+    }
 }
@@ -7,6 +7,7 @@ public class ErrorReporter {
     private final Logger logger;
     private boolean compileTimeErrorReported = false;
     private boolean runtimeErrorReported = false;
+    private ExitCode runtimeErrorExitCode = ExitCode.SUCCESS;
 
     public ErrorReporter(Logger logger) {
         this.logger = logger;
@@ -20,6 +21,10 @@ public class ErrorReporter {
         return runtimeErrorReported;
     }
 
+    public ExitCode getRuntimeErrorExitCode() {
+        return runtimeErrorExitCode;
+    }
+
     public void compileTimeError(int line, String message) {
         report(line, "", message);
         compileTimeErrorReported = true;
@@ -43,14 +48,16 @@ public class ErrorReporter {
         compileTimeErrorReported = true;
     }
 
-    public void runtimeError(RuntimeError error) {
-        report(error.token.line, "at '" + error.token.lexeme + "'", error.getMessage());
+    public void runtimeError(RuntimeError error, Symbols symbols) {
+        report(SourcePosition.getLine(error.position), "at '" + SourcePosition.getLexeme(error.position, symbols) + "'", error.getMessage());
         runtimeErrorReported = true;
+        runtimeErrorExitCode = error.getExitCode();
     }
 
     public void reset() {
         compileTimeErrorReported = false;
         runtimeErrorReported = false;
+        runtimeErrorExitCode = ExitCode.SUCCESS;
     }
 
     private void report(int line, String location, String message) {
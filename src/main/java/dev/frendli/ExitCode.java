@@ -5,6 +5,11 @@ package dev.frendli;
  * See sysexits.h: https://www.freebsd.org/cgi/man.cgi?query=sysexits&apropos=0&sektion=0&manpath=FreeBSD+13.1-RELEASE&arch=default&format=html
  */
 public enum ExitCode {
+    /**
+     * The program ran successfully.
+     */
+    SUCCESS (0),
+
     /**
      * The command was used incorrectly, e.g., with the wrong number
      * of arguments, a bad flag, a bad syntax in a parameter, etc.
@@ -28,7 +33,44 @@ public enum ExitCode {
      * An internal software error has been detected. This should be
      * limited to non-operating system related errors as possible.
      */
-    INTERNAL_SOFTWARE_ERROR (70);
+    INTERNAL_SOFTWARE_ERROR (70),
+
+    // The statuses below are not part of sysexits.h. They tell which
+    // limit of a program aborted it (see LimitError).
+
+    /**
+     * The program allocated more memory for its values (in total) than allowed.
+     */
+    ALLOCATION_LIMIT_ERROR (80),
+
+    /**
+     * The program nested its calls deeper than allowed.
+     */
+    CALL_DEPTH_LIMIT_ERROR (81),
+
+    /**
+     * The program ran for longer (wall-clock time) than allowed.
+     */
+    TIME_LIMIT_ERROR (82),
+
+    /**
+     * The program executed more statements than allowed.
+     */
+    STATEMENT_LIMIT_ERROR (83),
+
+    /**
+     * The program displayed more output than allowed.
+     */
+    OUTPUT_LIMIT_ERROR (84),
+
+    /**
+     * The program was stopped (its thread interrupted) before it was done.
+     */
+    INTERRUPTED (85),
+    /**
+     * The program started more tasks running at once than allowed.
+     */
+    TASK_LIMIT_ERROR (86);
 
     private int value;
 
@@ -9,18 +9,26 @@ import java.util.List;
 
 /**
  * The compile-time representation of an expression (the tree node).
+ * Its names, operators, and locations are packed source positions
+ * (see SourcePosition) rather than tokens.
  */
 public abstract class Expression {
+    /**
+     * The type this expression is proven to evaluate to (set by the type inferrer).
+     * (Backends may skip runtime type checks of operands with proven types.)
+     */
+    public ValueType provenType = ValueType.UNKNOWN;
+
     public abstract <R> R accept(ExpressionVisitor<R> visitor);
 
     public static class Binary extends Expression {
         public final Expression left;
-        public final Token operator;
+        public final long operatorPosition;
         public final Expression right;
 
-        public Binary(Expression left, Token operator, Expression right) {
+        public Binary(Expression left, long operatorPosition, Expression right) {
             this.left = left;
-            this.operator = operator;
+            this.operatorPosition = operatorPosition;
             this.right = right;
         }
 
@@ -33,12 +41,12 @@ public abstract class Expression {
     public static class Call extends Expression {
         public final Expression callee;
         public final List<Expression> arguments;
-        public final Token location;
+        public final long position;
 
-        public Call(Expression callee, List<Expression> arguments, Token location) {
+        public Call(Expression callee, List<Expression> arguments, long position) {
             this.callee = callee;
             this.arguments = arguments;
-            this.location = location;
+            this.position = position;
         }
 
         public <R> R accept(ExpressionVisitor<R> visitor) {
@@ -74,12 +82,12 @@ public abstract class Expression {
 
     public static class Logical extends Expression {
         public final Expression left;
-        public final Token operator;
+        public final long operatorPosition;
         public final Expression right;
 
-        public Logical(Expression left, Token operator, Expression right) {
+        public Logical(Expression left, long operatorPosition, Expression right) {
             this.left = left;
-            this.operator = operator;
+            this.operatorPosition = operatorPosition;
             this.right = right;
         }
 
@@ -90,11 +98,11 @@ public abstract class Expression {
     }
 
     public static class Unary extends Expression {
-        public final Token operator;
+        public final long operatorPosition;
         public final Expression right;
 
-        public Unary(Token operator, Expression right) {
-            this.operator = operator;
+        public Unary(long operatorPosition, Expression right) {
+            this.operatorPosition = operatorPosition;
             this.right = right;
         }
 
@@ -105,10 +113,15 @@ public abstract class Expression {
     }
 
     public static class Variable extends Expression {
-        public final Token name;
-
-        public Variable(Token name) {
-            this.name = name;
+        public final long namePosition;
+        /**
+         * The distance to the environment the variable is declared in
+         * (set by the resolver, or -1 if unresolved).
+         */
+        public int distance = -1;
+
+        public Variable(long namePosition) {
+            this.namePosition = namePosition;
         }
 
         @Override
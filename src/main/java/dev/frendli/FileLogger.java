@@ -20,7 +20,7 @@ public class FileLogger implements Logger {
     }
 
     @Override
-    public void log(String message) {
+    public synchronized void log(String message) {
         try (var fileWriter = new FileWriter(outputPath, true)) {
             fileWriter.write(message + "\n");
         }
@@ -5,7 +5,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,42 +15,114 @@ import java.util.List;
  */
 public class Frendli {
     private static final ConsoleLogger usageLogger = new ConsoleLogger();
-    private static ErrorReporter reporter = new ErrorReporter(new ConsoleLogger());
-    // The interpreter is static to allow the user's session in the interactive
-    // prompt to keep using the same interpreter without creating a new one.
-    private static Interpreter interpreter = new Interpreter(reporter, new ConsoleLogger());
+    // The logger of the programs run from the command line (replaceable
+    // by the tests). Each run creates its own context, so no other state
+    // of the programs is static (see FrendliEngine and FrendliContext).
+    private static Logger logger = new ConsoleLogger();
 
     public static void main(String[] args) throws IOException, SecurityException {
-        if (args.length > 1) {
+        FrendliEngine engine = new FrendliEngine();
+        boolean isBatch = false;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--dump-ir")) {
+                engine.setDumpingIr(true);
+            }
+            else if (arg.equals("--ir")) {
+                engine.setExecutingIr(true);
+            }
+            else if (arg.startsWith("--max-allocation=")) {
+                engine.setAllocationQuota(parseLimit(arg.substring("--max-allocation=".length()), Long.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-call-depth=")) {
+                engine.setMaxCallDepth((int)parseLimit(arg.substring("--max-call-depth=".length()), Integer.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-statements=")) {
+                engine.setMaxStatementCount(parseLimit(arg.substring("--max-statements=".length()), Long.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-time=")) {
+                engine.setMaxMilliseconds(parseLimit(arg.substring("--max-time=".length()), Long.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-output=")) {
+                engine.setMaxOutputBytes(parseLimit(arg.substring("--max-output=".length()), Long.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-tasks=")) {
+                engine.setMaxTaskCount((int)parseLimit(arg.substring("--max-tasks=".length()), Integer.MAX_VALUE));
+            }
+            else if (arg.startsWith("--max-unrolled-times=")) {
+                engine.setMaxFullyUnrolledTimes((int)parseCount(arg.substring("--max-unrolled-times=".length()), 0, Integer.MAX_VALUE));
+            }
+            else if (arg.startsWith("--unroll-factor=")) {
+                engine.setUnrollFactor((int)parseCount(arg.substring("--unroll-factor=".length()), 1, Integer.MAX_VALUE));
+            }
+            else if (arg.equals("--batch")) {
+                isBatch = true;
+            }
+            else if (arg.startsWith("--threads=")) {
+                threadCount = (int)parseLimit(arg.substring("--threads=".length()), Integer.MAX_VALUE);
+            }
+            else if (arg.startsWith("--")) {
+                printUsage();
+                System.exit(ExitCode.USAGE_ERROR.getValue());
+            }
+            else {
+                paths.add(arg);
+            }
+        }
+
+        if (paths.size() > 1 || (isBatch && paths.isEmpty())) {
             printUsage();
             System.exit(ExitCode.USAGE_ERROR.getValue());
         }
-        else if (args.length == 1) {
-            runFile(args[0]);
+        else if (isBatch) {
+            runBatch(new BatchRunner(engine, threadCount), paths.get(0));
+        }
+        else if (paths.size() == 1) {
+            runFile(engine.createContext(logger), paths.get(0));
         }
         else {
-            runPrompt();
+            // The user's session in the interactive prompt keeps
+            // using the same context (and global environment).
+            runPrompt(engine.createContext(logger));
         }
     }
 
-    private static void runFile(String path) throws IOException, SecurityException {
+    private static void runFile(FrendliContext context, String path) throws IOException, SecurityException {
         verifyExtension(path);
 
-        final String REGEX_ALL_NEWLINES = "(\\r\\n)|(\\r)/g";
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        String source = new String(bytes, Charset.defaultCharset());
-        run(source.replaceAll(REGEX_ALL_NEWLINES, "\n"));
+        ExitCode status = context.execute(readSource(Paths.get(path)));
 
-        if (reporter.hadCompileTimeError()) {
+        if (status == ExitCode.INPUT_DATA_ERROR) {
             usageLogger.log("Exiting");
-            System.exit(ExitCode.INPUT_DATA_ERROR.getValue());
         }
-        if (reporter.hadRuntimeError()) {
-            System.exit(ExitCode.INTERNAL_SOFTWARE_ERROR.getValue());
+        if (status != ExitCode.SUCCESS) {
+            System.exit(status.getValue());
         }
     }
 
-    private static void runPrompt() throws IOException {
+    private static void runBatch(BatchRunner runner, String directory) throws IOException, SecurityException {
+        Path path = Paths.get(directory);
+        if (!Files.isDirectory(path)) {
+            usageLogger.logError("The batch must be a directory of '.frendli' files");
+            System.exit(ExitCode.INPUT_FILE_ERROR.getValue());
+        }
+
+        // Each program's result is part of the summary, so the batch
+        // itself succeeds even if some of its programs did not. The
+        // summary of each program is output as soon as it is done.
+        int[] successCount = { 0 };
+        int programCount = runner.run(path, result -> {
+            logger.log(BatchRunner.format(result));
+            if (result.status == ExitCode.SUCCESS) {
+                successCount[0]++;
+            }
+        });
+        logger.log("Ran " + programCount + " programs: " + successCount[0] + " succeeded, " + (programCount - successCount[0]) + " failed");
+    }
+
+    private static void runPrompt(FrendliContext context) throws IOException {
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
 
@@ -62,34 +136,38 @@ public class Frendli {
             if (hasExitedPrompt) {
                 return;
             }
-            run(line);
 
             // Do not kill user's process in interactive mode.
-            reporter.reset();
+            context.execute(line);
         }
     }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source, reporter);
-        List<Token> tokens = scanner.scan();
-        Parser parser = new Parser(tokens, reporter);
-        List<Statement> statements = parser.parse();
+    static String readSource(Path path) throws IOException {
+        final String REGEX_ALL_NEWLINES = "(\\r\\n)|(\\r)/g";
+        byte[] bytes = Files.readAllBytes(path);
+        String source = new String(bytes, Charset.defaultCharset());
 
-        // If any syntax errors were found, do not continue resolving.
-        if (reporter.hadCompileTimeError()) {
-            return;
-        }
+        return source.replaceAll(REGEX_ALL_NEWLINES, "\n");
+    }
 
-        // The resolver inserts the resolved data directly into the interpreter.
-        Resolver resolver = new Resolver(interpreter, reporter);
-        resolver.resolve(statements);
+    private static long parseLimit(String value, long max) {
+        return parseCount(value, 1, max);
+    }
 
-        // If any resolution errors were found, do not continue interpreting.
-        if (reporter.hadCompileTimeError()) {
-            return;
+    private static long parseCount(String value, long min, long max) {
+        try {
+            long count = Long.parseLong(value);
+            if (count >= min && count <= max) {
+                return count;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below.
         }
 
-        interpreter.interpret(statements);
+        printUsage();
+        System.exit(ExitCode.USAGE_ERROR.getValue());
+        return max;
     }
 
     private static void verifyExtension(String path) throws SecurityException {
@@ -101,9 +179,52 @@ public class Frendli {
 
     private static void printUsage() {
         usageLogger.log("""
-                Usage: java dev.frendli.Frendli [path]
+                Usage: java dev.frendli.Frendli [options] [path]
                 
                     The REPL (interactive prompt) starts if no [path] is provided
+                
+                Options:
+                    --batch      Run every program in the directory [path] (and
+                                 its subdirectories) and output a summary of each
+                                 once it is done (each program is aborted after
+                                 10000 milliseconds unless --max-time is given)
+                    --threads=<count>
+                                 Max number of programs run at the same time by
+                                 --batch (default the number of processors)
+                    --ir         Execute the program's IR instead of its syntax tree
+                                 (programs using tasks or channels are rejected)
+                    --dump-ir    Output the program's IR instead of executing it
+                    --max-allocation=<bytes>
+                                 Abort the program if its values (texts, scopes,
+                                 and definitions) allocate more memory in total
+                                 than allowed (memory no longer used is not
+                                 credited)
+                    --max-call-depth=<calls>
+                                 Abort the program if its calls are nested deeper
+                                 than allowed (default 100000; without --ir, the
+                                 Java stack usually runs out first, after a few
+                                 hundred calls, and the program is aborted with
+                                 the same exit status)
+                    --max-statements=<count>
+                                 Abort the program if it executes more statements
+                                 than allowed
+                    --max-time=<milliseconds>
+                                 Abort the program if it runs for longer than allowed
+                    --max-output=<bytes>
+                                 Abort the program if it displays more than allowed
+                    --max-tasks=<count>
+                                 Abort the program if it runs more tasks at once
+                                 than allowed (default 1000)
+                    --max-unrolled-times=<times>
+                                 Max number of times a loop may be repeated to be
+                                 fully unrolled (default 8, 0 to disable)
+                    --unroll-factor=<copies>
+                                 Number of body copies per iteration of a partially
+                                 unrolled loop (default 4, 1 to disable)
+
+                Exit status of a program aborted by a limit:
+                    80 allocation, 81 call depth, 82 time, 83 statements, 84 output,
+                    86 tasks
                 """);
     }
 
@@ -135,8 +256,7 @@ public class Frendli {
         setLogger(new ConsoleLogger());
     }
 
-    private static void setLogger(Logger logger) {
-        reporter = new ErrorReporter(logger);
-        interpreter = new Interpreter(reporter, logger);
+    private static void setLogger(Logger newLogger) {
+        logger = newLogger;
     }
 }
@@ -0,0 +1,263 @@
+package dev.frendli;
+
+import dev.frendli.ir.IrInterpreter;
+import dev.frendli.ir.IrPrinter;
+
+/**
+ * A context - runs Frendli programs with an interpreter, global
+ * environment, error reporter, and logger of its own, so that
+ * programs in different contexts never interfere. A context may run
+ * several programs (e.g. the lines entered in the interactive prompt)
+ * but must only be used by one thread at a time.
+ */
+public class FrendliContext {
+    /**
+     * Max number of milliseconds to wait for the cancelled tasks of the
+     * last program to return when resetting.
+     */
+    private static final long TASK_STOP_MILLISECONDS = 1000;
+    /**
+     * The logger of the output (e.g. the IR dumped).
+     */
+    private final Logger logger;
+    /**
+     * Reporter of compile-time and runtime errors.
+     */
+    private final ErrorReporter reporter;
+    /**
+     * The interpreter (which owns the global environment).
+     */
+    private final Interpreter interpreter;
+    /**
+     * Whether to output the IR of programs instead of executing them.
+     */
+    private final boolean isDumpingIr;
+    /**
+     * Whether to execute the IR of programs instead of their syntax trees.
+     */
+    private final boolean isExecutingIr;
+    /**
+     * Max number of bytes each program may allocate (also used by the IR interpreter).
+     */
+    private final long allocationQuota;
+    /**
+     * Max number of nested calls (also used by the IR interpreter).
+     */
+    private final int maxCallDepth;
+    /**
+     * Max number of statements each program may execute (also used by the IR interpreter).
+     */
+    private final long maxStatementCount;
+    /**
+     * Max number of milliseconds each program may run for (also used by the IR interpreter).
+     */
+    private final long maxMilliseconds;
+    /**
+     * Max number of bytes each program may display (also used by the IR interpreter).
+     */
+    private final long maxOutputBytes;
+    /**
+     * Max number of tasks each program may run at once.
+     */
+    private final int maxTaskCount;
+    /**
+     * Max number of times a loop may be repeated to be fully unrolled when compiled.
+     */
+    private final int maxFullyUnrolledTimes;
+    /**
+     * Number of body copies per iteration of a partially unrolled loop.
+     */
+    private final int unrollFactor;
+    /**
+     * The scheduler whose slot the programs hold while running, or null.
+     */
+    private final Scheduler scheduler;
+    /**
+     * The symbol table of the programs compiled by the context (e.g. the
+     * lines entered in the interactive prompt, which share their globals).
+     */
+    private Symbols symbols = new Symbols();
+    /**
+     * The symbol table of the programs whose globals the global environment
+     * holds (keyed by the ids of the table), or null if it only holds the
+     * natives (whose ids are the same in every table).
+     */
+    private Symbols globalSymbols = null;
+
+    FrendliContext(FrendliEngine engine, Logger logger, Logger errorLogger) {
+        this.logger = logger;
+        this.reporter = new ErrorReporter(errorLogger);
+        this.interpreter = new Interpreter(reporter, logger);
+        this.isDumpingIr = engine.isDumpingIr();
+        this.isExecutingIr = engine.isExecutingIr();
+        this.allocationQuota = engine.getAllocationQuota();
+        this.maxCallDepth = engine.getMaxCallDepth();
+        this.maxStatementCount = engine.getMaxStatementCount();
+        this.scheduler = engine.getScheduler();
+        this.maxMilliseconds = engine.getMaxMilliseconds();
+        this.maxOutputBytes = engine.getMaxOutputBytes();
+        this.maxTaskCount = engine.getMaxTaskCount();
+        this.maxFullyUnrolledTimes = engine.getMaxFullyUnrolledTimes();
+        this.unrollFactor = engine.getUnrollFactor();
+        interpreter.setAllocationQuota(allocationQuota);
+        interpreter.setMaxCallDepth(maxCallDepth);
+        interpreter.setMaxStatementCount(maxStatementCount);
+        interpreter.setMaxMilliseconds(maxMilliseconds);
+        interpreter.setMaxOutputBytes(maxOutputBytes);
+        interpreter.setMaxTaskCount(maxTaskCount);
+        interpreter.setScheduler(scheduler);
+    }
+
+    /**
+     * Compile and run a program. Errors are reported to the logger rather than thrown.
+     *
+     * @param source The source code.
+     * @return The exit status (SUCCESS, or the kind of error reported).
+     */
+    public ExitCode execute(String source) {
+        enterScheduler();
+        try {
+            CompiledProgram program = CompiledProgram.compile(source, symbols, reporter, isDumpingIr || isExecutingIr, maxFullyUnrolledTimes, unrollFactor);
+            if (program != null) {
+                run(program);
+            }
+        }
+        finally {
+            exitScheduler();
+        }
+
+        return getStatus();
+    }
+
+    /**
+     * Run a program already compiled (e.g. by FrendliEngine.compile).
+     * Errors are reported to the logger rather than thrown. The program
+     * has a symbol table of its own, so it does not see the globals of the
+     * programs the context compiled itself or of other compiled programs
+     * (which are removed first).
+     *
+     * @param program The compiled program.
+     * @return The exit status (SUCCESS, or the kind of error reported).
+     */
+    public ExitCode execute(CompiledProgram program) {
+        enterScheduler();
+        try {
+            run(program);
+        }
+        finally {
+            exitScheduler();
+        }
+
+        return getStatus();
+    }
+
+    /**
+     * Get the number of names interned by the programs the context has
+     * compiled since created or reset (e.g. the lines of an interactive
+     * session), including the natives.
+     *
+     * @return The number of names.
+     */
+    public int getNameCount() {
+        return symbols.size();
+    }
+
+    /**
+     * Reset the context to its state when created (the global environment
+     * holding only the natives) so that it can run unrelated programs.
+     * (Compiling creates a new resolver for each program, so no state of
+     * the resolution is kept between programs.) The tasks of the last
+     * program (cancelled once it was done) are waited for first, and the
+     * context is not reset if any are still running, as they could still
+     * use the global environment and the loggers.
+     *
+     * @return Whether the context was reset (otherwise it must not be reused).
+     */
+    public boolean reset() {
+        TaskGroup tasks = interpreter.getTaskGroup();
+        tasks.cancel();
+        try {
+            if (!tasks.awaitDone(TASK_STOP_MILLISECONDS)) {
+                return false;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        interpreter.resetGlobals();
+        reporter.reset();
+        // The names of unrelated programs are not kept.
+        symbols = new Symbols();
+        globalSymbols = null;
+
+        return true;
+    }
+
+    /**
+     * Wait for a slot of the scheduler (if any) to run a program.
+     */
+    private void enterScheduler() {
+        if (scheduler != null) {
+            scheduler.enter();
+        }
+    }
+
+    /**
+     * Release the slot of the scheduler (if any) once a program is done.
+     */
+    private void exitScheduler() {
+        if (scheduler != null) {
+            scheduler.exit();
+        }
+    }
+
+    /**
+     * Run a compiled program.
+     *
+     * @param program The compiled program.
+     */
+    private void run(CompiledProgram program) {
+        if (program.irProgram == null) {
+            // The global environment is keyed by the ids of one symbol table.
+            if (globalSymbols != null && globalSymbols != program.symbols) {
+                interpreter.resetGlobals();
+            }
+            globalSymbols = program.symbols;
+            interpreter.interpret(program.statements, program.symbols);
+        }
+        else if (isDumpingIr) {
+            logger.log(new IrPrinter(program.symbols).print(program.irProgram));
+        }
+        else {
+            IrInterpreter irInterpreter = new IrInterpreter(reporter, logger);
+            irInterpreter.setAllocationQuota(allocationQuota);
+            irInterpreter.setMaxCallDepth(maxCallDepth);
+            irInterpreter.setMaxStatementCount(maxStatementCount);
+            irInterpreter.setMaxMilliseconds(maxMilliseconds);
+            irInterpreter.setMaxOutputBytes(maxOutputBytes);
+            irInterpreter.setScheduler(scheduler);
+            irInterpreter.interpret(program.irProgram, program.symbols);
+        }
+    }
+
+    /**
+     * Get the exit status of the last program and reset the
+     * reporter, letting the next program start without errors.
+     *
+     * @return The exit status.
+     */
+    private ExitCode getStatus() {
+        ExitCode status = ExitCode.SUCCESS;
+        if (reporter.hadCompileTimeError()) {
+            status = ExitCode.INPUT_DATA_ERROR;
+        }
+        else if (reporter.hadRuntimeError()) {
+            status = reporter.getRuntimeErrorExitCode();
+        }
+        reporter.reset();
+
+        return status;
+    }
+}
@@ -0,0 +1,144 @@
+package dev.frendli;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of contexts - runs many small, unrelated programs (e.g. the
+ * requests of a server) in contexts that are reused rather than created
+ * for each program. Once a program is done, its context is reset to
+ * hold only the natives and returned to the pool (or dropped if tasks of
+ * the program are still running). Contexts log through loggers that are
+ * pointed at the loggers of each program run.
+ */
+public class FrendliContextPool {
+    /**
+     * The logger of contexts not running a program, discarding anything
+     * logged (e.g. by a task still running after its program was done).
+     */
+    private static final Logger DISCARDING_LOGGER = message -> { };
+    /**
+     * The engine creating the contexts.
+     */
+    private final FrendliEngine engine;
+    /**
+     * The contexts not running a program. (Contexts returned to a full
+     * pool are dropped, so the pool never holds more than its capacity.)
+     */
+    private final BlockingQueue<PooledContext> idleContexts;
+
+    public FrendliContextPool(FrendliEngine engine, int capacity) {
+        this.engine = engine;
+        this.idleContexts = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Compile and run a program in a context of the pool.
+     *
+     * @param source The source code.
+     * @param logger The logger of the output of the program.
+     * @param errorLogger The logger of the errors of the program.
+     * @return The exit status (SUCCESS, or the kind of error reported).
+     */
+    public ExitCode execute(String source, Logger logger, Logger errorLogger) {
+        PooledContext pooled = acquire(logger, errorLogger);
+        try {
+            return pooled.context.execute(source);
+        }
+        finally {
+            release(pooled);
+        }
+    }
+
+    /**
+     * Run a program already compiled (e.g. by FrendliEngine.compile) in a context of the pool.
+     *
+     * @param program The compiled program.
+     * @param logger The logger of the output of the program.
+     * @param errorLogger The logger of the errors of the program.
+     * @return The exit status (SUCCESS, or the kind of error reported).
+     */
+    public ExitCode execute(CompiledProgram program, Logger logger, Logger errorLogger) {
+        PooledContext pooled = acquire(logger, errorLogger);
+        try {
+            return pooled.context.execute(program);
+        }
+        finally {
+            release(pooled);
+        }
+    }
+
+    /**
+     * Get an idle context (or create one if none is idle) and point its
+     * loggers at those of the program to run.
+     *
+     * @param logger The logger of the output.
+     * @param errorLogger The logger of the errors.
+     * @return The context.
+     */
+    private PooledContext acquire(Logger logger, Logger errorLogger) {
+        PooledContext pooled = idleContexts.poll();
+        if (pooled == null) {
+            pooled = new PooledContext(engine);
+        }
+        pooled.output.target = logger;
+        pooled.errors.target = errorLogger;
+
+        return pooled;
+    }
+
+    /**
+     * Reset a context whose program is done and return it to the pool,
+     * unless tasks of the program are still running.
+     *
+     * @param pooled The context.
+     */
+    private void release(PooledContext pooled) {
+        boolean isReset = pooled.context.reset();
+        // The loggers of the program done must not be kept alive by the
+        // pool (nor logged to by its tasks).
+        pooled.output.target = DISCARDING_LOGGER;
+        pooled.errors.target = DISCARDING_LOGGER;
+        if (isReset) {
+            idleContexts.offer(pooled);
+        }
+    }
+
+    /**
+     * A context of the pool and the loggers it logs through.
+     */
+    private static final class PooledContext {
+        /**
+         * The logger of the output, pointed at that of the program running.
+         */
+        final ForwardingLogger output = new ForwardingLogger();
+        /**
+         * The logger of the errors, pointed at that of the program running.
+         */
+        final ForwardingLogger errors = new ForwardingLogger();
+        /**
+         * The context.
+         */
+        final FrendliContext context;
+
+        PooledContext(FrendliEngine engine) {
+            this.context = engine.createContext(output, errors);
+        }
+    }
+
+    /**
+     * A logger logging to another logger that can be replaced.
+     */
+    private static final class ForwardingLogger implements Logger {
+        /**
+         * The logger logged to. (Read by the tasks of the program
+         * running, which start after it is set.)
+         */
+        volatile Logger target;
+
+        @Override
+        public void log(String message) {
+            target.log(message);
+        }
+    }
+}
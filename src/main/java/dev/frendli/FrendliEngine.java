@@ -0,0 +1,293 @@
+package dev.frendli;
+
+/**
+ * The engine - the configuration shared by the contexts that run
+ * Frendli programs (e.g. their limits). The engine holds no state of
+ * any program, so contexts created by the same engine may run programs
+ * in parallel (each context on one thread at a time).
+ */
+public class FrendliEngine {
+    /**
+     * Whether to output the IR of programs instead of executing them.
+     */
+    private boolean isDumpingIr = false;
+    /**
+     * Whether to execute the IR of programs instead of their syntax trees.
+     */
+    private boolean isExecutingIr = false;
+    /**
+     * Max number of bytes each program may allocate for its values.
+     */
+    private long allocationQuota = AllocationMeter.UNLIMITED;
+    /**
+     * Max number of nested calls (e.g. the depth of recursion).
+     */
+    private int maxCallDepth = Interpreter.DEFAULT_MAX_CALL_DEPTH;
+    /**
+     * Max number of statements each program may execute.
+     */
+    private long maxStatementCount = Interpreter.UNLIMITED;
+    /**
+     * Max number of milliseconds (wall-clock time) each program may run for.
+     */
+    private long maxMilliseconds = Interpreter.UNLIMITED;
+    /**
+     * Max number of bytes each program may display.
+     */
+    private long maxOutputBytes = NativeFunction.UNLIMITED_OUTPUT;
+    /**
+     * Max number of tasks each program may run at once.
+     */
+    private int maxTaskCount = TaskGroup.DEFAULT_MAX_TASK_COUNT;
+    /**
+     * Max number of times a loop may be repeated to be fully unrolled when compiled.
+     */
+    private int maxFullyUnrolledTimes = LoopUnroller.DEFAULT_MAX_FULLY_UNROLLED_TIMES;
+    /**
+     * Number of body copies per iteration of a partially unrolled loop.
+     */
+    private int unrollFactor = LoopUnroller.DEFAULT_UNROLL_FACTOR;
+    /**
+     * The scheduler sharing the threads between the programs of all
+     * contexts, or null if programs run without yielding.
+     */
+    private Scheduler scheduler = null;
+
+    /**
+     * Create a context with its own interpreter (and global environment)
+     * and error reporter. The context uses the configuration of the
+     * engine at the time it is created.
+     *
+     * @param logger The logger of the output and errors of the context's programs.
+     * @return The context.
+     */
+    public FrendliContext createContext(Logger logger) {
+        return new FrendliContext(this, logger, logger);
+    }
+
+    /**
+     * Create a context that logs the errors of its programs
+     * separately from their output (e.g. to capture both).
+     *
+     * @param logger The logger of the output of the context's programs.
+     * @param errorLogger The logger of the errors of the context's programs.
+     * @return The context.
+     */
+    public FrendliContext createContext(Logger logger, Logger errorLogger) {
+        return new FrendliContext(this, logger, errorLogger);
+    }
+
+    /**
+     * Compile a program once to be executed by any number of contexts
+     * (also concurrently). A program compiled to IR (i.e. when executing
+     * or dumping IR) must be executed by contexts configured the same way.
+     *
+     * @param source The source code.
+     * @param errorLogger The logger of compile-time errors.
+     * @return The compiled program, or null if compile-time errors were reported.
+     */
+    public CompiledProgram compile(String source, Logger errorLogger) {
+        return CompiledProgram.compile(source, new Symbols(), new ErrorReporter(errorLogger), isDumpingIr || isExecutingIr, maxFullyUnrolledTimes, unrollFactor);
+    }
+
+    /**
+     * Set whether to output the IR of programs instead of executing them.
+     *
+     * @param newIsDumpingIr Whether to output the IR.
+     */
+    public void setDumpingIr(boolean newIsDumpingIr) {
+        isDumpingIr = newIsDumpingIr;
+    }
+
+    /**
+     * Set whether to execute the IR of programs instead of their syntax trees.
+     *
+     * @param newIsExecutingIr Whether to execute the IR.
+     */
+    public void setExecutingIr(boolean newIsExecutingIr) {
+        isExecutingIr = newIsExecutingIr;
+    }
+
+    /**
+     * Set the max number of bytes each program may allocate (in total) for its values.
+     *
+     * @param quota The number of bytes (or AllocationMeter.UNLIMITED).
+     */
+    public void setAllocationQuota(long quota) {
+        allocationQuota = quota;
+    }
+
+    /**
+     * Set the max number of nested calls.
+     *
+     * @param newMaxCallDepth The max depth.
+     */
+    public void setMaxCallDepth(int newMaxCallDepth) {
+        maxCallDepth = newMaxCallDepth;
+    }
+
+    /**
+     * Set the max number of statements each program may execute.
+     *
+     * @param newMaxStatementCount The number of statements (or Interpreter.UNLIMITED).
+     */
+    public void setMaxStatementCount(long newMaxStatementCount) {
+        maxStatementCount = newMaxStatementCount;
+    }
+
+    /**
+     * Set the max number of milliseconds (wall-clock time) each program may run for.
+     *
+     * @param newMaxMilliseconds The number of milliseconds (or Interpreter.UNLIMITED).
+     */
+    public void setMaxMilliseconds(long newMaxMilliseconds) {
+        maxMilliseconds = newMaxMilliseconds;
+    }
+
+    /**
+     * Set the max number of bytes (UTF-8) each program may display.
+     *
+     * @param newMaxOutputBytes The number of bytes (or NativeFunction.UNLIMITED_OUTPUT).
+     */
+    public void setMaxOutputBytes(long newMaxOutputBytes) {
+        maxOutputBytes = newMaxOutputBytes;
+    }
+
+    /**
+     * Set the max number of tasks (started with "start") each program may run at once.
+     *
+     * @param newMaxTaskCount The number of tasks.
+     */
+    public void setMaxTaskCount(int newMaxTaskCount) {
+        maxTaskCount = newMaxTaskCount;
+    }
+
+    /**
+     * Set the max number of times a loop may be repeated to be fully unrolled.
+     * (0 disables full unrolling.)
+     *
+     * @param newMaxFullyUnrolledTimes The number of times.
+     */
+    public void setMaxFullyUnrolledTimes(int newMaxFullyUnrolledTimes) {
+        maxFullyUnrolledTimes = newMaxFullyUnrolledTimes;
+    }
+
+    /**
+     * Set the number of body copies per iteration of a partially unrolled loop.
+     * (1 disables partial unrolling.)
+     *
+     * @param newUnrollFactor The number of copies.
+     */
+    public void setUnrollFactor(int newUnrollFactor) {
+        unrollFactor = newUnrollFactor;
+    }
+
+    /**
+     * Set the scheduler sharing the threads between the programs of all
+     * contexts (e.g. when running more programs than there are threads).
+     *
+     * @param newScheduler The scheduler (or null to never yield).
+     */
+    public void setScheduler(Scheduler newScheduler) {
+        scheduler = newScheduler;
+    }
+
+    /**
+     * Check whether to output the IR of programs instead of executing them.
+     *
+     * @return Whether to output the IR.
+     */
+    public boolean isDumpingIr() {
+        return isDumpingIr;
+    }
+
+    /**
+     * Check whether to execute the IR of programs instead of their syntax trees.
+     *
+     * @return Whether to execute the IR.
+     */
+    public boolean isExecutingIr() {
+        return isExecutingIr;
+    }
+
+    /**
+     * Get the max number of bytes each program may allocate for its values.
+     *
+     * @return The number of bytes.
+     */
+    public long getAllocationQuota() {
+        return allocationQuota;
+    }
+
+    /**
+     * Get the max number of nested calls.
+     *
+     * @return The max depth.
+     */
+    public int getMaxCallDepth() {
+        return maxCallDepth;
+    }
+
+    /**
+     * Get the max number of statements each program may execute.
+     *
+     * @return The number of statements.
+     */
+    public long getMaxStatementCount() {
+        return maxStatementCount;
+    }
+
+    /**
+     * Get the max number of milliseconds each program may run for.
+     *
+     * @return The number of milliseconds.
+     */
+    public long getMaxMilliseconds() {
+        return maxMilliseconds;
+    }
+
+    /**
+     * Get the max number of bytes each program may display.
+     *
+     * @return The number of bytes.
+     */
+    public long getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    /**
+     * Get the max number of tasks each program may run at once.
+     *
+     * @return The number of tasks.
+     */
+    public int getMaxTaskCount() {
+        return maxTaskCount;
+    }
+
+    /**
+     * Get the max number of times a loop may be repeated to be fully unrolled.
+     *
+     * @return The number of times.
+     */
+    public int getMaxFullyUnrolledTimes() {
+        return maxFullyUnrolledTimes;
+    }
+
+    /**
+     * Get the number of body copies per iteration of a partially unrolled loop.
+     *
+     * @return The number of copies.
+     */
+    public int getUnrollFactor() {
+        return unrollFactor;
+    }
+
+    /**
+     * Get the scheduler sharing the threads between the programs of all contexts.
+     *
+     * @return The scheduler, or null if programs run without yielding.
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+}
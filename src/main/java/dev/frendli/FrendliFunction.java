@@ -14,15 +14,20 @@ public class FrendliFunction implements FrendliCallable {
      * The environment used when declared.
      */
     private final Environment closure;
+    /**
+     * The name of the function.
+     */
+    private final String name;
 
-    public FrendliFunction(Statement.Define declaration, Environment closure) {
+    public FrendliFunction(Statement.Define declaration, Environment closure, String name) {
         this.declaration = declaration;
         this.closure = closure;
+        this.name = name;
     }
 
     @Override
     public int arity() {
-        return declaration.parameters.size();
+        return declaration.parameterPositions.length;
     }
 
     @Override
@@ -30,24 +35,33 @@ public class FrendliFunction implements FrendliCallable {
         // Each time a function gets called, a new environment is created.
         // This allows for recursion to work. Parameters are encapsulated
         // by the function, and they are bound to the arguments sent in
-        // this newly created environment.
-        Environment currentEnvironment = new Environment(closure);
-        for (int i = 0; i < declaration.parameters.size(); i++) {
-            // The number of arguments are verified before this method is
-            // called in "visitCallExpression" in the Interpreter.
-            Token name = declaration.parameters.get(i);
-            Object value = arguments.get(i);
-            currentEnvironment.define(name, value);
-        }
-
-        // When a return statement is executed, it will throw a Return exception
-        // that should be caught by the caller (here), containing the return value.
+        // this newly created environment. (Functions without definitions
+        // in their body can never have their environment captured, so
+        // it is taken from the interpreter's pool and released after.)
+        boolean isPooled = !declaration.body.containsDefinition;
+        Environment currentEnvironment = isPooled ? interpreter.acquireFrame(closure) : interpreter.createFrame(closure);
         try {
+            for (int i = 0; i < declaration.parameterPositions.length; i++) {
+                // The number of arguments are verified before this method is
+                // called in "visitCallExpression" in the Interpreter, and the
+                // names of the parameters by the Resolver (so none is redefined).
+                long parameter = declaration.parameterPositions[i];
+                Object value = arguments.get(i);
+                currentEnvironment.define(parameter, value);
+            }
+
+            // When a return statement is executed, it will throw a Return exception
+            // that should be caught by the caller (here), containing the return value.
             interpreter.executeBlock(declaration.body.statements, currentEnvironment);
         }
         catch (Return returnObject) {
             return returnObject.value;
         }
+        finally {
+            if (isPooled) {
+                interpreter.releaseFrame(currentEnvironment);
+            }
+        }
 
         // Functions without any return statements will implicitly return "empty".
         return null;
@@ -55,6 +69,6 @@ public class FrendliFunction implements FrendliCallable {
 
     @Override
     public String toString() {
-        return "<definition: " + declaration.name.lexeme + ">";
+        return "<definition: " + name + ">";
     }
 }
@@ -1,9 +1,18 @@
 package dev.frendli;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The interpreter - recursively traverses the syntax tree produced
@@ -11,6 +20,24 @@ import java.util.Map;
  * values. The current node always evaluates its children first (post-order traversal).
  */
 public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<Void> {
+    /**
+     * Default max number of nested calls.
+     */
+    public static final int DEFAULT_MAX_CALL_DEPTH = 100_000;
+    /**
+     * Hint ending the errors for nesting too many calls.
+     */
+    private static final String RECURSION_HINT = "Make sure that recursive definitions stop calling themselves.";
+    /**
+     * The max number of statements or milliseconds of programs that may
+     * run without limit.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    /**
+     * Number of tasks per thread that the repetitions of "repeat parallel"
+     * are split into. (More tasks than threads balance uneven repetitions.)
+     */
+    private static final int PARALLEL_TASKS_PER_THREAD = 4;
     /**
      * Reporter of runtime errors.
      */
@@ -18,48 +45,176 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     /**
      * The global environment.
      */
-    private final Environment globalEnvironment = new Environment();
+    private final Environment globalEnvironment;
     /**
      * The current environment which changes during execution as
      * blocks are entered and exited.
      */
-    private Environment currentEnvironment = globalEnvironment;
+    private Environment currentEnvironment;
     /**
-     * Variables (the keys) resolved by the resolver, which are mapped to
-     * the distance to the environment the corresponding variable is declared in.
+     * Max number of released function frames kept in the pool.
      */
-    private final Map<Token, Integer> resolved = new HashMap<>();
+    private static final int MAX_POOLED_FRAMES = 256;
     /**
-     * The names of standard library members (used by the resolver).
+     * Released function frames to reuse for later calls. Calls return
+     * in reverse order, so frames are acquired and released like a stack.
      */
-    private final List<String> nativeNames = new ArrayList<>();
+    private final Deque<Environment> framePool = new ArrayDeque<>();
+    /**
+     * Max number of nested calls. (Each call nests several Java frames,
+     * so the Java stack of the default thread overflows first, after a
+     * few hundred calls, which is reported with the same exit status.
+     * Only the IR interpreter, with its own stack, reaches the default.)
+     */
+    private int maxCallDepth = DEFAULT_MAX_CALL_DEPTH;
+    /**
+     * Number of calls currently nested.
+     */
+    private int callDepth = 0;
+    /**
+     * Max number of bytes each program may allocate for its values.
+     */
+    private long allocationQuota = AllocationMeter.UNLIMITED;
+    /**
+     * The accounting of the bytes allocated by the current program.
+     */
+    private AllocationMeter allocationMeter = new AllocationMeter(allocationQuota);
+    /**
+     * The scheduler sharing the threads with other programs, or null if
+     * the program runs without yielding (e.g. alone).
+     */
+    private Scheduler scheduler = null;
+    /**
+     * Max number of statements each program may execute.
+     */
+    private long maxStatementCount = UNLIMITED;
+    /**
+     * Max number of milliseconds (wall-clock time) each program may run for.
+     */
+    private long maxMilliseconds = UNLIMITED;
+    /**
+     * The counting of the statements executed and steps taken by the current program.
+     */
+    private StepMeter stepMeter = new StepMeter(UNLIMITED, UNLIMITED, null);
+    /**
+     * Max number of tasks each program may run at once.
+     */
+    private int maxTaskCount = TaskGroup.DEFAULT_MAX_TASK_COUNT;
+    /**
+     * The tasks and other work of the current program on other threads.
+     */
+    private TaskGroup taskGroup = new TaskGroup(maxTaskCount);
+    /**
+     * The symbol table of the program interpreted (for the lexemes of
+     * the packed source positions).
+     */
+    private Symbols symbols = null;
+    /**
+     * The native functions (bound in the global environment).
+     */
+    private final Map<String, NativeFunction> natives;
+    /**
+     * The native function displaying the output (which counts it).
+     */
+    private final NativeFunction.Display display;
 
     public Interpreter(ErrorReporter reporter, Logger logger) {
-        globalEnvironment.defineNative("time", new NativeFunction.Time());
-        globalEnvironment.defineNative("display", new NativeFunction.Display(logger));
-        nativeNames.add("time");
-        nativeNames.add("display");
+        // Tasks (and parallel repetitions) look up globals on other threads.
+        globalEnvironment = Environment.createConcurrent();
+        currentEnvironment = globalEnvironment;
+        natives = NativeFunction.createAll(logger);
+        defineNatives();
+        this.display = (NativeFunction.Display)natives.get("display");
         this.reporter = reporter;
     }
 
+    // Task running in parallel with the interpreter forked from (which
+    // waits for it). The task has its own current environment, calls, and
+    // meter, but shares the environments existing when it was forked.
+    private Interpreter(Interpreter forkedFrom) {
+        this.reporter = forkedFrom.reporter;
+        this.globalEnvironment = forkedFrom.globalEnvironment;
+        this.currentEnvironment = forkedFrom.currentEnvironment;
+        this.maxCallDepth = forkedFrom.maxCallDepth;
+        this.callDepth = forkedFrom.callDepth;
+        this.allocationQuota = forkedFrom.allocationQuota;
+        this.allocationMeter = forkedFrom.allocationMeter.fork();
+        this.natives = forkedFrom.natives;
+        this.display = forkedFrom.display;
+        this.symbols = forkedFrom.symbols;
+        // The statements of the task are added to those of the program,
+        // and tasks run on threads of their own, never holding a slot of
+        // the scheduler.
+        this.maxStatementCount = forkedFrom.maxStatementCount;
+        this.maxMilliseconds = forkedFrom.maxMilliseconds;
+        this.stepMeter = forkedFrom.stepMeter.fork();
+        this.scheduler = null;
+        this.maxTaskCount = forkedFrom.maxTaskCount;
+        this.taskGroup = forkedFrom.taskGroup;
+    }
+
     /**
      * Interpret and evaluate a syntax tree of statements.
      *
      * @param statements The statements.
+     * @param programSymbols The symbol table the statements were compiled with.
      */
-    public void interpret(List<Statement> statements) {
+    public void interpret(List<Statement> statements, Symbols programSymbols) {
+        symbols = programSymbols;
+        // Each program has a quota (and other limits) of its own.
+        allocationMeter = new AllocationMeter(allocationQuota);
+        stepMeter = new StepMeter(maxStatementCount, maxMilliseconds, scheduler);
+        taskGroup = new TaskGroup(maxTaskCount);
+        display.resetOutput();
+
         try {
             for (Statement statement : statements) {
                 execute(statement);
             }
         }
         catch (RuntimeError error) {
-            reporter.runtimeError(error);
+            reporter.runtimeError(error, symbols);
+        }
+        finally {
+            // The tasks of the program do not outlive it.
+            stepMeter.stop();
+            taskGroup.cancel();
+        }
+    }
+
+    /**
+     * Get the tasks and other work of the current (or last) program on
+     * other threads (e.g. to wait for them to be done after cancelling).
+     *
+     * @return The group of the program.
+     */
+    public TaskGroup getTaskGroup() {
+        return taskGroup;
+    }
+
+    /**
+     * Remove all global variables and definitions of the programs run,
+     * leaving only the natives (as when the interpreter was created), so
+     * that the interpreter can be reused for unrelated programs.
+     */
+    public void resetGlobals() {
+        globalEnvironment.clear();
+        defineNatives();
+        currentEnvironment = globalEnvironment;
+    }
+
+    /**
+     * Bind the native functions in the global environment.
+     */
+    private void defineNatives() {
+        for (Map.Entry<String, NativeFunction> entry : natives.entrySet()) {
+            globalEnvironment.defineNative(entry.getKey(), entry.getValue());
         }
     }
 
     @Override
     public Void visitBlockStatement(Statement.Block block) {
+        allocationMeter.record(AllocationMeter.ENVIRONMENT_BYTES);
         executeBlock(block.statements, new Environment(currentEnvironment));
 
         return null;
@@ -68,7 +223,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
     public Void visitCreateStatement(Statement.Create statement) {
         Object value = evaluate(statement.initializer);
-        currentEnvironment.define(statement.name, value);
+        define(statement.namePosition, value);
 
         return null;
     }
@@ -76,7 +231,7 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
     public Void visitChangeStatement(Statement.Change statement) {
         Object value = evaluate(statement.assignment);
-        assignVariable(statement.name, value);
+        assignVariable(statement.namePosition, statement.distance, value);
 
         return null;
     }
@@ -88,8 +243,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         // representation (Statement.Define) and the environment it was declared
         // in (currentEnvironment) for closure. Thus, the function is NOT called
         // here, merely saved to a variable name that can later on be called.
-        FrendliFunction function = new FrendliFunction(statement, currentEnvironment);
-        currentEnvironment.define(statement.name, function);
+        allocationMeter.allocate(AllocationMeter.FUNCTION_BYTES, statement.namePosition);
+        FrendliFunction function = new FrendliFunction(statement, currentEnvironment, SourcePosition.getLexeme(statement.namePosition, symbols));
+        define(statement.namePosition, function);
 
         return null;
     }
@@ -103,13 +259,13 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Void visitIfStatement(Statement.If statement) {
-        if (isTrue(evaluate(statement.condition), statement.location)) {
+        if (evaluateCondition(statement.condition, statement.position)) {
             execute(statement.thenBranch);
         }
         else {
             boolean otherwiseIfIsTrue = false;
             for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
-                if (isTrue(evaluate(otherwiseIf.condition), otherwiseIf.location)) {
+                if (evaluateCondition(otherwiseIf.condition, otherwiseIf.position)) {
                     execute(otherwiseIf.thenBranch);
                     otherwiseIfIsTrue = true;
                     break;
@@ -127,11 +283,19 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
     public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
         Object times = evaluate(statement.times);
-        verifyPositiveInteger(times, statement.location);
+        verifyPositiveInteger(times, statement.position);
 
         int exactTimes = (int)((double)times);
+        if (statement.isParallel) {
+            executeInParallel(statement, exactTimes);
+            return null;
+        }
+
+        Environment reusableEnvironment = createReusableEnvironment(statement.body);
         for (int i = 0; i < exactTimes; i++) {
-            execute(statement.body);
+            executeReusingEnvironment(statement.body, reusableEnvironment);
+            allocationMeter.check(statement.position);
+            countStep(statement.position);
         }
 
         return null;
@@ -139,8 +303,11 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
 
     @Override
     public Void visitRepeatWhileStatement(Statement.RepeatWhile statement) {
-        while (isTrue(evaluate(statement.condition), statement.location)) {
-            execute(statement.body);
+        Environment reusableEnvironment = createReusableEnvironment(statement.body);
+        while (evaluateCondition(statement.condition, statement.position)) {
+            executeReusingEnvironment(statement.body, reusableEnvironment);
+            allocationMeter.check(statement.position);
+            countStep(statement.position);
         }
 
         return null;
@@ -160,49 +327,77 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         throw new Return(value);
     }
 
+    @Override
+    public Void visitSequenceStatement(Statement.Sequence statement) {
+        // A sequence does not create a new environment itself, but copies
+        // of a block (e.g. an unrolled loop body) may share one.
+        Environment reusableEnvironment = createReusableEnvironment(statement);
+        executeReusingEnvironment(statement, reusableEnvironment);
+
+        return null;
+    }
+
     @Override
     public Object visitBinaryExpression(Expression.Binary expression) {
         // Evaluate the operands left to right.
         Object left = evaluate(expression.left);
-        Token operator = expression.operator;
+        long operator = expression.operatorPosition;
         Object right = evaluate(expression.right);
 
-        switch (operator.type) {
+        // Operands whose types have been proven by the type inferrer
+        // do not need to be verified again.
+        boolean areNumbersProven = isProven(expression.left, ValueType.NUMBER) && isProven(expression.right, ValueType.NUMBER);
+
+        switch (SourcePosition.getType(operator)) {
             case EQUALS_WORD:
                 return isEqual(left, right);
             case UNEQUALS:
                 return !isEqual(left, right);
             case GREATER_THAN:
-                verifyNumberOperands(left, right, operator);
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
                 return (double)left > (double)right;
             case GREATER_THAN_EQUALS:
-                verifyNumberOperands(left, right, operator);
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
                 return (double)left >= (double)right;
             case LESS_THAN:
-                verifyNumberOperands(left, right, operator);
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
                 return (double)left < (double)right;
             case LESS_THAN_EQUALS:
-                verifyNumberOperands(left, right, operator);
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
                 return (double)left <= (double)right;
             case MINUS:
-                verifyNumberOperands(left, right, operator);
-                return (double)left - (double)right;
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
+                return Numbers.valueOf((double)left - (double)right);
             case PLUS:
                 // Overload the + operator to allow for text concatenation.
-                if (left instanceof Double && right instanceof Double) {
-                    return (double)left + (double)right;
+                if (areNumbersProven || (left instanceof Double && right instanceof Double)) {
+                    return Numbers.valueOf((double)left + (double)right);
                 }
-                if (left instanceof String && right instanceof String) {
-                    return (String)left + (String)right;
+                if (Rope.isText(left) && Rope.isText(right)) {
+                    return allocationMeter.concatenate(left, right, operator);
                 }
                 throw new RuntimeError(operator, "The operands must be only numbers or only texts.");
             case SLASH:
-                verifyNumberOperands(left, right, operator);
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
                 verifyNonZeroOperand(right, operator);
-                return (double)left / (double)right;
+                return Numbers.valueOf((double)left / (double)right);
             case STAR:
-                verifyNumberOperands(left, right, operator);
-                return (double)left * (double)right;
+                if (!areNumbersProven) {
+                    verifyNumberOperands(left, right, operator);
+                }
+                return Numbers.valueOf((double)left * (double)right);
         }
 
         return null;
@@ -212,21 +407,52 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     public Object visitCallExpression(Expression.Call expression) {
         Object callee = evaluate(expression.callee);
         if (!(callee instanceof FrendliCallable)) {
-            throw new RuntimeError(expression.location, "You can only call what has previously been defined (with 'define').");
+            throw new RuntimeError(expression.position, "You can only call what has previously been defined (with 'define').");
         }
         FrendliCallable function = (FrendliCallable)callee;
 
-        // Evaluate the arguments from left to right.
+        // Evaluate the arguments from left to right. (Native functions
+        // only receive texts as strings, never as ropes.)
+        boolean isNative = (function instanceof NativeFunction);
         List<Object> arguments = new ArrayList<>();
         for (Expression argument : expression.arguments) {
-            arguments.add(evaluate(argument));
+            Object value = evaluate(argument);
+            arguments.add(isNative ? Rope.flatten(value) : value);
         }
 
         if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expression.location, "The number of arguments sent must be " + function.arity() + " but got " + arguments.size() + ".");
+            throw new RuntimeError(expression.position, "The number of arguments sent must be " + function.arity() + " but got " + arguments.size() + ".");
+        }
+
+        // The environments of calls to user-defined functions are accounted
+        // for when created (see createFrame and acquireFrame).
+        allocationMeter.allocate(AllocationMeter.CALL_BYTES, expression.position);
+
+        if (isNative) {
+            try {
+                return function.call(this, arguments);
+            }
+            catch (NativeFunction.Failure failure) {
+                throw failure.toError(expression.position);
+            }
+        }
+        if (callDepth == maxCallDepth) {
+            throw new LimitError(expression.position, ExitCode.CALL_DEPTH_LIMIT_ERROR, getCallDepthMessage(maxCallDepth));
         }
 
-        return function.call(this, arguments);
+        countStep(expression.position);
+        callDepth++;
+        try {
+            return function.call(this, arguments);
+        }
+        catch (StackOverflowError error) {
+            // Report the overflow at the innermost call (the error is not
+            // caught again by the callers as it is now a RuntimeError).
+            throw new LimitError(expression.position, ExitCode.CALL_DEPTH_LIMIT_ERROR, "The calls are nested deeper than the stack of the Java runtime allows. " + RECURSION_HINT);
+        }
+        finally {
+            callDepth--;
+        }
     }
 
     @Override
@@ -244,35 +470,37 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     @Override
     public Object visitLogicalExpression(Expression.Logical expression) {
         // Evaluate the left operand first.
-        Object left = evaluate(expression.left);
-        Token operator = expression.operator;
-        if (operator.type == TokenType.OR) {
-            if (isTrue(left, operator)) {
+        long operator = expression.operatorPosition;
+        boolean left = evaluateCondition(expression.left, operator);
+        if (SourcePosition.getType(operator) == TokenType.OR) {
+            if (left) {
                 return true;
             }
         }
         else /* operator == AND */ {
-            if (!isTrue(left, operator)) {
+            if (!left) {
                 return false;
             }
         }
 
-        return isTrue(evaluate(expression.right), operator);
+        return evaluateCondition(expression.right, operator);
     }
 
     @Override
     public Object visitUnaryExpression(Expression.Unary expression) {
-        Object right = evaluate(expression.right);
-        Token operator = expression.operator;
+        long operator = expression.operatorPosition;
 
         // Apply the operator to the right expression
         // after the expression has been evaluated.
-        switch (operator.type) {
+        switch (SourcePosition.getType(operator)) {
             case MINUS:
-                verifyNumberOperand(right, operator);
-                return -(double)right;
+                Object right = evaluate(expression.right);
+                if (!isProven(expression.right, ValueType.NUMBER)) {
+                    verifyNumberOperand(right, operator);
+                }
+                return Numbers.valueOf(-(double)right);
             case NOT:
-                return !isTrue(right, operator);
+                return !evaluateCondition(expression.right, operator);
         }
 
         return null;
@@ -280,37 +508,61 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     
     @Override
     public Object visitVariableExpression(Expression.Variable expression) {
-        return getVariable(expression.name);
+        return getVariable(expression.namePosition, expression.distance);
+    }
+
+    /**
+     * Define a variable in the current environment.
+     *
+     * @param name The position of the variable name.
+     * @param value The value.
+     */
+    void define(long name, Object value) {
+        // Redefining a variable in the same scope is not allowed
+        // (e.g. two "create" or "define" statements with the same variable name)
+        if (!currentEnvironment.define(name, value)) {
+            Object existing = currentEnvironment.getAt(0, name);
+            throw new RuntimeError(name, Environment.getRedefinitionMessage(SourcePosition.getLexeme(name, symbols), existing));
+        }
+    }
+
+    /**
+     * Set the symbol table of the statements evaluated outside of a
+     * program (see evaluateWithin).
+     *
+     * @param programSymbols The symbol table.
+     */
+    void setSymbols(Symbols programSymbols) {
+        symbols = programSymbols;
     }
 
     /**
      * Get the value bound to a variable.
      *
-     * @param name The variable name.
+     * @param name The position of the variable name.
+     * @param distance The distance to the environment the variable is declared in.
      * @return The value.
      */
-    private Object getVariable(Token name) {
-        // The distance will always be 0 or greater and never null due to the
-        // Resolver reporting an error if the local or global name (including
+    private Object getVariable(long name, int distance) {
+        // The distance will always be 0 or greater due to the Resolver
+        // reporting an error if the local or global name (including
         // native) cannot be resolved (thereby not proceeding to the interpreter).
         // (I.e. this is a coupling point between Resolver and Interpreter.)
-        Integer distance = resolved.get(name);
-
         return currentEnvironment.getAt(distance, name);
     }
 
     /**
      * Assign a value to a variable.
      *
-     * @param name The variable name.
+     * @param name The position of the variable name.
+     * @param distance The distance to the environment the variable is declared in.
      * @param value The value.
      */
-    private void assignVariable(Token name, Object value) {
-        // The distance will always be 0 or greater and never null due to the
-        // Resolver reporting an error if the local or global name (including
+    private void assignVariable(long name, int distance, Object value) {
+        // The distance will always be 0 or greater due to the Resolver
+        // reporting an error if the local or global name (including
         // native) cannot be resolved (thereby not proceeding to the interpreter).
         // (I.e. this is a coupling point between Resolver and Interpreter.)
-        Integer distance = resolved.get(name);
         currentEnvironment.assignAt(distance, name, value);
     }
 
@@ -324,12 +576,30 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
         return expression.accept(this);
     }
 
+    /**
+     * Evaluate a condition and verify that it is a boolean
+     * unless its type has been proven.
+     *
+     * @param condition The condition to evaluate.
+     * @param location The position of the nearest token.
+     * @return Whether it is true.
+     */
+    private boolean evaluateCondition(Expression condition, long location) {
+        Object value = evaluate(condition);
+        if (isProven(condition, ValueType.BOOLEAN)) {
+            return (boolean)value;
+        }
+
+        return isTrue(value, location);
+    }
+
     /**
      * Execute a statement.
      *
      * @param statement The statement to execute.
      */
     private void execute(Statement statement) {
+        stepMeter.countStatement();
         statement.accept(this);
     }
 
@@ -360,13 +630,213 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     }
 
     /**
-     * Add a local variable to the resolved data.
+     * Create an environment for a call to a function whose environment
+     * may be captured.
+     *
+     * @param closure The environment the function was defined in.
+     * @return The (empty) environment.
+     */
+    public Environment createFrame(Environment closure) {
+        allocationMeter.record(AllocationMeter.ENVIRONMENT_BYTES);
+
+        return new Environment(closure);
+    }
+
+    /**
+     * Get an environment for a call to a function whose environment
+     * is never captured, reusing a pooled frame if there is one.
+     *
+     * @param closure The environment the function was defined in.
+     * @return The (empty) environment.
+     */
+    public Environment acquireFrame(Environment closure) {
+        Environment frame = framePool.pollFirst();
+        if (frame == null) {
+            return createFrame(closure);
+        }
+
+        frame.enclosing = closure;
+        return frame;
+    }
+
+    /**
+     * Return the environment of a call to the pool once the call is
+     * done. The frame is cleared so no values leak into later calls
+     * (or are kept from being garbage collected).
      *
-     * @param name The name to resolve.
-     * @param distance The distance from the innermost scope to where the variable is declared.
+     * @param frame The environment acquired for the call.
      */
-    public void resolve(Token name, int distance) {
-        resolved.put(name, distance);
+    public void releaseFrame(Environment frame) {
+        frame.reset(null);
+        if (framePool.size() < MAX_POOLED_FRAMES) {
+            framePool.addFirst(frame);
+        }
+    }
+
+    /**
+     * Execute the repetitions of "repeat parallel" as tasks on the common
+     * ForkJoin pool, waiting for all of them to be done (for at most the
+     * time the program has left, stopping them otherwise). Each repetition
+     * has a scope of its own, and the resolver verifies that none changes
+     * a variable shared with the others. If repetitions throw runtime
+     * errors, the error of the first repetition (in order) is thrown.
+     *
+     * @param statement The loop.
+     * @param times The number of times to repeat the body.
+     */
+    private void executeInParallel(Statement.RepeatTimes statement, int times) {
+        int taskCount = Math.min(times, PARALLEL_TASKS_PER_THREAD * ForkJoinPool.getCommonPoolParallelism());
+        Interpreter[] tasks = new Interpreter[taskCount];
+        RuntimeError[] errors = new RuntimeError[taskCount];
+        // Tasks after one that failed stop early since their errors would not be reported.
+        AtomicInteger firstFailedTask = new AtomicInteger(taskCount);
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < taskCount; t++) {
+            int task = t;
+            int start = (int)((long)times * task / taskCount);
+            int end = (int)((long)times * (task + 1) / taskCount);
+            tasks[task] = new Interpreter(this);
+            callables.add(taskGroup.keep(() -> {
+                Interpreter interpreter = tasks[task];
+                Environment reusableEnvironment = interpreter.createReusableEnvironment(statement.body);
+                try {
+                    for (int i = start; i < end && firstFailedTask.get() > task; i++) {
+                        interpreter.executeReusingEnvironment(statement.body, reusableEnvironment);
+                        interpreter.allocationMeter.check(statement.position);
+                    }
+                }
+                catch (RuntimeError error) {
+                    errors[task] = error;
+                    firstFailedTask.accumulateAndGet(task, Math::min);
+                }
+                finally {
+                    interpreter.stepMeter.flush();
+                }
+                return null;
+            }));
+        }
+
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Callable<Void> callable : callables) {
+            futures.add(ForkJoinPool.commonPool().submit(callable));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                stepMeter.await(timeout -> getParallelResult(future, timeout));
+            }
+        }
+        catch (InterruptedException | TimeoutException e) {
+            // The repetitions still running abort once they notice.
+            stepMeter.stop();
+            for (Future<Void> future : futures) {
+                future.cancel(false);
+            }
+            if (e instanceof TimeoutException) {
+                throw new LimitError(statement.position, ExitCode.TIME_LIMIT_ERROR, stepMeter.getTimeLimitMessage());
+            }
+            throw new LimitError(statement.position, ExitCode.INTERRUPTED, "The program was stopped before it was done.");
+        }
+
+        for (Interpreter task : tasks) {
+            allocationMeter.join(task.allocationMeter);
+        }
+        for (RuntimeError error : errors) {
+            if (error != null) {
+                throw error;
+            }
+        }
+        allocationMeter.check(statement.position);
+        // Verify the limits with the statements of all repetitions added.
+        countStep(statement.position);
+    }
+
+    /**
+     * Wait for the repetitions of a task of "repeat parallel" to be done.
+     *
+     * @param future The future of the task.
+     * @param timeout The max number of nanoseconds to wait for.
+     * @return Nothing.
+     * @throws InterruptedException If the thread waiting was interrupted.
+     * @throws TimeoutException If the task is not done after the timeout.
+     */
+    private static Void getParallelResult(Future<Void> future, long timeout) throws InterruptedException, TimeoutException {
+        try {
+            return future.get(timeout, TimeUnit.NANOSECONDS);
+        }
+        catch (ExecutionException e) {
+            // Errors other than runtime errors are not caught by the tasks.
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw (RuntimeException)e.getCause();
+        }
+    }
+
+    /**
+     * Create an environment to reuse for each execution of a block
+     * (e.g. each iteration of a loop body).
+     *
+     * @param statement The block, or a sequence of blocks.
+     * @return The environment, or null if each execution needs a new environment.
+     */
+    private Environment createReusableEnvironment(Statement statement) {
+        if (canReuseEnvironment(statement)) {
+            allocationMeter.record(AllocationMeter.ENVIRONMENT_BYTES);
+            return new Environment(currentEnvironment);
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if the environment of a block, or of all blocks in a
+     * sequence, can be reused for each execution.
+     *
+     * @param statement The block or sequence.
+     * @return Whether the environment can be reused.
+     */
+    private boolean canReuseEnvironment(Statement statement) {
+        // The environment of each execution must be new if a function
+        // defined in the block may capture it (i.e. as its closure).
+        if (statement instanceof Statement.Block) {
+            return !((Statement.Block)statement).containsDefinition;
+        }
+        if (statement instanceof Statement.Sequence) {
+            for (Statement inner : ((Statement.Sequence)statement).statements) {
+                if (!(inner instanceof Statement.Block) || !canReuseEnvironment(inner)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Execute a block (e.g. one iteration of a loop body), or each
+     * statement in a sequence, in a reused environment.
+     *
+     * @param statement The block or sequence.
+     * @param reusableEnvironment The environment to reuse (or null to create new ones).
+     */
+    private void executeReusingEnvironment(Statement statement, Environment reusableEnvironment) {
+        if (statement instanceof Statement.Sequence) {
+            for (Statement inner : ((Statement.Sequence)statement).statements) {
+                executeReusingEnvironment(inner, reusableEnvironment);
+            }
+            return;
+        }
+        if (reusableEnvironment == null) {
+            execute(statement);
+            return;
+        }
+
+        // Each execution still has its own scope since the
+        // bindings of the previous execution are removed.
+        reusableEnvironment.clear();
+        executeBlock(((Statement.Block)statement).statements, reusableEnvironment);
     }
 
     /**
@@ -387,17 +857,29 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
             return false;
         }
 
-        return first.equals(second);
+        // Texts are equal by content whether strings or ropes.
+        return Rope.flatten(first).equals(Rope.flatten(second));
+    }
+
+    /**
+     * Check if the type of an expression has been proven by the type inferrer.
+     *
+     * @param expression The expression.
+     * @param type The type.
+     * @return Whether the expression always evaluates to the type.
+     */
+    private boolean isProven(Expression expression, ValueType type) {
+        return expression.provenType == type;
     }
 
     /**
      * Check if an operand is true.
      *
      * @param operand The operand to be checked.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      * @return Whether it is true.
      */
-    private boolean isTrue(Object operand, Token location) {
+    private boolean isTrue(Object operand, long location) {
         verifyBooleanOperand(operand, location);
 
         return (boolean)operand;
@@ -407,9 +889,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
      * Verify that the operand is a boolean and throw a RuntimeError if not.
      *
      * @param operand The operand.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      */
-    private void verifyBooleanOperand(Object operand, Token location) {
+    private void verifyBooleanOperand(Object operand, long location) {
         if (operand instanceof Boolean) {
             return;
         }
@@ -422,9 +904,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
      * a RuntimeError if not.
      *
      * @param operand The operand.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      */
-    private void verifyNonZeroOperand(Object operand, Token location) {
+    private void verifyNonZeroOperand(Object operand, long location) {
         if (operand instanceof Double && (double)operand != 0) {
             return;
         }
@@ -436,9 +918,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
      * Verify that the operand is a number and throw a RuntimeError if not.
      *
      * @param operand The operand.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      */
-    private void verifyNumberOperand(Object operand, Token location) {
+    private void verifyNumberOperand(Object operand, long location) {
         if (operand instanceof Double) {
             return;
         }
@@ -451,9 +933,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
      *
      * @param left The left operand.
      * @param right The right operand.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      */
-    private void verifyNumberOperands(Object left, Object right, Token location) {
+    private void verifyNumberOperands(Object left, Object right, long location) {
         // Evaluate both operands before reporting the error.
         if (left instanceof Double && right instanceof Double) {
             return;
@@ -467,9 +949,9 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
      * integer, otherwise throw a RuntimeError.
      *
      * @param number The number.
-     * @param location The location of the nearest token.
+     * @param location The position of the nearest token.
      */
-    private void verifyPositiveInteger(Object number, Token location) {
+    private void verifyPositiveInteger(Object number, long location) {
         verifyNumberOperand(number, location);
         double numberDouble = (double)number;
         if (numberDouble > 0 && Math.floor(numberDouble) == numberDouble) {
@@ -480,11 +962,177 @@ public class Interpreter implements ExpressionVisitor<Object>, StatementVisitor<
     }
 
     /**
-     * Get the names of the native members (standard library).
+     * Set the max number of tasks each program may run at once.
+     *
+     * @param newMaxTaskCount The number of tasks.
+     */
+    public void setMaxTaskCount(int newMaxTaskCount) {
+        maxTaskCount = newMaxTaskCount;
+    }
+
+    /**
+     * Set the max number of nested calls.
+     *
+     * @param newMaxCallDepth The max depth.
+     */
+    public void setMaxCallDepth(int newMaxCallDepth) {
+        maxCallDepth = newMaxCallDepth;
+    }
+
+    /**
+     * Count a loop repetition or call, verifying the limits of the program
+     * (and yielding to other programs once its time slice is over).
+     *
+     * @param location The position of the loop or call.
+     */
+    private void countStep(long location) {
+        stepMeter.countStep(location);
+    }
+
+    /**
+     * Create the interpreter of a task (see Task) started by this one.
+     * The task runs on a thread (and stack) of its own, so its calls
+     * are counted from zero.
+     *
+     * @return The interpreter of the task.
+     */
+    Interpreter forkTask() {
+        Interpreter task = new Interpreter(this);
+        task.callDepth = 0;
+
+        return task;
+    }
+
+    /**
+     * Start running a task (see Task) of the program on another thread,
+     * unless it already runs as many tasks as allowed.
+     *
+     * @param executor The executor running the task.
+     * @param callable The call of the task.
+     * @return The future of the task.
+     */
+    <T> Future<T> startTask(Executor executor, Callable<T> callable) {
+        Future<T> future = taskGroup.startTask(executor, callable);
+        allocationMeter.record(AllocationMeter.TASK_BYTES);
+
+        return future;
+    }
+
+    /**
+     * Add the statements executed by the task (of this interpreter)
+     * to those of the program once it is done.
+     */
+    void finishTask() {
+        stepMeter.flush();
+    }
+
+    /**
+     * Account for the values allocated by a task once it is done.
+     *
+     * @param task The interpreter of the task.
+     */
+    void joinTask(Interpreter task) {
+        allocationMeter.join(task.allocationMeter);
+    }
+
+    /**
+     * Perform a blocking operation of a native function (e.g. taking a
+     * value out of a channel), waiting for at most the time the program
+     * has left.
+     *
+     * @param operation The operation.
+     * @param action What the program waits while doing (for the error message).
+     * @return The result of the operation.
+     */
+    <T> T await(StepMeter.BlockingOperation<T> operation, String action) {
+        try {
+            return stepMeter.await(operation);
+        }
+        catch (InterruptedException e) {
+            throw new NativeFunction.Failure(ExitCode.INTERRUPTED, "The program was stopped while " + action + ".");
+        }
+        catch (TimeoutException e) {
+            throw new NativeFunction.Failure(ExitCode.TIME_LIMIT_ERROR, stepMeter.getTimeLimitMessage());
+        }
+    }
+
+    /**
+     * Evaluate an expression in the global environment outside of any
+     * program (e.g. a call evaluated at compile time by the partial
+     * evaluator). The statements executed are counted by the meter given,
+     * and errors (including exceeding the limits) are thrown rather than
+     * reported.
+     *
+     * @param expression The expression.
+     * @param meter The meter counting the statements executed.
+     * @return The resulting value (never a rope).
+     */
+    Object evaluateWithin(Expression expression, StepMeter meter) {
+        allocationMeter = new AllocationMeter(allocationQuota);
+        stepMeter = meter;
+        currentEnvironment = globalEnvironment;
+        callDepth = 0;
+
+        return Rope.flatten(evaluate(expression));
+    }
+
+    /**
+     * Get the message of the error for nesting more calls than allowed
+     * (shared by the interpreters).
+     *
+     * @param maxCallDepth The max number of nested calls.
+     * @return The message.
+     */
+    public static String getCallDepthMessage(int maxCallDepth) {
+        return "The calls are nested deeper than allowed (" + maxCallDepth + " calls). " + RECURSION_HINT;
+    }
+
+    /**
+     * Set the max number of bytes each program may allocate (in total) for
+     * its values (texts, environments, and functions). A program exceeding
+     * the quota is aborted with a runtime error.
+     *
+     * @param quota The number of bytes (or AllocationMeter.UNLIMITED).
+     */
+    public void setAllocationQuota(long quota) {
+        allocationQuota = quota;
+    }
+
+    /**
+     * Set the scheduler sharing the threads with other programs. The
+     * caller holds a slot of the scheduler while interpreting.
+     *
+     * @param newScheduler The scheduler (or null to never yield).
+     */
+    public void setScheduler(Scheduler newScheduler) {
+        scheduler = newScheduler;
+    }
+
+    /**
+     * Set the max number of statements each program may execute.
+     *
+     * @param newMaxStatementCount The number of statements (or UNLIMITED).
+     */
+    public void setMaxStatementCount(long newMaxStatementCount) {
+        maxStatementCount = newMaxStatementCount;
+    }
+
+    /**
+     * Set the max number of milliseconds (wall-clock time, including
+     * any waiting for other programs) each program may run for.
+     *
+     * @param newMaxMilliseconds The number of milliseconds (or UNLIMITED).
+     */
+    public void setMaxMilliseconds(long newMaxMilliseconds) {
+        maxMilliseconds = newMaxMilliseconds;
+    }
+
+    /**
+     * Set the max number of bytes (UTF-8) each program may display.
      *
-     * @return The names of the native members.
+     * @param newMaxOutputBytes The number of bytes (or NativeFunction.UNLIMITED_OUTPUT).
      */
-    public List<String> getNativeNames() {
-        return List.copyOf(nativeNames);
+    public void setMaxOutputBytes(long newMaxOutputBytes) {
+        display.setMaxOutputBytes(newMaxOutputBytes);
     }
 }
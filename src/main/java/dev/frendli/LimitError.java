@@ -0,0 +1,24 @@
+package dev.frendli;
+
+/**
+ * Runtime error aborting a program that exceeded one of its limits (e.g.
+ * its memory or time) or was stopped by its host. The exit status tells
+ * which, so that hosts (e.g. a grading server) can tell a program that
+ * failed apart from one that was aborted.
+ */
+public class LimitError extends RuntimeError {
+    /**
+     * The exit status of the program aborted.
+     */
+    public final ExitCode exitCode;
+
+    public LimitError(long position, ExitCode exitCode, String message) {
+        super(position, message);
+        this.exitCode = exitCode;
+    }
+
+    @Override
+    public ExitCode getExitCode() {
+        return exitCode;
+    }
+}
@@ -0,0 +1,233 @@
+package dev.frendli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The loop unroller - an optimization pass over the resolved syntax tree
+ * that replaces "repeat ... times" loops having a literal number of times
+ * and a short body with copies of the body. Loops repeated a few times are
+ * unrolled fully into straight-line statements, and loops repeated more
+ * times are unrolled partially by repeating a sequence of several copies.
+ * Each copy is a deep copy of the body (see TreeCopier). Bodies declaring
+ * names are copied as blocks, each with a new scope, while the statements
+ * of other bodies are inlined so that no scope is created per copy. The
+ * statement lists are rewritten in place, and visiting a statement returns
+ * the number of statements it consists of.
+ */
+public class LoopUnroller implements StatementVisitor<Integer> {
+    /**
+     * Default max number of times a loop may be repeated to be fully unrolled.
+     */
+    public static final int DEFAULT_MAX_FULLY_UNROLLED_TIMES = 8;
+    /**
+     * Default number of body copies per iteration of a partially unrolled loop.
+     */
+    public static final int DEFAULT_UNROLL_FACTOR = 4;
+    /**
+     * Max number of statements (including nested ones) in an unrolled body.
+     */
+    private static final int MAX_BODY_SIZE = 8;
+    /**
+     * Max number of times a loop may be repeated to be fully unrolled.
+     */
+    private final int maxFullyUnrolledTimes;
+    /**
+     * Number of body copies per iteration of a partially unrolled loop.
+     * (A factor of 1 or less disables partial unrolling.)
+     */
+    private final int unrollFactor;
+
+    public LoopUnroller() {
+        this(DEFAULT_MAX_FULLY_UNROLLED_TIMES, DEFAULT_UNROLL_FACTOR);
+    }
+
+    public LoopUnroller(int maxFullyUnrolledTimes, int unrollFactor) {
+        this.maxFullyUnrolledTimes = maxFullyUnrolledTimes;
+        this.unrollFactor = unrollFactor;
+    }
+
+    /**
+     * Unroll the loops in a list of resolved statements.
+     *
+     * @param statements The statements (rewritten in place).
+     * @return The number of statements after unrolling.
+     */
+    public int unroll(List<Statement> statements) {
+        int size = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            Statement statement = statements.get(i);
+            int statementSize = statement.accept(this);
+
+            if (statement instanceof Statement.RepeatTimes) {
+                Statement.RepeatTimes repeatTimes = (Statement.RepeatTimes)statement;
+                int bodySize = statementSize - 1;
+                int times = getLiteralTimes(repeatTimes.times);
+                // Parallel repetitions are kept apart (each is run by a task).
+                if (times > 0 && bodySize <= MAX_BODY_SIZE && !repeatTimes.isParallel) {
+                    if (times <= maxFullyUnrolledTimes) {
+                        statements.set(i, unrollFully(repeatTimes, times));
+                        statementSize = bodySize * times;
+                    }
+                    else if (unrollFactor > 1) {
+                        int factor = Math.min(unrollFactor, times);
+                        statements.set(i, unrollPartially(repeatTimes, times, factor));
+                        statementSize = 1 + bodySize * (factor + times % factor);
+                    }
+                }
+            }
+
+            size += statementSize;
+        }
+
+        return size;
+    }
+
+    @Override
+    public Integer visitBlockStatement(Statement.Block statement) {
+        return unroll(statement.statements);
+    }
+
+    @Override
+    public Integer visitCreateStatement(Statement.Create statement) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitChangeStatement(Statement.Change statement) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitDefineStatement(Statement.Define statement) {
+        return 1 + unroll(statement.body.statements);
+    }
+
+    @Override
+    public Integer visitExpressionStatement(Statement.ExpressionStatement statement) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitIfStatement(Statement.If statement) {
+        int size = 1 + statement.thenBranch.accept(this);
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            size += otherwiseIf.thenBranch.accept(this);
+        }
+        if (statement.otherwiseBranch != null) {
+            size += statement.otherwiseBranch.accept(this);
+        }
+
+        return size;
+    }
+
+    @Override
+    public Integer visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        return 1 + statement.body.accept(this);
+    }
+
+    @Override
+    public Integer visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        return 1 + statement.body.accept(this);
+    }
+
+    @Override
+    public Integer visitReturnStatement(Statement.Return statement) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitReturnWithStatement(Statement.ReturnWith statement) {
+        return 1;
+    }
+
+    @Override
+    public Integer visitSequenceStatement(Statement.Sequence statement) {
+        int size = 0;
+        for (Statement inner : statement.statements) {
+            size += inner.accept(this);
+        }
+
+        return size;
+    }
+
+    /**
+     * Unroll a loop fully into copies of its body.
+     *
+     * @param statement The loop.
+     * @param times The number of times the loop is repeated.
+     * @return The unrolled statement.
+     */
+    private Statement unrollFully(Statement.RepeatTimes statement, int times) {
+        return new Statement.Sequence(copy(statement.body, times));
+    }
+
+    /**
+     * Unroll a loop partially by repeating a sequence of copies of
+     * its body, then adding the copies remaining.
+     *
+     * @param statement The loop.
+     * @param times The number of times the loop is repeated.
+     * @param factor The number of copies to repeat.
+     * @return The unrolled statement.
+     */
+    private Statement unrollPartially(Statement.RepeatTimes statement, int times, int factor) {
+        Expression repeatedTimes = new Expression.Literal(Numbers.valueOf(times / factor));
+        repeatedTimes.provenType = ValueType.NUMBER;
+        Statement repeated = new Statement.RepeatTimes(repeatedTimes, new Statement.Sequence(copy(statement.body, factor)), statement.position);
+
+        List<Statement> statements = new ArrayList<>();
+        statements.add(repeated);
+        statements.addAll(copy(statement.body, times % factor));
+
+        return new Statement.Sequence(statements);
+    }
+
+    /**
+     * Get the number of times a loop is repeated if it is
+     * a literal that is a valid (positive integer) number.
+     *
+     * @param times The expression for the number of times.
+     * @return The number of times, or 0 if not a valid literal.
+     */
+    private int getLiteralTimes(Expression times) {
+        while (times instanceof Expression.Grouping) {
+            times = ((Expression.Grouping)times).expression;
+        }
+        if (!(times instanceof Expression.Literal) || !(((Expression.Literal)times).value instanceof Double)) {
+            return 0;
+        }
+
+        // Invalid numbers are left for the interpreter to report.
+        double value = (double)((Expression.Literal)times).value;
+        if (value > 0 && value <= Integer.MAX_VALUE && Math.floor(value) == value) {
+            return (int)value;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Create copies of a loop body.
+     *
+     * @param body The body.
+     * @param count The number of copies.
+     * @return The copies.
+     */
+    private List<Statement> copy(Statement body, int count) {
+        List<Statement> copies = new ArrayList<>();
+        Statement.Block block = (Statement.Block)body;
+        // Names declared by each copy must be bound in a scope of its own.
+        boolean isInlining = !TreeCopier.isDeclaring(block.statements);
+        for (int i = 0; i < count; i++) {
+            if (isInlining) {
+                copies.addAll(TreeCopier.copyInlined(block));
+            }
+            else {
+                copies.add(TreeCopier.copyBlock(block));
+            }
+        }
+
+        return copies;
+    }
+}
@@ -1,6 +1,11 @@
 package dev.frendli;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 // All native functions reside here as individual classes
 // inheriting from the "NativeFunction" base class. Each
@@ -11,6 +16,102 @@ import java.util.List;
  * A function that is native to Frendli (runtime representation).
  */
 public abstract class NativeFunction implements FrendliCallable {
+    /**
+     * The max output of programs that may display without limit.
+     */
+    public static final long UNLIMITED_OUTPUT = Long.MAX_VALUE;
+
+    /**
+     * Create all native functions (the standard library).
+     *
+     * @param logger The logger used for output.
+     * @return The native functions mapped by name.
+     */
+    public static Map<String, NativeFunction> createAll(Logger logger) {
+        Map<String, NativeFunction> natives = new LinkedHashMap<>();
+        natives.put("time", new Time());
+        natives.put("display", new Display(logger));
+        natives.put("start", new Start());
+        natives.put("wait", new Wait());
+        natives.put("channel", new CreateChannel());
+        natives.put("put", new Put());
+        natives.put("take", new Take());
+
+        return natives;
+    }
+
+    /**
+     * Get the names of all native functions (e.g. for the resolver,
+     * which does not need the functions themselves).
+     *
+     * @return The names.
+     */
+    public static List<String> getNames() {
+        return List.copyOf(createAll(null).keySet());
+    }
+
+    /**
+     * Get the names of the native functions running or waiting for tasks
+     * (which only the interpreter of the syntax tree can execute).
+     *
+     * @return The names.
+     */
+    public static List<String> getConcurrentNames() {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, NativeFunction> entry : createAll(null).entrySet()) {
+            if (entry.getValue().isConcurrent()) {
+                names.add(entry.getKey());
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Check if the native function runs or waits for tasks (or values
+     * passed between them), needing tasks to run on threads of their own.
+     *
+     * @return Whether it is concurrent.
+     */
+    public boolean isConcurrent() {
+        return false;
+    }
+
+    /**
+     * Error thrown by a native function for invalid arguments. (Natives
+     * do not know where they are called, so the interpreters report it
+     * as a runtime error at the call.)
+     */
+    public static class Failure extends RuntimeException {
+        /**
+         * The exit status of the program if aborted by a limit, or null if not.
+         */
+        private final ExitCode limitExitCode;
+
+        public Failure(String message) {
+            this(null, message);
+        }
+
+        public Failure(ExitCode limitExitCode, String message) {
+            super(message);
+            this.limitExitCode = limitExitCode;
+        }
+
+        /**
+         * Get the runtime error to report at the call.
+         *
+         * @param position The position of the call.
+         * @return The error.
+         */
+        public RuntimeError toError(long position) {
+            if (limitExitCode != null) {
+                return new LimitError(position, limitExitCode, getMessage());
+            }
+
+            return new RuntimeError(position, getMessage());
+        }
+    }
+
     /**
      * Native function for getting the number of milliseconds since the epoch.
      */
@@ -22,7 +123,7 @@ public abstract class NativeFunction implements FrendliCallable {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            return (double)System.currentTimeMillis();
+            return Numbers.valueOf(System.currentTimeMillis());
         }
 
         @Override
@@ -36,10 +137,34 @@ public abstract class NativeFunction implements FrendliCallable {
      */
     public static class Display extends NativeFunction {
         private final Logger logger;
+        /**
+         * Max number of bytes (UTF-8, with a newline per line) each program may display.
+         */
+        private long maxOutputBytes = UNLIMITED_OUTPUT;
+        /**
+         * Number of bytes displayed by the current program (and its tasks).
+         */
+        private final AtomicLong outputBytes = new AtomicLong();
 
         public Display(Logger logger) {
             this.logger = logger;
         }
+
+        /**
+         * Set the max number of bytes each program may display.
+         *
+         * @param newMaxOutputBytes The number of bytes (or UNLIMITED_OUTPUT).
+         */
+        public void setMaxOutputBytes(long newMaxOutputBytes) {
+            maxOutputBytes = newMaxOutputBytes;
+        }
+
+        /**
+         * Start counting the output of a new program.
+         */
+        public void resetOutput() {
+            outputBytes.set(0);
+        }
         @Override
         public int arity() {
             return 1;
@@ -47,7 +172,14 @@ public abstract class NativeFunction implements FrendliCallable {
 
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
-            print(stringify(arguments.get(0)));
+            String text = stringify(arguments.get(0));
+            if (maxOutputBytes != UNLIMITED_OUTPUT) {
+                long bytes = text.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (outputBytes.addAndGet(bytes) > maxOutputBytes) {
+                    throw new Failure(ExitCode.OUTPUT_LIMIT_ERROR, "The program has displayed more than it is allowed to (" + maxOutputBytes + " bytes).");
+                }
+            }
+            print(text);
 
             return null;
         }
@@ -81,7 +213,181 @@ public abstract class NativeFunction implements FrendliCallable {
         private void print(String value) {
             // The default log mechanism is `System.out.println()`, but
             // tests may modify this behavior to instead log to a file.
-            logger.log(value);
+            // (Tasks may display at the same time, so lines never interleave.)
+            synchronized (logger) {
+                logger.log(value);
+            }
+        }
+    }
+
+    /**
+     * Native function for starting a call of a definition (without
+     * parameters) as a task running at the same time as the caller.
+     */
+    public static class Start extends NativeFunction {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            Object value = arguments.get(0);
+            if (!(value instanceof FrendliCallable)) {
+                throw new Failure("You can only start what has previously been defined (with 'define').");
+            }
+            FrendliCallable function = (FrendliCallable)value;
+            if (function.arity() != 0) {
+                throw new Failure("You can only start a definition without parameters, but it has " + function.arity() + ".");
+            }
+
+            return Task.start(interpreter, function);
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "<built-in definition: start>";
+        }
+    }
+
+    /**
+     * Native function for waiting for a task to be done, getting the value
+     * it returned (or the runtime error that occurred in it).
+     */
+    public static class Wait extends NativeFunction {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            Object value = arguments.get(0);
+            if (!(value instanceof Task)) {
+                throw new Failure("You can only wait for a task (created with 'start').");
+            }
+
+            return ((Task)value).await(interpreter);
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "<built-in definition: wait>";
+        }
+    }
+
+    /**
+     * Native function for creating a channel holding at most a number of values.
+     */
+    public static class CreateChannel extends NativeFunction {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            Object capacity = arguments.get(0);
+            boolean isPositiveInteger = (capacity instanceof Double && (double)capacity >= 1
+                    && (double)capacity <= Integer.MAX_VALUE && Math.floor((double)capacity) == (double)capacity);
+            if (!isPositiveInteger) {
+                throw new Failure("The number of values a channel holds must be a positive integer.");
+            }
+
+            return new Channel((int)(double)capacity);
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "<built-in definition: channel>";
+        }
+    }
+
+    /**
+     * Native function for putting a value into a channel, waiting while it is full.
+     */
+    public static class Put extends NativeFunction {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            Channel channel = toChannel(arguments.get(0), "put into");
+            Object value = arguments.get(1);
+
+            return interpreter.await(timeout -> {
+                channel.put(value, timeout);
+                return null;
+            }, "putting a value into a channel");
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return true;
         }
+
+        @Override
+        public String toString() {
+            return "<built-in definition: put>";
+        }
+    }
+
+    /**
+     * Native function for taking the first value out of a channel, waiting while it is empty.
+     */
+    public static class Take extends NativeFunction {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            Channel channel = toChannel(arguments.get(0), "take out of");
+
+            return interpreter.await(channel::take, "taking a value out of a channel");
+        }
+
+        @Override
+        public boolean isConcurrent() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "<built-in definition: take>";
+        }
+    }
+
+    /**
+     * Verify that a value is a channel.
+     *
+     * @param value The value.
+     * @param action The action on the channel (for the error message).
+     * @return The channel.
+     */
+    private static Channel toChannel(Object value, String action) {
+        if (!(value instanceof Channel)) {
+            throw new Failure("You can only " + action + " a channel (created with 'channel').");
+        }
+
+        return (Channel)value;
     }
 }
@@ -0,0 +1,75 @@
+package dev.frendli;
+
+/**
+ * The number cache - canonical boxed values for common numbers. Frendli
+ * numbers are doubles, and "Double.valueOf" (unlike "Integer.valueOf") has
+ * no cache, so every arithmetic result would otherwise allocate a new Double
+ * (e.g. on every step of "change i = i + 1"). Numeric results are instead
+ * boxed through this cache, which covers the integral values in a range
+ * (by default -1024..65535) and a few common fractions.
+ *
+ * The range may be configured with the system properties
+ * "frendli.numbers.low" and "frendli.numbers.high".
+ */
+public final class Numbers {
+    /**
+     * Default lowest integral value cached.
+     */
+    private static final int DEFAULT_LOW = -1024;
+    /**
+     * Default highest integral value cached.
+     */
+    private static final int DEFAULT_HIGH = 65535;
+    /**
+     * Lowest integral value cached.
+     */
+    private static final int LOW = Integer.getInteger("frendli.numbers.low", DEFAULT_LOW);
+    /**
+     * Highest integral value cached.
+     */
+    private static final int HIGH = Math.max(LOW - 1, Integer.getInteger("frendli.numbers.high", DEFAULT_HIGH));
+    /**
+     * The cached integral values (indexed by value minus LOW).
+     */
+    private static final Double[] INTEGRALS = new Double[HIGH - LOW + 1];
+    /**
+     * The cached fractions (searched linearly, so kept short).
+     */
+    private static final Double[] FRACTIONS = { 0.5, 0.25, 0.75, 0.1, -0.5 };
+    /**
+     * The bits of -0, which equals 0 but must keep its own value
+     * (e.g. displayed as "-0").
+     */
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+    static {
+        for (int i = 0; i < INTEGRALS.length; i++) {
+            INTEGRALS[i] = (double)(LOW + i);
+        }
+    }
+
+    private Numbers() {}
+
+    /**
+     * Box a number, reusing the cached value if there is one.
+     *
+     * @param value The number.
+     * @return The boxed number.
+     */
+    public static Double valueOf(double value) {
+        if (value >= LOW && value <= HIGH) {
+            int integral = (int)value;
+            if (integral == value && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO_BITS) {
+                return INTEGRALS[integral - LOW];
+            }
+        }
+
+        for (Double fraction : FRACTIONS) {
+            if (fraction == value) {
+                return fraction;
+            }
+        }
+
+        return value;
+    }
+}
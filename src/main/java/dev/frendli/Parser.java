@@ -133,7 +133,7 @@ public class Parser {
         consume(TokenType.CLOSE_PAREN, "A closing parenthesis ')' is missing.");
         Statement body = block();
 
-        return new Statement.Define(name, parameterList, (Statement.Block)body);
+        return new Statement.Define(SourcePosition.of(name), SourcePosition.of(parameterList), (Statement.Block)body);
     }
 
     // parameters: "accept" IDENTIFIER ( "," IDENTIFIER )* ;
@@ -160,7 +160,7 @@ public class Parser {
         Expression initializer = expression();
         consumeNewline();
 
-        return new Statement.Create(name, initializer);
+        return new Statement.Create(SourcePosition.of(name), initializer);
     }
 
     // changeStatement: "change" IDENTIFIER "=" expression NEWLINE ;
@@ -172,10 +172,10 @@ public class Parser {
         Expression expression = expression();
         Token equalsSign = consume(TokenType.EQUALS_SIGN, "A value must be assigned using '='.");
 
-        Token name = null;
+        long name = SourcePosition.NONE;
         if (expression instanceof Expression.Variable) {
             // Convert the r-value expression into an l-value (the variable name)
-            name = ((Expression.Variable)expression).name;
+            name = ((Expression.Variable)expression).namePosition;
         }
         else {
             // Report an error if the target is invalid, but since the parser is not in
@@ -197,7 +197,8 @@ public class Parser {
         // declaring or assigning variables. E.g. x = 1 will not be parsed
         // as a "create" or "change" statement; instead, it will end up here.
         if (expression instanceof Expression.Variable && check(TokenType.EQUALS_SIGN)) {
-            Token name = ((Expression.Variable)expression).name;
+            // The variable is the last token consumed.
+            Token name = getJustConsumed();
             error(name, "If you meant to create or change " + "'" + name.lexeme + "', use the 'create' or 'change' keyword.");
         }
 
@@ -218,24 +219,25 @@ public class Parser {
             Token otherwiseIfLocation = getJustConsumed();
             Expression otherwiseIfCondition = expression();
             Statement otherwiseIfBranch = block();
-            otherwiseIfs.add(new Statement.OtherwiseIf(otherwiseIfCondition, otherwiseIfBranch, otherwiseIfLocation));
+            otherwiseIfs.add(new Statement.OtherwiseIf(otherwiseIfCondition, otherwiseIfBranch, SourcePosition.of(otherwiseIfLocation)));
         }
 
         if (getJustConsumed().type == TokenType.OTHERWISE) {
             otherwiseBranch = block();
         }
 
-        return new Statement.If(condition, thenBranch, otherwiseIfs, otherwiseBranch, location);
+        return new Statement.If(condition, thenBranch, otherwiseIfs, otherwiseBranch, SourcePosition.of(location));
     }
 
-    // repeatTimesStatement: "repeat" expression "times" block ;
+    // repeatTimesStatement: "repeat" "parallel"? expression "times" block ;
     private Statement repeatTimesStatement() {
         Token location = getJustConsumed();
+        boolean isParallel = match(TokenType.PARALLEL);
         Expression times = expression();
         consume(TokenType.TIMES, "The expression must be followed by 'times'.");
         Statement body = block();
 
-        return new Statement.RepeatTimes(times, body, location);
+        return new Statement.RepeatTimes(times, body, SourcePosition.of(location), isParallel);
     }
 
     // repeatWhileStatement: "repeat" "while" expression block ;
@@ -244,7 +246,7 @@ public class Parser {
         Expression condition = expression();
         Statement body = block();
 
-        return new Statement.RepeatWhile(condition, body, location);
+        return new Statement.RepeatWhile(condition, body, SourcePosition.of(location));
     }
 
     // returnStatement: "return" NEWLINE ;
@@ -252,7 +254,7 @@ public class Parser {
         Token location = getJustConsumed();
         consume(TokenType.NEWLINE, "You must add a new line after 'return'. To return with a value, use 'return with' instead.");
 
-        return new Statement.Return(location);
+        return new Statement.Return(SourcePosition.of(location));
     }
 
     // returnWithStatement: "return" "with" expression NEWLINE ;
@@ -261,7 +263,7 @@ public class Parser {
         Expression value = expression();
         consumeNewline();
 
-        return new Statement.ReturnWith(location, value);
+        return new Statement.ReturnWith(SourcePosition.of(location), value);
     }
 
     // block: NEWLINE INDENT statement+ DEDENT ;
@@ -297,7 +299,7 @@ public class Parser {
         while (match(TokenType.OR)) {
             Token operator = getJustConsumed();
             Expression right = and();
-            left = new Expression.Logical(left, operator, right);
+            left = new Expression.Logical(left, SourcePosition.of(operator), right);
         }
         
         return left;
@@ -310,7 +312,7 @@ public class Parser {
         while (match(TokenType.AND)) {
             Token operator = getJustConsumed();
             Expression right = comparison();
-            left = new Expression.Logical(left, operator, right);
+            left = new Expression.Logical(left, SourcePosition.of(operator), right);
         }
 
         return left;
@@ -325,7 +327,7 @@ public class Parser {
                 TokenType.EQUALS_WORD, TokenType.UNEQUALS)) {
             Token operator = getJustConsumed();
             Expression right = term();
-            left = new Expression.Binary(left, operator, right);
+            left = new Expression.Binary(left, SourcePosition.of(operator), right);
         }
 
         return left;
@@ -338,7 +340,7 @@ public class Parser {
         while (match(TokenType.PLUS, TokenType.MINUS)) {
             Token operator = getJustConsumed();
             Expression right = factor();
-            left = new Expression.Binary(left, operator, right);
+            left = new Expression.Binary(left, SourcePosition.of(operator), right);
         }
 
         return left;
@@ -351,7 +353,7 @@ public class Parser {
         while (match(TokenType.STAR, TokenType.SLASH)) {
             Token operator = getJustConsumed();
             Expression right = unary();
-            left = new Expression.Binary(left, operator, right);
+            left = new Expression.Binary(left, SourcePosition.of(operator), right);
         }
 
         return left;
@@ -362,7 +364,7 @@ public class Parser {
         if (match(TokenType.NOT, TokenType.MINUS)) {
             Token operator = getJustConsumed();
             Expression right = unary();
-            return new Expression.Unary(operator, right);
+            return new Expression.Unary(SourcePosition.of(operator), right);
         }
 
         return call();
@@ -383,7 +385,7 @@ public class Parser {
                     argumentList = arguments();
                 }
                 Token endToken = consume(TokenType.CLOSE_PAREN, "A closing parenthesis ')' is missing.");
-                expression = new Expression.Call(expression, argumentList, endToken);;
+                expression = new Expression.Call(expression, argumentList, SourcePosition.of(endToken));
             }
             else {
                 break;
@@ -413,7 +415,7 @@ public class Parser {
     // primary: IDENTIFIER | NUMBER | TEXT | "true" | "false" | "empty" | "(" expression ")" ;
     private Expression primary() {
         if (match(TokenType.IDENTIFIER)) {
-            return new Expression.Variable(getJustConsumed());
+            return new Expression.Variable(SourcePosition.of(getJustConsumed()));
         }
         if (match(TokenType.NUMBER, TokenType.TEXT)) {
             return new Expression.Literal(getJustConsumed().literal);
@@ -0,0 +1,786 @@
+package dev.frendli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+/**
+ * The partial evaluator - an optimization pass over the resolved syntax tree
+ * that executes calls to pure global functions with constant arguments at
+ * compile time and replaces the calls with literals of their results. A
+ * function is pure if it only uses its own parameters and local variables,
+ * and only calls itself or pure functions defined before it. The calls are
+ * executed by an interpreter of their own (so with the same semantics as at
+ * runtime), limited by a step budget shared by all calls of the program.
+ * A call that exceeds the budget or causes an error is left unchanged, so
+ * that it is executed (and its error reported) at runtime as usual, and is
+ * not evaluated again with the same arguments. Statement lists are
+ * rewritten in place, and visiting a node returns the node to replace it with.
+ */
+public class PartialEvaluator implements ExpressionVisitor<Expression>, StatementVisitor<Statement> {
+    /**
+     * Default max number of statements executed by the calls evaluated per program.
+     */
+    public static final long DEFAULT_STEP_BUDGET = 1_000_000;
+    /**
+     * Max number of nested calls while evaluating a call.
+     */
+    private static final int MAX_CALL_DEPTH = 200;
+    /**
+     * Max number of bytes allocated while evaluating a call.
+     */
+    private static final long ALLOCATION_QUOTA = 1_000_000;
+    /**
+     * Marks a call in evaluatedCalls that was left to be executed at runtime.
+     */
+    private static final Object NOT_EVALUATED = new Object();
+    /**
+     * The symbol table of the program.
+     */
+    private final Symbols symbols;
+    /**
+     * The interpreter executing the calls (with the pure functions defined
+     * as globals), or null until the first call is evaluated.
+     */
+    private Interpreter interpreter = null;
+    /**
+     * The meter counting the statements executed by all calls evaluated.
+     */
+    private final StepMeter stepMeter;
+    /**
+     * The results of the calls evaluated (or NOT_EVALUATED) by the
+     * function and the values of the arguments.
+     */
+    private final Map<List<Object>, Object> evaluatedCalls = new HashMap<>();
+    /**
+     * The pure global functions by the symbol ids of their names.
+     */
+    private final Map<Integer, Statement.Define> pureFunctions = new HashMap<>();
+    /**
+     * The names (symbol ids) of the global functions defined before the current point in the program.
+     */
+    private final Set<Integer> definedFunctions = new HashSet<>();
+    /**
+     * Stack of local block scopes each containing the names (symbol ids) declared.
+     */
+    private final Stack<Set<Integer>> scopes = new Stack<>();
+
+    public PartialEvaluator(Symbols symbols) {
+        this(symbols, DEFAULT_STEP_BUDGET);
+    }
+
+    public PartialEvaluator(Symbols symbols, long stepBudget) {
+        this.symbols = symbols;
+        stepMeter = new StepMeter(stepBudget, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Partially evaluate a list of resolved statements.
+     *
+     * @param statements The statements (rewritten in place).
+     */
+    public void evaluate(List<Statement> statements) {
+        findPureFunctions(statements);
+        rewrite(statements);
+    }
+
+    @Override
+    public Statement visitBlockStatement(Statement.Block statement) {
+        scopes.push(new HashSet<>());
+        rewrite(statement.statements);
+        scopes.pop();
+
+        return statement;
+    }
+
+    @Override
+    public Statement visitCreateStatement(Statement.Create statement) {
+        declare(statement.namePosition);
+        Expression initializer = rewrite(statement.initializer);
+        if (initializer == statement.initializer) {
+            return statement;
+        }
+
+        return new Statement.Create(statement.namePosition, initializer);
+    }
+
+    @Override
+    public Statement visitChangeStatement(Statement.Change statement) {
+        Expression assignment = rewrite(statement.assignment);
+        if (assignment == statement.assignment) {
+            return statement;
+        }
+
+        Statement.Change change = new Statement.Change(statement.namePosition, assignment);
+        change.distance = statement.distance;
+
+        return change;
+    }
+
+    @Override
+    public Statement visitDefineStatement(Statement.Define statement) {
+        // Global functions may be called once defined, and
+        // calls within the body may refer to the function itself.
+        declare(statement.namePosition);
+        if (scopes.isEmpty()) {
+            definedFunctions.add(SourcePosition.getSymbol(statement.namePosition));
+        }
+
+        scopes.push(new HashSet<>());
+        for (long parameter : statement.parameterPositions) {
+            declare(parameter);
+        }
+        rewrite(statement.body.statements);
+        scopes.pop();
+
+        return statement;
+    }
+
+    @Override
+    public Statement visitExpressionStatement(Statement.ExpressionStatement statement) {
+        Expression expression = rewrite(statement.expression);
+        if (expression == statement.expression) {
+            return statement;
+        }
+
+        return new Statement.ExpressionStatement(expression);
+    }
+
+    @Override
+    public Statement visitIfStatement(Statement.If statement) {
+        Expression condition = rewrite(statement.condition);
+        Statement thenBranch = rewrite(statement.thenBranch);
+        boolean isChanged = (condition != statement.condition || thenBranch != statement.thenBranch);
+
+        List<Statement.OtherwiseIf> otherwiseIfs = new ArrayList<>();
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            Expression otherwiseIfCondition = rewrite(otherwiseIf.condition);
+            Statement otherwiseIfBranch = rewrite(otherwiseIf.thenBranch);
+            if (otherwiseIfCondition == otherwiseIf.condition && otherwiseIfBranch == otherwiseIf.thenBranch) {
+                otherwiseIfs.add(otherwiseIf);
+            }
+            else {
+                otherwiseIfs.add(new Statement.OtherwiseIf(otherwiseIfCondition, otherwiseIfBranch, otherwiseIf.position));
+                isChanged = true;
+            }
+        }
+
+        Statement otherwiseBranch = statement.otherwiseBranch;
+        if (otherwiseBranch != null) {
+            otherwiseBranch = rewrite(otherwiseBranch);
+            isChanged |= (otherwiseBranch != statement.otherwiseBranch);
+        }
+
+        if (!isChanged) {
+            return statement;
+        }
+
+        return new Statement.If(condition, thenBranch, otherwiseIfs, otherwiseBranch, statement.position);
+    }
+
+    @Override
+    public Statement visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        Expression times = rewrite(statement.times);
+        Statement body = rewrite(statement.body);
+        if (times == statement.times && body == statement.body) {
+            return statement;
+        }
+
+        return new Statement.RepeatTimes(times, body, statement.position, statement.isParallel);
+    }
+
+    @Override
+    public Statement visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        Expression condition = rewrite(statement.condition);
+        Statement body = rewrite(statement.body);
+        if (condition == statement.condition && body == statement.body) {
+            return statement;
+        }
+
+        return new Statement.RepeatWhile(condition, body, statement.position);
+    }
+
+    @Override
+    public Statement visitReturnStatement(Statement.Return statement) {
+        return statement;
+    }
+
+    @Override
+    public Statement visitReturnWithStatement(Statement.ReturnWith statement) {
+        Expression value = rewrite(statement.value);
+        if (value == statement.value) {
+            return statement;
+        }
+
+        return new Statement.ReturnWith(statement.position, value);
+    }
+
+    @Override
+    public Statement visitSequenceStatement(Statement.Sequence statement) {
+        rewrite(statement.statements);
+
+        return statement;
+    }
+
+    @Override
+    public Expression visitBinaryExpression(Expression.Binary expression) {
+        Expression left = rewrite(expression.left);
+        Expression right = rewrite(expression.right);
+        if (left == expression.left && right == expression.right) {
+            return expression;
+        }
+
+        return new Expression.Binary(left, expression.operatorPosition, right);
+    }
+
+    @Override
+    public Expression visitCallExpression(Expression.Call expression) {
+        Expression callee = rewrite(expression.callee);
+        boolean isChanged = (callee != expression.callee);
+
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : expression.arguments) {
+            Expression rewritten = rewrite(argument);
+            arguments.add(rewritten);
+            isChanged |= (rewritten != argument);
+        }
+
+        Expression.Call call = isChanged ? new Expression.Call(callee, arguments, expression.position) : expression;
+        Expression.Literal result = evaluateCall(call);
+
+        return result != null ? result : call;
+    }
+
+    @Override
+    public Expression visitGroupingExpression(Expression.Grouping expression) {
+        Expression inner = rewrite(expression.expression);
+        if (inner == expression.expression) {
+            return expression;
+        }
+
+        return new Expression.Grouping(inner);
+    }
+
+    @Override
+    public Expression visitLiteralExpression(Expression.Literal expression) {
+        return expression;
+    }
+
+    @Override
+    public Expression visitLogicalExpression(Expression.Logical expression) {
+        Expression left = rewrite(expression.left);
+        Expression right = rewrite(expression.right);
+        if (left == expression.left && right == expression.right) {
+            return expression;
+        }
+
+        return new Expression.Logical(left, expression.operatorPosition, right);
+    }
+
+    @Override
+    public Expression visitUnaryExpression(Expression.Unary expression) {
+        Expression right = rewrite(expression.right);
+        if (right == expression.right) {
+            return expression;
+        }
+
+        return new Expression.Unary(expression.operatorPosition, right);
+    }
+
+    @Override
+    public Expression visitVariableExpression(Expression.Variable expression) {
+        return expression;
+    }
+
+    /**
+     * Evaluate a call at compile time if it calls a pure global
+     * function (that has been defined) with constant arguments.
+     *
+     * @param call The call.
+     * @return The literal of the result, or null if it cannot be evaluated.
+     */
+    private Expression.Literal evaluateCall(Expression.Call call) {
+        if (!(call.callee instanceof Expression.Variable)) {
+            return null;
+        }
+        int name = SourcePosition.getSymbol(((Expression.Variable)call.callee).namePosition);
+        if (isLocal(name) || !definedFunctions.contains(name) || !pureFunctions.containsKey(name)) {
+            return null;
+        }
+        for (Expression argument : call.arguments) {
+            if (!isConstant(argument)) {
+                return null;
+            }
+        }
+
+        List<Expression> arguments = new ArrayList<>();
+        List<Object> key = new ArrayList<>();
+        key.add(pureFunctions.get(name));
+        try {
+            for (Expression argument : call.arguments) {
+                Object value = getInterpreter().evaluateWithin(argument, stepMeter);
+                arguments.add(new Expression.Literal(value));
+                key.add(value);
+            }
+        }
+        catch (RuntimeError error) {
+            return null;
+        }
+
+        Object result = evaluatedCalls.get(key);
+        if (result == null && !evaluatedCalls.containsKey(key)) {
+            // The function is called by name in the global environment.
+            Expression.Variable callee = new Expression.Variable(((Expression.Variable)call.callee).namePosition);
+            callee.distance = 0;
+            result = evaluate(new Expression.Call(callee, arguments, call.position));
+            evaluatedCalls.put(key, result);
+        }
+
+        return (result != NOT_EVALUATED) ? new Expression.Literal(result) : null;
+    }
+
+    /**
+     * Evaluate a call (in the global environment of the interpreter).
+     *
+     * @param call The call.
+     * @return The result, or NOT_EVALUATED if it exceeds the budget or causes an error.
+     */
+    private Object evaluate(Expression.Call call) {
+        try {
+            return getInterpreter().evaluateWithin(call, stepMeter);
+        }
+        catch (RuntimeError error) {
+            // Leave the call to be executed (and any error reported) at runtime.
+            return NOT_EVALUATED;
+        }
+    }
+
+    /**
+     * Get the interpreter executing the calls, creating it (and defining
+     * the pure functions in its global environment) the first time, so
+     * that programs without calls to evaluate do not pay for creating it.
+     *
+     * @return The interpreter.
+     */
+    private Interpreter getInterpreter() {
+        if (interpreter == null) {
+            // The pure functions use no natives, so no output is logged.
+            interpreter = new Interpreter(new ErrorReporter(null), null);
+            interpreter.setSymbols(symbols);
+            interpreter.setMaxCallDepth(MAX_CALL_DEPTH);
+            interpreter.setAllocationQuota(ALLOCATION_QUOTA);
+            for (Statement.Define function : pureFunctions.values()) {
+                function.accept(interpreter);
+            }
+        }
+
+        return interpreter;
+    }
+
+    /**
+     * Check if an expression only consists of literals and operators.
+     *
+     * @param expression The expression.
+     * @return Whether it is constant.
+     */
+    private boolean isConstant(Expression expression) {
+        if (expression instanceof Expression.Literal) {
+            return true;
+        }
+        if (expression instanceof Expression.Grouping) {
+            return isConstant(((Expression.Grouping)expression).expression);
+        }
+        if (expression instanceof Expression.Unary) {
+            return isConstant(((Expression.Unary)expression).right);
+        }
+        if (expression instanceof Expression.Binary) {
+            return isConstant(((Expression.Binary)expression).left) && isConstant(((Expression.Binary)expression).right);
+        }
+        if (expression instanceof Expression.Logical) {
+            return isConstant(((Expression.Logical)expression).left) && isConstant(((Expression.Logical)expression).right);
+        }
+
+        return false;
+    }
+
+    /**
+     * Find the pure functions among the global functions.
+     *
+     * @param statements The statements of the program.
+     */
+    private void findPureFunctions(List<Statement> statements) {
+        PurityChecker checker = new PurityChecker();
+        checker.checkProgram(statements);
+
+        // A function is pure if its own body is, and if every function it
+        // calls is a pure function defined before it (or the function itself).
+        Map<Integer, Statement.Define> candidates = new HashMap<>();
+        for (Statement.Define function : checker.functions) {
+            int name = SourcePosition.getSymbol(function.namePosition);
+            if (!checker.changedNames.contains(name) && checker.impureFunctions.get(function) == Boolean.FALSE) {
+                candidates.put(name, function);
+            }
+        }
+
+        Set<Integer> definedBefore = new HashSet<>();
+        for (Statement.Define function : checker.functions) {
+            int name = SourcePosition.getSymbol(function.namePosition);
+            definedBefore.add(name);
+            if (!candidates.containsKey(name)) {
+                continue;
+            }
+
+            boolean isPure = true;
+            for (Integer callee : checker.calledNames.get(function)) {
+                isPure &= (callee.equals(name) || (definedBefore.contains(callee) && pureFunctions.containsKey(callee)));
+            }
+            if (isPure) {
+                pureFunctions.put(name, function);
+            }
+        }
+    }
+
+    /**
+     * Rewrite a list of statements in place.
+     *
+     * @param statements The statements.
+     */
+    private void rewrite(List<Statement> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            statements.set(i, rewrite(statements.get(i)));
+        }
+    }
+
+    /**
+     * Rewrite a statement.
+     *
+     * @param statement The statement.
+     * @return The rewritten statement, or the statement itself if unchanged.
+     */
+    private Statement rewrite(Statement statement) {
+        return statement.accept(this);
+    }
+
+    /**
+     * Rewrite an expression.
+     *
+     * @param expression The expression.
+     * @return The rewritten expression, or the expression itself if unchanged.
+     */
+    private Expression rewrite(Expression expression) {
+        return expression.accept(this);
+    }
+
+    /**
+     * Declare a name in the innermost local scope (if any).
+     *
+     * @param name The position of the name.
+     */
+    private void declare(long name) {
+        if (!scopes.isEmpty()) {
+            scopes.peek().add(SourcePosition.getSymbol(name));
+        }
+    }
+
+    /**
+     * Check if a name refers to a local variable.
+     *
+     * @param name The symbol id of the name.
+     * @return Whether it is declared in a local scope.
+     */
+    private boolean isLocal(int name) {
+        for (Set<Integer> scope : scopes) {
+            if (scope.contains(name)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks the bodies of the global functions for operations that
+     * are not pure (i.e. using anything but the function's own
+     * parameters and local variables, other than calling global
+     * functions by name), and collects the names changed anywhere.
+     */
+    private static class PurityChecker implements ExpressionVisitor<Void>, StatementVisitor<Void> {
+        /**
+         * The global functions in the order defined.
+         */
+        final List<Statement.Define> functions = new ArrayList<>();
+        /**
+         * Whether each global function (the key) uses an impure operation.
+         */
+        final Map<Statement.Define, Boolean> impureFunctions = new HashMap<>();
+        /**
+         * The names (symbol ids) of the global functions called by each global function.
+         */
+        final Map<Statement.Define, Set<Integer>> calledNames = new HashMap<>();
+        /**
+         * The names (symbol ids) changed anywhere in the program.
+         */
+        final Set<Integer> changedNames = new HashSet<>();
+        /**
+         * Stack of local block scopes each containing the names (symbol ids) declared.
+         */
+        private final Stack<Set<Integer>> scopes = new Stack<>();
+        /**
+         * The global function currently being checked, or null if none.
+         */
+        private Statement.Define function = null;
+
+        /**
+         * Check the global functions of a program.
+         *
+         * @param statements The statements of the program.
+         */
+        void checkProgram(List<Statement> statements) {
+            check(statements);
+        }
+
+        @Override
+        public Void visitBlockStatement(Statement.Block statement) {
+            scopes.push(new HashSet<>());
+            check(statement.statements);
+            scopes.pop();
+
+            return null;
+        }
+
+        @Override
+        public Void visitCreateStatement(Statement.Create statement) {
+            declare(statement.namePosition);
+            check(statement.initializer);
+
+            return null;
+        }
+
+        @Override
+        public Void visitChangeStatement(Statement.Change statement) {
+            check(statement.assignment);
+            changedNames.add(SourcePosition.getSymbol(statement.namePosition));
+            if (!isLocal(SourcePosition.getSymbol(statement.namePosition))) {
+                markImpure();
+            }
+
+            return null;
+        }
+
+        @Override
+        public Void visitDefineStatement(Statement.Define statement) {
+            Statement.Define enclosingFunction = function;
+            if (scopes.isEmpty()) {
+                function = statement;
+                functions.add(statement);
+                impureFunctions.put(statement, false);
+                calledNames.put(statement, new HashSet<>());
+            }
+            else {
+                // Nested functions (closures) are not evaluated at compile time.
+                declare(statement.namePosition);
+                markImpure();
+            }
+
+            scopes.push(new HashSet<>());
+            for (long parameter : statement.parameterPositions) {
+                declare(parameter);
+            }
+            check(statement.body.statements);
+            scopes.pop();
+            function = enclosingFunction;
+
+            return null;
+        }
+
+        @Override
+        public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+            check(statement.expression);
+
+            return null;
+        }
+
+        @Override
+        public Void visitIfStatement(Statement.If statement) {
+            check(statement.condition);
+            check(statement.thenBranch);
+            for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+                check(otherwiseIf.condition);
+                check(otherwiseIf.thenBranch);
+            }
+            if (statement.otherwiseBranch != null) {
+                check(statement.otherwiseBranch);
+            }
+
+            return null;
+        }
+
+        @Override
+        public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+            check(statement.times);
+            check(statement.body);
+
+            return null;
+        }
+
+        @Override
+        public Void visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+            check(statement.condition);
+            check(statement.body);
+
+            return null;
+        }
+
+        @Override
+        public Void visitReturnStatement(Statement.Return statement) {
+            return null;
+        }
+
+        @Override
+        public Void visitReturnWithStatement(Statement.ReturnWith statement) {
+            check(statement.value);
+
+            return null;
+        }
+
+        @Override
+        public Void visitSequenceStatement(Statement.Sequence statement) {
+            check(statement.statements);
+
+            return null;
+        }
+
+        @Override
+        public Void visitBinaryExpression(Expression.Binary expression) {
+            check(expression.left);
+            check(expression.right);
+
+            return null;
+        }
+
+        @Override
+        public Void visitCallExpression(Expression.Call expression) {
+            // Only global functions called by name are known at compile time.
+            if (expression.callee instanceof Expression.Variable && !isLocal(SourcePosition.getSymbol(((Expression.Variable)expression.callee).namePosition))) {
+                if (function != null) {
+                    calledNames.get(function).add(SourcePosition.getSymbol(((Expression.Variable)expression.callee).namePosition));
+                }
+            }
+            else {
+                check(expression.callee);
+                markImpure();
+            }
+
+            for (Expression argument : expression.arguments) {
+                check(argument);
+            }
+
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpression(Expression.Grouping expression) {
+            check(expression.expression);
+
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpression(Expression.Literal expression) {
+            return null;
+        }
+
+        @Override
+        public Void visitLogicalExpression(Expression.Logical expression) {
+            check(expression.left);
+            check(expression.right);
+
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpression(Expression.Unary expression) {
+            check(expression.right);
+
+            return null;
+        }
+
+        @Override
+        public Void visitVariableExpression(Expression.Variable expression) {
+            if (!isLocal(SourcePosition.getSymbol(expression.namePosition))) {
+                markImpure();
+            }
+
+            return null;
+        }
+
+        /**
+         * Mark the global function currently being checked as impure.
+         */
+        private void markImpure() {
+            if (function != null) {
+                impureFunctions.put(function, true);
+            }
+        }
+
+        /**
+         * Check a list of statements.
+         *
+         * @param statements The statements.
+         */
+        private void check(List<Statement> statements) {
+            for (Statement statement : statements) {
+                statement.accept(this);
+            }
+        }
+
+        /**
+         * Check a statement.
+         *
+         * @param statement The statement.
+         */
+        private void check(Statement statement) {
+            statement.accept(this);
+        }
+
+        /**
+         * Check an expression.
+         *
+         * @param expression The expression.
+         */
+        private void check(Expression expression) {
+            expression.accept(this);
+        }
+
+        /**
+         * Declare a name in the innermost local scope (if any).
+         *
+         * @param name The position of the name.
+         */
+        private void declare(long name) {
+            if (!scopes.isEmpty()) {
+                scopes.peek().add(SourcePosition.getSymbol(name));
+            }
+        }
+
+        /**
+         * Check if a name refers to a local variable.
+         *
+         * @param name The symbol id of the name.
+         * @return Whether it is declared in a local scope.
+         */
+        private boolean isLocal(int name) {
+            for (Set<Integer> scope : scopes) {
+                if (scope.contains(name)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+}
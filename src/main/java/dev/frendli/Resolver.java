@@ -1,9 +1,10 @@
 package dev.frendli;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.Stack;
+import java.util.Map;
 
 /**
  * The resolver - recursively traverses the syntax tree produced
@@ -13,61 +14,145 @@ import java.util.Stack;
  * of static resolution, rather than resolving the variables dynamically
  * on each evaluation in the interpreter. Unlike the interpreter, the
  * resolver visits all nodes exactly 1 time (O(n)) and does not execute
- * any statements.
+ * any statements. It also verifies that code running at the same time as
+ * other code ("repeat parallel" bodies and started definitions) never
+ * changes variables created outside of it, also through the definitions
+ * it calls (which is verified once the whole program is resolved).
  */
 public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void> {
+    /**
+     * The depth of a name not declared in any scope.
+     */
+    private static final int NOT_DECLARED = -1;
+    /**
+     * The depth of the outermost variable changed by a definition that
+     * changes no variable created outside of it.
+     */
+    private static final int NO_CHANGE = Integer.MAX_VALUE;
     /**
      * Reporter of compile-time errors.
      */
     private final ErrorReporter reporter;
     /**
-     * The interpreter executing the code (runtime).
+     * The symbol table of the program (for the lexemes of the errors).
+     */
+    private final Symbols symbols;
+    /**
+     * Depth of the innermost scope in which each name is declared, indexed
+     * by the symbol id of the name (see Symbols), or NOT_DECLARED. This flat
+     * table replaces a stack of sets of names: resolving a name is a single
+     * lookup however deeply the scopes are nested.
+     */
+    private int[] declaredDepths = new int[0];
+    /**
+     * Log of the declarations to undo when their scopes are discarded, as
+     * pairs of a symbol id and the depth it was declared at before (i.e. the
+     * declaration it shadows, or NOT_DECLARED).
+     */
+    private int[] undoLog = new int[32];
+    /**
+     * Number of entries (ints) used in the undo log.
+     */
+    private int undoLogSize = 0;
+    /**
+     * The size of the undo log when each scope was created (indexed by depth).
      */
-    private final Interpreter interpreter;
+    private int[] scopeMarks = new int[16];
     /**
-     * Stack of block scopes each containing the names of the declared variables.
-     * (The first scope is always the global scope.)
+     * Depth of the innermost scope. (The scope at depth 0 is always the global scope.)
      */
-    private final Stack<Set<String>> scopes = new Stack<>();
+    private int depth = -1;
     /**
      * The current context in which something is being resolved.
      * (E.g. a function or method.)
      */
     private ContextType currentContext = ContextType.NONE;
+    /**
+     * Depth of the scope of the innermost "repeat parallel" body being
+     * resolved, or NOT_DECLARED if none. Names declared in outer scopes
+     * are shared by all repetitions, so they may not be changed.
+     */
+    private int parallelBodyDepth = NOT_DECLARED;
+    /**
+     * The number of function definitions resolved so far.
+     */
+    private int definitionCount = 0;
+    /**
+     * The names of the native functions that the program may not use
+     * (e.g. those needing tasks when compiled to IR).
+     */
+    private final List<String> unavailableNativeNames;
+    /**
+     * The names of the native functions.
+     */
+    private final List<String> nativeNames;
+    /**
+     * The definitions declared in the scopes being resolved, by the
+     * symbol id of the name and the depth it is declared at (see getKey).
+     */
+    private final Map<Long, Definition> declaredDefinitions = new HashMap<>();
+    /**
+     * All definitions resolved so far.
+     */
+    private final List<Definition> definitions = new ArrayList<>();
+    /**
+     * The calls that must not change variables created outside of the
+     * code running at the same time, verified once all definitions are resolved.
+     */
+    private final List<ConcurrentCall> concurrentCalls = new ArrayList<>();
+    /**
+     * The innermost definition being resolved, or null if none.
+     */
+    private Definition currentDefinition = null;
+
+    public Resolver(List<String> nativeNames, Symbols symbols, ErrorReporter reporter) {
+        this(nativeNames, List.of(), symbols, reporter);
+    }
 
-    public Resolver(Interpreter interpreter, ErrorReporter reporter) {
-        this.interpreter = interpreter;
+    public Resolver(List<String> nativeNames, List<String> unavailableNativeNames, Symbols symbols, ErrorReporter reporter) {
         this.reporter = reporter;
+        this.symbols = symbols;
+        this.unavailableNativeNames = unavailableNativeNames;
+        this.nativeNames = nativeNames;
 
         // The first scope on the stack is the global scope.
         createScope();
-        scopes.peek().addAll(interpreter.getNativeNames());
+        for (String nativeName : nativeNames) {
+            if (!unavailableNativeNames.contains(nativeName)) {
+                declareSymbol(Symbols.ofNative(nativeName));
+            }
+        }
     }
 
     /**
-     * Resolve a list of statements.
+     * Resolve the statements of a program.
      *
      * @param statements The statements to resolve.
      */
     public void resolve(List<Statement> statements) {
-        for (Statement statement : statements) {
-            resolve(statement);
-        }
+        resolveStatements(statements);
+        verifyConcurrentCalls();
     }
 
     @Override
     public Void visitBlockStatement(Statement.Block statement) {
+        int definitionCountBefore = definitionCount;
+
         createScope();
-        resolve(statement.statements);
+        resolveStatements(statement.statements);
         discardScope();
 
+        // Blocks without any (nested) definitions cannot have their
+        // environment captured, allowing the interpreter to reuse it.
+        statement.containsDefinition = (definitionCount > definitionCountBefore);
+
         return null;
     }
 
     @Override
     public Void visitCreateStatement(Statement.Create statement) {
-        declare(statement.name);
-        verifyNotAccessingItselfInInitializer(statement.name, statement.initializer);
+        declare(statement.namePosition);
+        verifyNotAccessingItselfInInitializer(statement.namePosition, statement.initializer);
         resolve(statement.initializer);
 
         return null;
@@ -76,7 +161,26 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     @Override
     public Void visitChangeStatement(Statement.Change statement) {
         resolve(statement.assignment);
-        resolve(statement.name);
+        statement.distance = resolve(statement.namePosition);
+
+        // Repetitions running in parallel changing a shared variable
+        // would make the result depend on the order they run in.
+        boolean isChangingShared = (statement.distance != -1 && depth - statement.distance < parallelBodyDepth);
+        if (isChangingShared) {
+            error(statement.namePosition, "You cannot change '" + getLexeme(statement.namePosition) + "' within 'repeat parallel' since it was created outside of it. Each repetition may only change what it creates itself.");
+        }
+
+        if (statement.distance != -1) {
+            int declaredDepth = depth - statement.distance;
+            // The definitions calling the changed definition by name may call another.
+            Definition changed = declaredDefinitions.get(getKey(SourcePosition.getSymbol(statement.namePosition), declaredDepth));
+            if (changed != null) {
+                changed.isChanged = true;
+            }
+            if (currentDefinition != null && declaredDepth < currentDefinition.scopeDepth) {
+                currentDefinition.changedDepth = Math.min(currentDefinition.changedDepth, declaredDepth);
+            }
+        }
 
         return null;
     }
@@ -85,8 +189,16 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     public Void visitDefineStatement(Statement.Define statement) {
         // Declare the name in the current scope before resolving the
         // function's statements in its inner scope to allow for recursion.
-        declare(statement.name);
+        declare(statement.namePosition);
+        Definition definition = new Definition(depth + 1);
+        declaredDefinitions.put(getKey(SourcePosition.getSymbol(statement.namePosition), depth), definition);
+        definitions.add(definition);
+
+        Definition enclosingDefinition = currentDefinition;
+        currentDefinition = definition;
         resolveFunction(statement, ContextType.FUNCTION);
+        currentDefinition = enclosingDefinition;
+        definitionCount++;
 
         return null;
     }
@@ -118,8 +230,22 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     @Override
     public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
         resolve(statement.times);
+        if (!statement.isParallel) {
+            resolve(statement.body);
+            return null;
+        }
+
+        // The body's block scope is the next one created.
+        int enclosingParallelBodyDepth = parallelBodyDepth;
+        ContextType enclosingContext = currentContext;
+        parallelBodyDepth = depth + 1;
+        currentContext = ContextType.PARALLEL_REPETITION;
+
         resolve(statement.body);
 
+        parallelBodyDepth = enclosingParallelBodyDepth;
+        currentContext = enclosingContext;
+
         return null;
     }
 
@@ -133,24 +259,28 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitReturnStatement(Statement.Return statement) {
-        if (currentContext != ContextType.FUNCTION) {
-            error(statement.location, "You can only return from within a definition.");
-        }
+        verifyCanReturn(statement.position);
 
         return null;
     }
 
     @Override
     public Void visitReturnWithStatement(Statement.ReturnWith statement) {
-        if (currentContext != ContextType.FUNCTION) {
-            error(statement.location, "You can only return from within a definition.");
-        }
+        verifyCanReturn(statement.position);
 
         resolve(statement.value);
 
         return null;
     }
 
+    @Override
+    public Void visitSequenceStatement(Statement.Sequence statement) {
+        // Sequences do not create a scope.
+        resolveStatements(statement.statements);
+
+        return null;
+    }
+
     @Override
     public Void visitBinaryExpression(Expression.Binary expression) {
         resolve(expression.left);
@@ -161,11 +291,37 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitCallExpression(Expression.Call expression) {
-        resolve(expression.callee);
+        // A definition called by name does not escape (unlike one referred
+        // to otherwise, which may be called anywhere).
+        Definition callee = null;
+        if (expression.callee instanceof Expression.Variable) {
+            Expression.Variable variable = (Expression.Variable)expression.callee;
+            variable.distance = resolve(variable.namePosition);
+            callee = getDefinition(variable);
+            if (callee == null && isNative(variable, "start")) {
+                resolveStart(expression);
+                return null;
+            }
+            if (callee == null && isNative(variable)) {
+                callee = Definition.NATIVE;
+            }
+        }
+        else {
+            resolve(expression.callee);
+        }
         for (Expression argument : expression.arguments) {
             resolve(argument);
         }
 
+        if (callee != Definition.NATIVE) {
+            if (currentDefinition != null) {
+                currentDefinition.call(callee);
+            }
+            if (parallelBodyDepth != NOT_DECLARED) {
+                concurrentCalls.add(new ConcurrentCall(getCalleePosition(expression), callee, parallelBodyDepth, false));
+            }
+        }
+
         return null;
     }
 
@@ -198,7 +354,12 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
 
     @Override
     public Void visitVariableExpression(Expression.Variable expression) {
-        resolve(expression.name);
+        expression.distance = resolve(expression.namePosition);
+
+        Definition definition = getDefinition(expression);
+        if (definition != null) {
+            definition.isEscaping = true;
+        }
 
         return null;
     }
@@ -206,28 +367,63 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     /**
      * Declare a name in the innermost scope.
      *
-     * @param name The name to be declared.
+     * @param name The position of the name to be declared.
      */
-    private void declare(Token name) {
-        Set<String> scope = getInnermostScope();
-        if (scope.contains(name.lexeme)) {
-            error(name, "'" + name.lexeme + "' already exists.");
+    private void declare(long name) {
+        int symbol = SourcePosition.getSymbol(name);
+        if (getDeclaredDepth(symbol) == depth) {
+            error(name, "'" + getLexeme(name) + "' already exists.");
+            return;
         }
 
-        scope.add(name.lexeme);
+        declareSymbol(symbol);
+    }
+
+    /**
+     * Declare a name in the innermost scope, shadowing any
+     * declaration of the same name in an outer scope.
+     *
+     * @param symbol The symbol id of the name.
+     */
+    private void declareSymbol(int symbol) {
+        // A definition of the name in an earlier scope at the same depth is gone.
+        declaredDefinitions.remove(getKey(symbol, depth));
+        if (symbol >= declaredDepths.length) {
+            int previousLength = declaredDepths.length;
+            declaredDepths = Arrays.copyOf(declaredDepths, Math.max(symbol + 1, previousLength * 2));
+            Arrays.fill(declaredDepths, previousLength, declaredDepths.length, NOT_DECLARED);
+        }
+        if (undoLogSize == undoLog.length) {
+            undoLog = Arrays.copyOf(undoLog, undoLog.length * 2);
+        }
+
+        undoLog[undoLogSize++] = symbol;
+        undoLog[undoLogSize++] = declaredDepths[symbol];
+        declaredDepths[symbol] = depth;
     }
 
     /**
      * Declare names in the innermost scope.
      *
-     * @param names The names to be declared.
+     * @param names The positions of the names to be declared.
      */
-    private void declare(List<Token> names) {
-        for (Token name : names) {
+    private void declare(long[] names) {
+        for (long name : names) {
             declare(name);
         }
     }
 
+    /**
+     * Resolve a list of statements.
+     *
+     * @param statements The statements to resolve.
+     */
+    private void resolveStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            resolve(statement);
+        }
+    }
+
     /**
      * Resolve a statement.
      *
@@ -249,24 +445,31 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
     /**
      * Resolve a variable.
      *
-     * @param name The name to resolve.
-     */
-    private void resolve(Token name) {
-        // Search for the name in each scope to know where it was most recently
-        // declared (lexically closer) by starting from the innermost scope.
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).contains(name.lexeme)) {
-                // Add the distance to the interpreter so that it can
-                // look up the variable in the correct environment.
-                interpreter.resolve(name, getDistanceToScope(i));
-
-                return;
-            }
+     * @param name The position of the name to resolve.
+     * @return The distance to the scope it is declared in, or -1 if not declared.
+     */
+    private int resolve(long name) {
+        // The table holds the scope where the name was most recently
+        // declared (lexically closer), as inner declarations shadow outer ones.
+        int declaredDepth = getDeclaredDepth(SourcePosition.getSymbol(name));
+        if (declaredDepth != NOT_DECLARED) {
+            // The distance is stored in the referring node so that the
+            // interpreter can look up the variable in the correct
+            // environment. (Keeping it in the syntax tree rather than the
+            // interpreter lets it be released together with the tree.)
+            return getDistanceToScope(declaredDepth);
         }
 
         // If this is reached, the variable or function has not been
         // declared lexically prior to where it is being referenced.
-        error(name, "'" + name.lexeme + "' has not been created or defined. To create it, use 'create', or define it using 'define'.");
+        String lexeme = getLexeme(name);
+        if (unavailableNativeNames.contains(lexeme)) {
+            error(name, "'" + lexeme + "' cannot be used when executing the IR, since the IR interpreter runs all definitions on one thread.");
+            return -1;
+        }
+        error(name, "'" + lexeme + "' has not been created or defined. To create it, use 'create', or define it using 'define'.");
+
+        return -1;
     }
 
     /**
@@ -283,11 +486,17 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         currentContext = context;
 
         // Declare the parameters in the function's local scope.
+        int definitionCountBefore = definitionCount;
+
         createScope();
-        declare(function.parameters);
-        resolve(function.body.statements);
+        declare(function.parameterPositions);
+        resolveStatements(function.body.statements);
         discardScope();
 
+        // Functions without any (nested) definitions cannot have the
+        // environment of their calls captured, allowing it to be pooled.
+        function.body.containsDefinition = (definitionCount > definitionCountBefore);
+
         // Reset the context.
         currentContext = enclosingContext;
 
@@ -302,37 +511,210 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
      * Create a new scope.
      */
     private void createScope() {
-        scopes.push(new HashSet<>());
+        depth++;
+        if (depth == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, scopeMarks.length * 2);
+        }
+        scopeMarks[depth] = undoLogSize;
     }
 
     /**
-     * Discard the innermost scope.
+     * Discard the innermost scope, restoring the declarations
+     * its own declarations shadowed.
      */
     private void discardScope() {
-        if (!isGlobalScope()) {
-            scopes.pop();
+        if (isGlobalScope()) {
+            return;
         }
+
+        int mark = scopeMarks[depth];
+        while (undoLogSize > mark) {
+            int previousDepth = undoLog[--undoLogSize];
+            int symbol = undoLog[--undoLogSize];
+            declaredDepths[symbol] = previousDepth;
+        }
+        depth--;
+    }
+
+    /**
+     * Resolve a call of the native "start", whose definition runs at the
+     * same time as the rest of the program.
+     *
+     * @param expression The call.
+     */
+    private void resolveStart(Expression.Call expression) {
+        for (Expression argument : expression.arguments) {
+            resolve(argument);
+
+            Definition started = null;
+            long position = expression.position;
+            if (argument instanceof Expression.Variable) {
+                started = getDefinition((Expression.Variable)argument);
+                position = ((Expression.Variable)argument).namePosition;
+            }
+            concurrentCalls.add(new ConcurrentCall(position, started, NO_CHANGE, true));
+        }
+    }
+
+    /**
+     * Verify that the calls of code running at the same time as other code
+     * never change variables created outside of that code, once the depths
+     * changed by all definitions are known.
+     */
+    private void verifyConcurrentCalls() {
+        // A definition changes what its callees change outside of it.
+        // The depths are propagated until none changes, as definitions
+        // may call each other in cycles (e.g. recursion).
+        boolean isUpdated = true;
+        while (isUpdated) {
+            isUpdated = false;
+            int escapingDepth = getEscapingChangedDepth();
+            for (Definition definition : definitions) {
+                int changedDepth = definition.changedDepth;
+                for (Definition callee : definition.callees) {
+                    int calleeDepth = getChangedDepth(callee, escapingDepth);
+                    if (calleeDepth < definition.scopeDepth) {
+                        changedDepth = Math.min(changedDepth, calleeDepth);
+                    }
+                }
+                if (changedDepth < definition.changedDepth) {
+                    definition.changedDepth = changedDepth;
+                    isUpdated = true;
+                }
+            }
+        }
+
+        int escapingDepth = getEscapingChangedDepth();
+        for (ConcurrentCall call : concurrentCalls) {
+            if (getChangedDepth(call.callee, escapingDepth) >= call.outerDepth) {
+                continue;
+            }
+
+            String change = (call.callee == null || call.callee.isChanged) ? "may change" : "changes";
+            if (call.isStart) {
+                error(call.position, "You cannot start '" + getLexeme(call.position) + "' since it " + change + " what was created outside of it. A task may only change what it creates itself.");
+            }
+            else {
+                error(call.position, "You cannot call '" + getLexeme(call.position) + "' within 'repeat parallel' since it " + change + " what was created outside of it. Each repetition may only change what it creates itself.");
+            }
+        }
+    }
+
+    /**
+     * Get the depth of the outermost variable that a call may change.
+     *
+     * @param callee The definition called, or null if not known.
+     * @param escapingDepth The depth changed by the definitions that may be called without being known.
+     * @return The depth (or NO_CHANGE).
+     */
+    private static int getChangedDepth(Definition callee, int escapingDepth) {
+        if (callee == null) {
+            return escapingDepth;
+        }
+        // A definition whose name is changed may be replaced by any other.
+        if (callee.isChanged) {
+            return Math.min(callee.changedDepth, escapingDepth);
+        }
+
+        return callee.changedDepth;
+    }
+
+    /**
+     * Get the depth of the outermost variable changed by the definitions
+     * referred to other than by calling them (which may be called anywhere).
+     *
+     * @return The depth (or NO_CHANGE).
+     */
+    private int getEscapingChangedDepth() {
+        int changedDepth = NO_CHANGE;
+        for (Definition definition : definitions) {
+            if (definition.isEscaping) {
+                changedDepth = Math.min(changedDepth, definition.changedDepth);
+            }
+        }
+
+        return changedDepth;
+    }
+
+    /**
+     * Get the definition a variable refers to.
+     *
+     * @param variable The (resolved) variable.
+     * @return The definition, or null if the variable is not declared by a definition.
+     */
+    private Definition getDefinition(Expression.Variable variable) {
+        if (variable.distance == -1) {
+            return null;
+        }
+
+        return declaredDefinitions.get(getKey(SourcePosition.getSymbol(variable.namePosition), depth - variable.distance));
     }
 
     /**
-     * Get the innermost scope.
+     * Check if a (resolved) variable refers to a native function.
      *
-     * @return The innermost scope.
+     * @param variable The variable.
+     * @return Whether it refers to a native function.
      */
-    private Set<String> getInnermostScope() {
-        return scopes.peek();
+    private boolean isNative(Expression.Variable variable) {
+        // Globals cannot be declared with the name of a native.
+        return variable.distance != -1 && depth - variable.distance == 0 && nativeNames.contains(getLexeme(variable.namePosition));
+    }
+
+    /**
+     * Check if a (resolved) variable refers to a certain native function.
+     *
+     * @param variable The variable.
+     * @param name The name of the native function.
+     * @return Whether it refers to the native function.
+     */
+    private boolean isNative(Expression.Variable variable, String name) {
+        return isNative(variable) && getLexeme(variable.namePosition).equals(name);
+    }
+
+    /**
+     * Get the position to report an error of a call at.
+     *
+     * @param expression The call.
+     * @return The position of the name of the callee, or of the call.
+     */
+    private static long getCalleePosition(Expression.Call expression) {
+        if (expression.callee instanceof Expression.Variable) {
+            return ((Expression.Variable)expression.callee).namePosition;
+        }
+
+        return expression.position;
+    }
+
+    /**
+     * Get the key of a declaration in declaredDefinitions.
+     *
+     * @param symbol The symbol id of the name.
+     * @param declaredDepth The depth of the scope it is declared in.
+     * @return The key.
+     */
+    private static long getKey(int symbol, int declaredDepth) {
+        return ((long)symbol << 32) | declaredDepth;
+    }
+
+    /**
+     * Get the depth of the innermost scope in which a name is declared.
+     *
+     * @param symbol The symbol id of the name.
+     * @return The depth, or NOT_DECLARED.
+     */
+    private int getDeclaredDepth(int symbol) {
+        return (symbol < declaredDepths.length) ? declaredDepths[symbol] : NOT_DECLARED;
     }
 
     /**
      * Get the distance from the innermost scope to an outer scope.
      *
-     * @param targetScopeIndex The index of the target scope.
+     * @param targetDepth The depth of the target scope.
      * @return The distance to the target scope.
      */
-    private int getDistanceToScope(int targetScopeIndex) {
-        int innermostScopeIndex = scopes.size() - 1;
-
-        return innermostScopeIndex - targetScopeIndex;
+    private int getDistanceToScope(int targetDepth) {
+        return depth - targetDepth;
     }
 
     /**
@@ -341,17 +723,17 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
      * @return Whether the current scope is the global scope.
      */
     private boolean isGlobalScope() {
-        return scopes.size() == 1;
+        return depth == 0;
     }
 
     /**
      * Verify that the variable being initialized is not also being
      * accessed in its initializer.
      *
-     * @param initialized The initialized variable.
+     * @param initialized The position of the initialized variable.
      * @param initializer The right-hand side initializer.
      */
-    private void verifyNotAccessingItselfInInitializer(Token initialized, Expression initializer) {
+    private void verifyNotAccessingItselfInInitializer(long initialized, Expression initializer) {
         if (!(initializer instanceof Expression.Variable))
             return;
 
@@ -361,22 +743,124 @@ public class Resolver implements ExpressionVisitor<Void>, StatementVisitor<Void>
         // create x = 1
         // if x > 0
         //      create x = x        <-- illegal access on right-hand side
-        Token initializerName = ((Expression.Variable)initializer).name;
-        if (initializerName.lexeme.equals(initialized.lexeme)) {
-            error(initializerName, "You cannot use '" + initializerName.lexeme + "' on both sides of '=' when creating it.");
+        long initializerName = ((Expression.Variable)initializer).namePosition;
+        if (SourcePosition.getSymbol(initializerName) == SourcePosition.getSymbol(initialized)) {
+            error(initializerName, "You cannot use '" + getLexeme(initializerName) + "' on both sides of '=' when creating it.");
         }
 
         // TODO: Update implementation. The current implementation applies to
         //       right-hand sides that are exactly a variable, not e.g. x + 1
     }
 
+    /**
+     * Verify that a return statement is within a definition (and not
+     * within a "repeat parallel" body in it, which runs as separate tasks).
+     *
+     * @param location The position of the return statement.
+     */
+    private void verifyCanReturn(long location) {
+        if (currentContext == ContextType.PARALLEL_REPETITION) {
+            error(location, "You cannot return from within 'repeat parallel'.");
+        }
+        else if (currentContext != ContextType.FUNCTION) {
+            error(location, "You can only return from within a definition.");
+        }
+    }
+
+    /**
+     * Get the lexeme of a position.
+     *
+     * @param position The packed position.
+     * @return The lexeme.
+     */
+    private String getLexeme(long position) {
+        return SourcePosition.getLexeme(position, symbols);
+    }
+
     /**
      * Report an error.
      *
-     * @param token The token that caused the error.
+     * @param position The position of the token that caused the error.
      * @param message The error message.
      */
-    private void error(Token token, String message) {
-        reporter.compileTimeError(token, message);
+    private void error(long position, String message) {
+        reporter.compileTimeError(SourcePosition.toToken(position, symbols), message);
+    }
+
+    /**
+     * A definition resolved, and what it changes outside of itself.
+     */
+    private static final class Definition {
+        /**
+         * Stands for the natives when called, which change no variables.
+         */
+        static final Definition NATIVE = new Definition(0);
+        /**
+         * Depth of the scope of the definition's parameters and body.
+         */
+        final int scopeDepth;
+        /**
+         * The definitions called by name in the body (null for a callee
+         * that is not known, e.g. a parameter).
+         */
+        final List<Definition> callees = new ArrayList<>();
+        /**
+         * Depth of the outermost variable created outside of the definition
+         * that it changes (itself or through its callees), or NO_CHANGE.
+         */
+        int changedDepth = NO_CHANGE;
+        /**
+         * Whether the definition is referred to other than by calling it.
+         */
+        boolean isEscaping = false;
+        /**
+         * Whether the name of the definition is changed (e.g. to another definition).
+         */
+        boolean isChanged = false;
+
+        Definition(int scopeDepth) {
+            this.scopeDepth = scopeDepth;
+        }
+
+        /**
+         * Record a call in the body of the definition.
+         *
+         * @param callee The definition called, or null if not known.
+         */
+        void call(Definition callee) {
+            callees.add(callee);
+        }
+    }
+
+    /**
+     * A call in code running at the same time as other code.
+     */
+    private static final class ConcurrentCall {
+        /**
+         * The position to report an error at.
+         */
+        final long position;
+        /**
+         * The definition called, or null if not known.
+         */
+        final Definition callee;
+        /**
+         * Depth of the outermost scope of the code running at the same time
+         * (NO_CHANGE for a started definition, which must change nothing
+         * outside of it).
+         */
+        final int outerDepth;
+        /**
+         * Whether the definition is started (rather than called within
+         * "repeat parallel").
+         */
+        final boolean isStart;
+
+        ConcurrentCall(long position, Definition callee, int outerDepth, boolean isStart) {
+            this.position = position;
+            this.callee = callee;
+            this.outerDepth = outerDepth;
+            this.isStart = isStart;
+        }
     }
 }
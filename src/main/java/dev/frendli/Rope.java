@@ -0,0 +1,150 @@
+package dev.frendli;
+
+/**
+ * A text built by concatenation (runtime representation). Frendli texts
+ * are usually Java strings, but concatenating long texts creates ropes
+ * instead, which share a builder that the next concatenation can append
+ * to in place. Building a text in a loop (e.g. "change line = line + "*"")
+ * is thereby amortized O(1) per concatenation rather than copying the
+ * whole text each time. A rope is flattened into a string (once) when it
+ * is displayed, compared, or sent to a native function, so ropes are never
+ * observable as different from strings.
+ */
+public final class Rope {
+    /**
+     * Min length of a concatenated text to be created as a rope
+     * (shorter texts are cheaper to copy).
+     */
+    private static final int MIN_LENGTH = 64;
+    /**
+     * The builder shared with the ropes this rope was concatenated from
+     * or to. Its first "length" characters are the text of this rope.
+     */
+    private final StringBuilder builder;
+    /**
+     * The length of the text.
+     */
+    private final int length;
+    /**
+     * The number of characters allocated to create this rope: the
+     * characters appended in place, or the capacity of a new builder
+     * (when copied or grown).
+     */
+    private final int allocatedLength;
+    /**
+     * The text as a string once flattened, otherwise null.
+     */
+    private String flattened = null;
+
+    private Rope(StringBuilder builder, int length, int allocatedLength) {
+        this.builder = builder;
+        this.length = length;
+        this.allocatedLength = allocatedLength;
+    }
+
+    /**
+     * Check if a value is a text (a string or a rope).
+     *
+     * @param value The value.
+     * @return Whether it is a text.
+     */
+    public static boolean isText(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    /**
+     * Concatenate two texts.
+     *
+     * @param left The left text (a string or a rope).
+     * @param right The right text (a string or a rope).
+     * @return The concatenated text (a string or a rope).
+     */
+    public static Object concatenate(Object left, Object right) {
+        // The right text is flattened first so that no two builders
+        // are ever locked at the same time.
+        String rightString = (String)flatten(right);
+
+        if (left instanceof Rope) {
+            Rope rope = (Rope)left;
+            synchronized (rope.builder) {
+                // Append in place unless the builder has already been
+                // appended to by another concatenation with this rope.
+                if (rope.builder.length() == rope.length) {
+                    int capacity = rope.builder.capacity();
+                    rope.builder.append(rightString);
+                    // Growing the builder copies it into a larger array.
+                    int allocatedLength = (rope.builder.capacity() > capacity) ? rope.builder.capacity() : rightString.length();
+                    return new Rope(rope.builder, rope.length + rightString.length(), allocatedLength);
+                }
+
+                StringBuilder copy = new StringBuilder(2 * (rope.length + rightString.length()));
+                copy.append(rope.builder, 0, rope.length).append(rightString);
+                return new Rope(copy, copy.length(), copy.capacity());
+            }
+        }
+
+        String leftString = (String)left;
+        int length = leftString.length() + rightString.length();
+        if (length < MIN_LENGTH) {
+            return leftString + rightString;
+        }
+
+        StringBuilder builder = new StringBuilder(2 * length);
+        builder.append(leftString).append(rightString);
+        return new Rope(builder, length, builder.capacity());
+    }
+
+    /**
+     * Get the length of a text.
+     *
+     * @param text The text (a string or a rope).
+     * @return The number of characters.
+     */
+    public static int lengthOf(Object text) {
+        if (text instanceof Rope) {
+            return ((Rope)text).length;
+        }
+
+        return ((String)text).length();
+    }
+
+    /**
+     * Get the number of characters allocated to create a text (by
+     * concatenation).
+     *
+     * @param text The text (a string or a rope).
+     * @return The number of characters.
+     */
+    public static int allocatedLengthOf(Object text) {
+        if (text instanceof Rope) {
+            return ((Rope)text).allocatedLength;
+        }
+
+        return ((String)text).length();
+    }
+
+    /**
+     * Flatten a value if it is a rope.
+     *
+     * @param value The value.
+     * @return The string of a rope, otherwise the value itself.
+     */
+    public static Object flatten(Object value) {
+        if (value instanceof Rope) {
+            return value.toString();
+        }
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        synchronized (builder) {
+            if (flattened == null) {
+                flattened = builder.substring(0, length);
+            }
+
+            return flattened;
+        }
+    }
+}
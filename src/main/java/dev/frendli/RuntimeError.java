@@ -5,12 +5,22 @@ package dev.frendli;
  */
 public class RuntimeError extends RuntimeException {
     /**
-     * Token location of where the error occurred.
+     * Packed source position of where the error occurred (its lexeme is
+     * looked up in the symbol table of the program once reported).
      */
-    public final Token token;
+    public final long position;
 
-    public RuntimeError(Token token, String message) {
+    public RuntimeError(long position, String message) {
         super(message);
-        this.token = token;
+        this.position = position;
+    }
+
+    /**
+     * Get the exit status of a program aborted by the error.
+     *
+     * @return The exit status.
+     */
+    public ExitCode getExitCode() {
+        return ExitCode.INTERNAL_SOFTWARE_ERROR;
     }
 }
@@ -19,6 +19,10 @@ public class Scanner {
      * Reporter of lexical errors.
      */
     private final ErrorReporter reporter;
+    /**
+     * The symbol table the lexemes are interned in.
+     */
+    private final Symbols symbols;
     /**
      * Source code.
      */
@@ -84,8 +88,9 @@ public class Scanner {
      */
     private boolean isBlankLine = false;
 
-    public Scanner(String source, ErrorReporter reporter) {
+    public Scanner(String source, Symbols symbols, ErrorReporter reporter) {
         this.source = source;
+        this.symbols = symbols;
         this.reporter = reporter;
     }
 
@@ -107,6 +112,7 @@ public class Scanner {
         keywords.put("not", TokenType.NOT);
         keywords.put("or", TokenType.OR);
         keywords.put("otherwise", TokenType.OTHERWISE);
+        keywords.put("parallel", TokenType.PARALLEL);
         keywords.put("parent", TokenType.PARENT);
         keywords.put("repeat", TokenType.REPEAT);
         keywords.put("return", TokenType.RETURN);
@@ -133,7 +139,7 @@ public class Scanner {
         if (endsWithNewline) {
             resetIndents();
         }
-        tokens.add(new Token(TokenType.EOF, "", null, line));
+        tokens.add(new Token(TokenType.EOF, "", null, line, Symbols.NONE));
 
         return tokens;
     }
@@ -402,7 +408,7 @@ public class Scanner {
         }
 
         double literal = Double.parseDouble(getJustConsumedLexeme());
-        addToken(TokenType.NUMBER, literal);
+        addToken(TokenType.NUMBER, Numbers.valueOf(literal));
     }
 
     /**
@@ -415,8 +421,9 @@ public class Scanner {
 
         // If the lexeme matches one of the reserved keywords, the token
         // type will be that of the keyword, otherwise a regular identifier.
-        TokenType type = keywords.getOrDefault(getJustConsumedLexeme(), TokenType.IDENTIFIER);
-        addToken(type);
+        String lexeme = getJustConsumedLexeme();
+        TokenType type = keywords.getOrDefault(lexeme, TokenType.IDENTIFIER);
+        addNameToken(type, lexeme);
     }
 
     /**
@@ -458,7 +465,29 @@ public class Scanner {
      * @param literal The literal value of the token.
      */
     private void addToken(TokenType type, Object literal) {
-        tokens.add(new Token(type, getJustConsumedLexeme(), literal, line));
+        // Only names are interned, so that the table of a session does
+        // not keep every literal typed (see Symbols).
+        tokens.add(new Token(type, getJustConsumedLexeme(), literal, line, Symbols.NONE));
+    }
+
+    /**
+     * Create a token of an identifier or keyword from the lexeme most
+     * recently consumed and add it to the list of tokens.
+     *
+     * @param type The type of the token.
+     * @param lexeme The lexeme most recently consumed.
+     */
+    private void addNameToken(TokenType type, String lexeme) {
+        if (!symbols.canIntern(lexeme)) {
+            error(line, "The program uses more distinct names than allowed.");
+            return;
+        }
+
+        // Names are interned once (here) so that the resolver and the
+        // environments can key on their symbol ids, and so that equal
+        // names are the same string.
+        int symbol = symbols.intern(lexeme);
+        tokens.add(new Token(type, symbols.nameOf(symbol), null, line, symbol));
     }
 
     /**
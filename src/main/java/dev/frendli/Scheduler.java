@@ -0,0 +1,69 @@
+package dev.frendli;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * The scheduler - lets many programs share a few threads' worth of CPU
+ * (e.g. the submissions of a batch), each running for a time slice at a
+ * time. A program holds a slot while it runs, and the interpreter yields
+ * its slot at the end of each slice (counted in loop repetitions and
+ * calls) if other programs are waiting. The slots are handed over in the
+ * order they were waited for, so a short program waits for at most one
+ * slice of each program ahead of it rather than for those to finish.
+ * A program blocked (e.g. waiting for a task) releases its slot meanwhile.
+ */
+public class Scheduler {
+    /**
+     * Number of loop repetitions and calls in a time slice.
+     */
+    public static final int SLICE_LENGTH = 4096;
+    /**
+     * The slots of the programs running (fair, i.e. first come first served).
+     */
+    private final Semaphore slots;
+
+    public Scheduler(int slotCount) {
+        this.slots = new Semaphore(slotCount, true);
+    }
+
+    /**
+     * Wait for a slot to start running a program.
+     */
+    public void enter() {
+        slots.acquireUninterruptibly();
+    }
+
+    /**
+     * Release the slot of a program that is done.
+     */
+    public void exit() {
+        slots.release();
+    }
+
+    /**
+     * Release the slot of a running program about to block (e.g. waiting
+     * for a task), so that other programs run meanwhile.
+     */
+    public void suspend() {
+        slots.release();
+    }
+
+    /**
+     * Wait for a slot again to resume running a program done blocking.
+     */
+    public void resume() {
+        slots.acquireUninterruptibly();
+    }
+
+    /**
+     * End the time slice of a running program, letting a program waiting
+     * for a slot run first (if any). The caller waits for a slot again
+     * behind the programs that were already waiting.
+     */
+    public void yieldSlot() {
+        if (slots.hasQueuedThreads()) {
+            slots.release();
+            slots.acquireUninterruptibly();
+        }
+    }
+}
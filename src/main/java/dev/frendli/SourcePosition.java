@@ -0,0 +1,113 @@
+package dev.frendli;
+
+import java.util.List;
+
+/**
+ * Packed source positions - the parts of a token needed after resolution
+ * (its line, lexeme, and type) packed into a single long. The lexemes are
+ * stored once in the symbol table of the program (see Symbols), so that
+ * the nodes of the syntax tree hold positions rather than tokens while
+ * errors still report the same locations.
+ *
+ * Layout: | line (32 bits) | symbol id (24 bits) | token type (8 bits) |
+ */
+public final class SourcePosition {
+    /**
+     * The position of a missing token (e.g. of nodes created
+     * despite syntax errors, which are never interpreted).
+     */
+    public static final long NONE = -1;
+    /**
+     * The token types by ordinal (cached as "values()" creates a new array).
+     */
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private SourcePosition() {}
+
+    /**
+     * Pack the position of a token.
+     *
+     * @param token The token, or null.
+     * @return The packed position, or NONE if no token.
+     */
+    public static long of(Token token) {
+        if (token == null) {
+            return NONE;
+        }
+
+        return ((long)token.line << 32) | ((long)token.symbol << 8) | token.type.ordinal();
+    }
+
+    /**
+     * Pack the positions of tokens.
+     *
+     * @param tokens The tokens.
+     * @return The packed positions.
+     */
+    public static long[] of(List<Token> tokens) {
+        long[] positions = new long[tokens.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = of(tokens.get(i));
+        }
+
+        return positions;
+    }
+
+    /**
+     * Get the line of a position.
+     *
+     * @param position The packed position.
+     * @return The line.
+     */
+    public static int getLine(long position) {
+        return (int)(position >>> 32);
+    }
+
+    /**
+     * Get the lexeme of a position.
+     *
+     * @param position The packed position.
+     * @param symbols The symbol table of the program.
+     * @return The lexeme (interned unless that of punctuation or an operator).
+     */
+    public static String getLexeme(long position, Symbols symbols) {
+        // Punctuation and operators are not interned (see Symbols).
+        String lexeme = getType(position).lexeme;
+        if (lexeme != null) {
+            return lexeme;
+        }
+
+        return symbols.nameOf(getSymbol(position));
+    }
+
+    /**
+     * Get the symbol id of the lexeme of a position.
+     *
+     * @param position The packed position.
+     * @return The symbol id.
+     */
+    public static int getSymbol(long position) {
+        return (int)(position >>> 8) & 0xFFFFFF;
+    }
+
+    /**
+     * Get the token type of a position.
+     *
+     * @param position The packed position.
+     * @return The token type.
+     */
+    public static TokenType getType(long position) {
+        return TOKEN_TYPES[(int)(position & 0xFF)];
+    }
+
+    /**
+     * Recreate the token of a position (e.g. for reporting errors).
+     *
+     * @param position The packed position.
+     * @param symbols The symbol table of the program.
+     * @return The token (without its literal value).
+     */
+    public static Token toToken(long position, Symbols symbols) {
+        return new Token(getType(position), getLexeme(position, symbols), null, getLine(position), getSymbol(position));
+    }
+}
@@ -15,6 +15,12 @@ public abstract class Statement {
 
     public static class Block extends Statement {
         public final List<Statement> statements;
+        /**
+         * Whether a function is defined anywhere within the block (set by
+         * the resolver). Defined functions capture the block's environment,
+         * so only blocks without definitions may reuse their environment.
+         */
+        public boolean containsDefinition = true;
 
         public Block(List<Statement> statements) {
             this.statements = statements;
@@ -27,11 +33,11 @@ public abstract class Statement {
     }
 
     public static class Create extends Statement {
-        public final Token name;
+        public final long namePosition;
         public final Expression initializer;
 
-        public Create(Token name, Expression initializer) {
-            this.name = name;
+        public Create(long namePosition, Expression initializer) {
+            this.namePosition = namePosition;
             this.initializer = initializer;
         }
 
@@ -42,11 +48,16 @@ public abstract class Statement {
     }
 
     public static class Change extends Statement {
-        public final Token name;
+        public final long namePosition;
         public final Expression assignment;
-
-        public Change(Token name, Expression assignment) {
-            this.name = name;
+        /**
+         * The distance to the environment the variable is declared in
+         * (set by the resolver, or -1 if unresolved).
+         */
+        public int distance = -1;
+
+        public Change(long namePosition, Expression assignment) {
+            this.namePosition = namePosition;
             this.assignment = assignment;
         }
 
@@ -57,13 +68,13 @@ public abstract class Statement {
     }
 
     public static class Define extends Statement {
-        public final Token name;
-        public final List<Token> parameters;
+        public final long namePosition;
+        public final long[] parameterPositions;
         public final Statement.Block body;
 
-        public Define(Token name, List<Token> parameters, Statement.Block body) {
-            this.name = name;
-            this.parameters = parameters;
+        public Define(long namePosition, long[] parameterPositions, Statement.Block body) {
+            this.namePosition = namePosition;
+            this.parameterPositions = parameterPositions;
             this.body = body;
         }
 
@@ -93,14 +104,14 @@ public abstract class Statement {
         public final Statement thenBranch;
         public final List<OtherwiseIf> otherwiseIfs;
         public final Statement otherwiseBranch;
-        public final Token location;
+        public final long position;
 
-        public If(Expression condition, Statement thenBranch, List<OtherwiseIf> otherwiseIfs, Statement otherwiseBranch, Token location) {
+        public If(Expression condition, Statement thenBranch, List<OtherwiseIf> otherwiseIfs, Statement otherwiseBranch, long position) {
             this.condition = condition;
             this.thenBranch = thenBranch;
             this.otherwiseIfs = otherwiseIfs;
             this.otherwiseBranch = otherwiseBranch;
-            this.location = location;
+            this.position = position;
         }
 
         @Override
@@ -113,24 +124,34 @@ public abstract class Statement {
     public static class OtherwiseIf {
         public final Expression condition;
         public final Statement thenBranch;
-        public final Token location;
+        public final long position;
 
-        public OtherwiseIf(Expression condition, Statement thenBranch, Token location) {
+        public OtherwiseIf(Expression condition, Statement thenBranch, long position) {
             this.condition = condition;
             this.thenBranch = thenBranch;
-            this.location = location;
+            this.position = position;
         }
     }
 
     public static class RepeatTimes extends Statement {
         public final Expression times;
         public final Statement body;
-        public final Token location;
+        public final long position;
+        /**
+         * Whether the repetitions run in parallel ("repeat parallel").
+         * (The resolver verifies that they are independent.)
+         */
+        public final boolean isParallel;
+
+        public RepeatTimes(Expression times, Statement body, long position) {
+            this(times, body, position, false);
+        }
 
-        public RepeatTimes(Expression times, Statement body, Token location) {
+        public RepeatTimes(Expression times, Statement body, long position, boolean isParallel) {
             this.times = times;
             this.body = body;
-            this.location = location;
+            this.position = position;
+            this.isParallel = isParallel;
         }
 
         @Override
@@ -142,12 +163,12 @@ public abstract class Statement {
     public static class RepeatWhile extends Statement {
         public final Expression condition;
         public final Statement body;
-        public final Token location;
+        public final long position;
 
-        public RepeatWhile(Expression condition, Statement body, Token location) {
+        public RepeatWhile(Expression condition, Statement body, long position) {
             this.condition = condition;
             this.body = body;
-            this.location = location;
+            this.position = position;
         }
 
         @Override
@@ -157,10 +178,10 @@ public abstract class Statement {
     }
 
     public static class Return extends Statement {
-        public final Token location;
+        public final long position;
 
-        public Return(Token location) {
-            this.location = location;
+        public Return(long position) {
+            this.position = position;
         }
 
         @Override
@@ -171,11 +192,11 @@ public abstract class Statement {
 
     public static class ReturnWith extends Statement {
         public final Expression value;
-        public final Token location;
+        public final long position;
 
-        public ReturnWith(Token location, Expression value) {
+        public ReturnWith(long position, Expression value) {
             this.value = value;
-            this.location = location;
+            this.position = position;
         }
 
         @Override
@@ -183,4 +204,19 @@ public abstract class Statement {
             return visitor.visitReturnWithStatement(this);
         }
     }
+
+    // Produced by optimization passes rather than the parser. Unlike
+    // a block, a sequence does not create a scope of its own.
+    public static class Sequence extends Statement {
+        public final List<Statement> statements;
+
+        public Sequence(List<Statement> statements) {
+            this.statements = statements;
+        }
+
+        @Override
+        public <R> R accept(StatementVisitor<R> visitor) {
+            return visitor.visitSequenceStatement(this);
+        }
+    }
 }
@@ -16,4 +16,5 @@ public interface StatementVisitor<R> {
     R visitRepeatWhileStatement(Statement.RepeatWhile statement);
     R visitReturnStatement(Statement.Return statement);
     R visitReturnWithStatement(Statement.ReturnWith statement);
+    R visitSequenceStatement(Statement.Sequence statement);
 }
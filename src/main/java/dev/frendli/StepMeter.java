@@ -0,0 +1,261 @@
+package dev.frendli;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The step meter - counts the statements executed by a program and the
+ * steps it takes (loop repetitions and calls), and aborts the program
+ * with a LimitError once it has executed more statements or run for
+ * longer than allowed. Every SLICE_LENGTH steps, the time slice of the
+ * program ends: it yields to other programs (see Scheduler) and the
+ * limits checked less cheaply are verified. Both the interpreter of the
+ * syntax tree and the IR interpreter use a meter, so a program has the
+ * same limits whichever executes it. The meters forked for the tasks of a
+ * program (see fork) add their statements to one count of the program,
+ * in batches at the end of each slice and once the task is done. Once
+ * the program is stopped (see stop), all of its meters abort their tasks.
+ */
+public class StepMeter {
+    /**
+     * Max number of milliseconds until a deadline (so that it never overflows).
+     */
+    private static final long MAX_DEADLINE_MILLISECONDS = TimeUnit.DAYS.toMillis(365);
+    /**
+     * Max number of nanoseconds a blocking operation waits for before
+     * verifying again that the program has not been stopped.
+     */
+    private static final long MAX_WAIT_NANOSECONDS = TimeUnit.MILLISECONDS.toNanos(100);
+    /**
+     * Max number of statements the program may execute.
+     */
+    private final long maxStatementCount;
+    /**
+     * Max number of milliseconds (wall-clock time) the program may run for.
+     */
+    private final long maxMilliseconds;
+    /**
+     * The time (of System.nanoTime) the program must be done by.
+     */
+    private final long deadline;
+    /**
+     * The scheduler sharing the threads with other programs, or null if
+     * the program runs without yielding (e.g. alone).
+     */
+    private final Scheduler scheduler;
+    /**
+     * Number of statements executed by the program (by this meter and the
+     * meters forked from it) and added to the count so far.
+     */
+    private final AtomicLong programStatementCount;
+    /**
+     * Whether the program has been stopped (shared by all of its meters).
+     */
+    private final AtomicBoolean isProgramStopped;
+    /**
+     * Number of statements executed since last added to the count of the
+     * program. (Only compared to the max at steps, which any program
+     * executing without end must keep taking.)
+     */
+    private long statementCount = 0;
+    /**
+     * Number of steps left in the current time slice.
+     */
+    private int sliceCountdown = Scheduler.SLICE_LENGTH;
+
+    public StepMeter(long maxStatementCount, long maxMilliseconds, Scheduler scheduler) {
+        this(maxStatementCount, maxMilliseconds, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(maxMilliseconds, MAX_DEADLINE_MILLISECONDS)), scheduler, new AtomicLong(), new AtomicBoolean());
+    }
+
+    private StepMeter(long maxStatementCount, long maxMilliseconds, long deadline, Scheduler scheduler, AtomicLong programStatementCount, AtomicBoolean isProgramStopped) {
+        this.maxStatementCount = maxStatementCount;
+        this.maxMilliseconds = maxMilliseconds;
+        this.deadline = deadline;
+        this.scheduler = scheduler;
+        this.programStatementCount = programStatementCount;
+        this.isProgramStopped = isProgramStopped;
+    }
+
+    /**
+     * Create a meter for a task running on a thread of its own (e.g. the
+     * repetitions of "repeat parallel"), which has the same deadline but
+     * never holds a slot of the scheduler. The task's statements are
+     * added to the count of the program (see flush once it is done).
+     *
+     * @return The forked meter.
+     */
+    public StepMeter fork() {
+        flush();
+
+        return new StepMeter(maxStatementCount, maxMilliseconds, deadline, null, programStatementCount, isProgramStopped);
+    }
+
+    /**
+     * Add the statements executed since last added to the count of the
+     * program (e.g. once the task of a forked meter is done).
+     */
+    public void flush() {
+        programStatementCount.addAndGet(statementCount);
+        statementCount = 0;
+    }
+
+    /**
+     * Stop the program, so that its tasks (on other threads) abort at
+     * their next slice or wait rather than keep running.
+     */
+    public void stop() {
+        isProgramStopped.set(true);
+    }
+
+    /**
+     * Perform a blocking operation (e.g. taking a value out of a channel),
+     * waiting for at most the time the program has left. While waiting,
+     * the program does not hold its slot of the scheduler.
+     *
+     * @param operation The operation.
+     * @return The result of the operation.
+     * @throws InterruptedException If the thread waiting was interrupted or the program stopped.
+     * @throws TimeoutException If the program ran out of time while waiting.
+     */
+    public <T> T await(BlockingOperation<T> operation) throws InterruptedException, TimeoutException {
+        // Most operations are done without waiting.
+        try {
+            return operation.perform(0);
+        }
+        catch (TimeoutException e) {
+            // Wait below.
+        }
+        catch (InterruptedException e) {
+            stop();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        if (scheduler != null) {
+            scheduler.suspend();
+        }
+        try {
+            return awaitWithoutSlot(operation);
+        }
+        finally {
+            if (scheduler != null) {
+                scheduler.resume();
+            }
+        }
+    }
+
+    /**
+     * Perform a blocking operation while not holding a slot of the scheduler.
+     *
+     * @param operation The operation.
+     * @return The result of the operation.
+     * @throws InterruptedException If the thread waiting was interrupted or the program stopped.
+     * @throws TimeoutException If the program ran out of time while waiting.
+     */
+    private <T> T awaitWithoutSlot(BlockingOperation<T> operation) throws InterruptedException, TimeoutException {
+        while (true) {
+            if (isProgramStopped.get()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                // The wait is split so that a stopped program is noticed.
+                return operation.perform(Math.min(remaining, MAX_WAIT_NANOSECONDS));
+            }
+            catch (TimeoutException e) {
+                // Wait again (unless the program is out of time).
+            }
+            catch (InterruptedException e) {
+                stop();
+                Thread.currentThread().interrupt();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Get the message of the error for running longer than allowed.
+     *
+     * @return The message.
+     */
+    public String getTimeLimitMessage() {
+        return "The program has run for longer than it is allowed to (" + maxMilliseconds + " milliseconds). Make sure that loops stop repeating.";
+    }
+
+    /**
+     * Count a statement executed.
+     */
+    public void countStatement() {
+        statementCount++;
+    }
+
+    /**
+     * Count statements executed (e.g. those of a basic block entered).
+     *
+     * @param count The number of statements.
+     */
+    public void countStatements(int count) {
+        statementCount += count;
+    }
+
+    /**
+     * Count a step in the current time slice, verifying the statement
+     * limit. Once the slice is over, it is ended (see endSlice).
+     *
+     * @param location The position of the loop or call.
+     */
+    public void countStep(long location) {
+        if (programStatementCount.get() + statementCount > maxStatementCount) {
+            throw new LimitError(location, ExitCode.STATEMENT_LIMIT_ERROR, "The program has executed more statements than it is allowed to (" + maxStatementCount + " statements). Make sure that loops stop repeating.");
+        }
+        if (--sliceCountdown == 0) {
+            sliceCountdown = Scheduler.SLICE_LENGTH;
+            endSlice(location);
+        }
+    }
+
+    /**
+     * End the current time slice, yielding to other programs (if any are
+     * waiting) and verifying that the program may keep running.
+     *
+     * @param location The position of the loop or call.
+     */
+    private void endSlice(long location) {
+        flush();
+        if (scheduler != null) {
+            scheduler.yieldSlot();
+        }
+        // The thread is interrupted by the host to stop the program
+        // (and its tasks).
+        if (Thread.currentThread().isInterrupted()) {
+            stop();
+        }
+        if (isProgramStopped.get()) {
+            throw new LimitError(location, ExitCode.INTERRUPTED, "The program was stopped before it was done.");
+        }
+        if (System.nanoTime() - deadline > 0) {
+            throw new LimitError(location, ExitCode.TIME_LIMIT_ERROR, getTimeLimitMessage());
+        }
+    }
+
+    /**
+     * A blocking operation that waits for at most a number of nanoseconds.
+     */
+    @FunctionalInterface
+    public interface BlockingOperation<T> {
+        /**
+         * Perform the operation.
+         *
+         * @param timeout The max number of nanoseconds to wait for.
+         * @return The result of the operation.
+         * @throws InterruptedException If the thread waiting was interrupted.
+         * @throws TimeoutException If the operation is not done in time.
+         */
+        T perform(long timeout) throws InterruptedException, TimeoutException;
+    }
+}
@@ -0,0 +1,129 @@
+package dev.frendli;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The symbol table - interns the names of a program (or of the programs
+ * compiled in one interactive session) once, giving each a small dense id.
+ * The scanner interns the lexemes of identifiers and keywords, so the
+ * resolver and the environments key on the ids (using arrays) rather than
+ * hashing the names again on every declaration and lookup, and packed
+ * source positions refer to the lexemes by their ids (see SourcePosition).
+ * The lexemes of literals, operators, and punctuation are not interned
+ * (their tokens share the id NONE), so that a session does not grow the
+ * table with every literal typed. Each table only holds the names of its
+ * own programs, so the ids stay as small as the programs. The natives are
+ * interned first, in the same order in every table, so that they have the
+ * same ids in every program.
+ */
+public final class Symbols {
+    /**
+     * Max number of symbols (the ids must fit in a packed source position).
+     */
+    private static final int MAX_COUNT = 1 << 24;
+    /**
+     * The names of the natives, whose ids are their indexes.
+     */
+    private static final List<String> NATIVE_NAMES = NativeFunction.getNames();
+    /**
+     * The id shared by the tokens whose lexemes are not interned (that of
+     * the empty lexeme, interned right after the natives).
+     */
+    public static final int NONE = NATIVE_NAMES.size();
+    /**
+     * The ids of the symbols in the table.
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+    /**
+     * The names of the symbols in the table (indexed by id). The array
+     * is replaced when grown, so readers (e.g. tasks reporting errors)
+     * never see a partially copied array.
+     */
+    private volatile String[] names = new String[64];
+    /**
+     * The number of symbols in the table.
+     */
+    private int count = 0;
+
+    public Symbols() {
+        for (String name : NATIVE_NAMES) {
+            intern(name);
+        }
+        intern("");
+    }
+
+    /**
+     * Get the id of a native's name (the same in every table).
+     *
+     * @param name The name of the native.
+     * @return The id.
+     */
+    public static int ofNative(String name) {
+        int id = NATIVE_NAMES.indexOf(name);
+        if (id == -1) {
+            throw new IllegalArgumentException("'" + name + "' is not the name of a native.");
+        }
+
+        return id;
+    }
+
+    /**
+     * Get the id of a name, adding it to the table if not yet present.
+     * (Only the thread compiling the programs of the table may intern.)
+     *
+     * @param name The name.
+     * @return The id.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (count == MAX_COUNT) {
+            throw new IllegalStateException("Too many distinct names to intern.");
+        }
+
+        String[] table = names;
+        if (count == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[count] = name;
+        names = table;
+        ids.put(name, count);
+
+        return count++;
+    }
+
+    /**
+     * Check if a name can be interned (i.e. it is already in the table,
+     * or the table is not full).
+     *
+     * @param name The name.
+     * @return Whether it can be interned.
+     */
+    public boolean canIntern(String name) {
+        return count < MAX_COUNT || ids.containsKey(name);
+    }
+
+    /**
+     * Get the number of symbols in the table.
+     *
+     * @return The number of symbols.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the name of a symbol.
+     *
+     * @param id The id.
+     * @return The name.
+     */
+    public String nameOf(int id) {
+        return names[id];
+    }
+}
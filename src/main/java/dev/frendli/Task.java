@@ -0,0 +1,149 @@
+package dev.frendli;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task - a call of a definition (without parameters) started with the
+ * native "start" and running on a thread of its own, whose result is
+ * later waited for with the native "wait" (runtime representation).
+ * The task runs with its own interpreter state (current environment,
+ * calls, and allocation meter) but shares the environments of the
+ * definition's closure, so it must not change variables that others use.
+ * The number of tasks a program runs at once is limited, and the tasks
+ * still running once the program is done are cancelled (see TaskGroup).
+ */
+public final class Task {
+    /**
+     * The threads running tasks, shared by all programs. Tasks mostly
+     * wait (e.g. for each other) rather than compute, so a thread is
+     * created for each task not finding an idle one (bounded by the max
+     * number of tasks of each program). (The threads are daemons so that
+     * a task never waited for does not keep the JVM alive.)
+     */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(new TaskThreadFactory());
+    /**
+     * The interpreter running the call.
+     */
+    private final Interpreter interpreter;
+    /**
+     * The result of the call.
+     */
+    private final Future<Object> result;
+    /**
+     * Whether the values allocated by the task have been accounted for.
+     */
+    private boolean isJoined = false;
+
+    private Task(Interpreter interpreter, Future<Object> result) {
+        this.interpreter = interpreter;
+        this.result = result;
+    }
+
+    /**
+     * Start calling a definition on a thread of its own.
+     *
+     * @param interpreter The interpreter starting the task.
+     * @param function The definition to call.
+     * @return The task.
+     */
+    static Task start(Interpreter interpreter, FrendliCallable function) {
+        Interpreter taskInterpreter = interpreter.forkTask();
+        Future<Object> result = interpreter.startTask(executor, () -> {
+            try {
+                return function.call(taskInterpreter, List.of());
+            }
+            finally {
+                taskInterpreter.finishTask();
+            }
+        });
+
+        return new Task(taskInterpreter, result);
+    }
+
+    /**
+     * Wait for the task to be done (for at most the time the program of
+     * the waiter has left). A runtime error in the task is thrown again
+     * as is, so that it is reported where it occurred in the task.
+     *
+     * @param waiter The interpreter waiting.
+     * @return The value returned by the call.
+     */
+    Object await(Interpreter waiter) {
+        try {
+            return waiter.await(this::get, "waiting for a task");
+        }
+        finally {
+            join(waiter);
+        }
+    }
+
+    /**
+     * Get the value returned by the call, waiting for at most a time.
+     *
+     * @param timeout The max number of nanoseconds to wait for.
+     * @return The value.
+     * @throws InterruptedException If the thread waiting was interrupted.
+     * @throws TimeoutException If the task is not done after the timeout.
+     */
+    private Object get(long timeout) throws InterruptedException, TimeoutException {
+        try {
+            return result.get(timeout, TimeUnit.NANOSECONDS);
+        }
+        catch (CancellationException e) {
+            // Only tasks of a previous program (e.g. an earlier line of the prompt) are cancelled.
+            throw new NativeFunction.Failure(ExitCode.INTERRUPTED, "The task was stopped when the program that started it was done.");
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw (RuntimeException)e.getCause();
+        }
+    }
+
+    /**
+     * Account for the values allocated by the task in the meter of the
+     * interpreter waiting for it (once, even if waited for again).
+     *
+     * @param waiter The interpreter waiting.
+     */
+    private synchronized void join(Interpreter waiter) {
+        if (isJoined || !result.isDone()) {
+            return;
+        }
+        waiter.joinTask(interpreter);
+        isJoined = true;
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+
+    /**
+     * Factory of the (daemon) threads running tasks.
+     */
+    private static final class TaskThreadFactory implements ThreadFactory {
+        /**
+         * The number of threads created so far (for naming them).
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "frendli-task-" + count.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package dev.frendli;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A task group - the work a program runs on other threads (its tasks,
+ * see Task, and its parallel repetitions), so that the number of tasks
+ * running at once is limited, and so that the tasks can be cancelled and
+ * all of the work waited for once the program is done. The group is
+ * shared by the interpreters forked for the work.
+ */
+public final class TaskGroup {
+    /**
+     * Default max number of tasks (started with "start") running at once.
+     */
+    public static final int DEFAULT_MAX_TASK_COUNT = 1000;
+    /**
+     * Max number of tasks (started with "start") running at once.
+     */
+    private final int maxTaskCount;
+    /**
+     * The futures of the tasks (started with "start") not yet done.
+     */
+    private final Set<Future<?>> runningTasks = ConcurrentHashMap.newKeySet();
+    /**
+     * Number of tasks (started with "start") running.
+     */
+    private int taskCount = 0;
+    /**
+     * Number of pieces of work (tasks and others) whose thread has not
+     * yet returned (even if cancelled).
+     */
+    private int workCount = 0;
+
+    public TaskGroup(int maxTaskCount) {
+        this.maxTaskCount = maxTaskCount;
+    }
+
+    /**
+     * Start a task (started with "start"), unless as many tasks as
+     * allowed are already running.
+     *
+     * @param executor The executor running the task.
+     * @param callable The call of the task.
+     * @return The future of the task.
+     */
+    public <T> Future<T> startTask(Executor executor, Callable<T> callable) {
+        synchronized (this) {
+            if (taskCount == maxTaskCount) {
+                throw new NativeFunction.Failure(ExitCode.TASK_LIMIT_ERROR, "The program has started more tasks running at once than it is allowed to (" + maxTaskCount + " tasks). Make sure that tasks are done before starting more.");
+            }
+            taskCount++;
+            workCount++;
+        }
+
+        FutureTask<T> future = new FutureTask<>(callable);
+        runningTasks.add(future);
+        try {
+            // The future is done once cancelled, while its thread may
+            // still be running the call, so the task is only removed
+            // once the thread returns.
+            executor.execute(() -> {
+                try {
+                    future.run();
+                }
+                finally {
+                    runningTasks.remove(future);
+                    finish(true);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            runningTasks.remove(future);
+            finish(true);
+            throw e;
+        }
+
+        return future;
+    }
+
+    /**
+     * Keep work other than a task in the group (e.g. parallel repetitions)
+     * until it returns. The work must be called (it is stopped through
+     * its step meter rather than cancelled).
+     *
+     * @param callable The work.
+     * @return The work kept in the group.
+     */
+    public <T> Callable<T> keep(Callable<T> callable) {
+        synchronized (this) {
+            workCount++;
+        }
+
+        return () -> {
+            try {
+                return callable.call();
+            }
+            finally {
+                finish(false);
+            }
+        };
+    }
+
+    /**
+     * Cancel the tasks not yet done, interrupting the threads running them.
+     */
+    public void cancel() {
+        for (Future<?> future : runningTasks) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Wait for all work (also cancelled) to have returned from its thread.
+     *
+     * @param timeout The max number of milliseconds to wait for.
+     * @return Whether all work is done.
+     * @throws InterruptedException If the thread waiting was interrupted.
+     */
+    public synchronized boolean awaitDone(long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (workCount > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Account for work whose thread has returned.
+     *
+     * @param isTask Whether the work is a task (started with "start").
+     */
+    private synchronized void finish(boolean isTask) {
+        if (isTask) {
+            taskCount--;
+        }
+        workCount--;
+        notifyAll();
+    }
+}
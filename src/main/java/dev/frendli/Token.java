@@ -23,12 +23,18 @@ public class Token {
      * The line on which the token appeared in the source code.
      */
     public final int line;
+    /**
+     * The symbol id of the lexeme in the symbol table of the program
+     * (see Symbols).
+     */
+    public final int symbol;
 
-    public Token(TokenType type, String lexeme, Object literal, int line) {
+    public Token(TokenType type, String lexeme, Object literal, int line, int symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
     }
 
     @Override
@@ -5,19 +5,19 @@ package dev.frendli;
  */
 public enum TokenType {
     // Punctuation and non-keyword operators
-    CLOSE_PAREN,
-    COMMA,
-    DOT,
-    EQUALS_SIGN,
-    GREATER_THAN,
-    GREATER_THAN_EQUALS,
-    LESS_THAN,
-    LESS_THAN_EQUALS,
-    MINUS,
-    OPEN_PAREN,
-    PLUS,
-    STAR,
-    SLASH,
+    CLOSE_PAREN(")"),
+    COMMA(","),
+    DOT("."),
+    EQUALS_SIGN("="),
+    GREATER_THAN(">"),
+    GREATER_THAN_EQUALS(">="),
+    LESS_THAN("<"),
+    LESS_THAN_EQUALS("<="),
+    MINUS("-"),
+    OPEN_PAREN("("),
+    PLUS("+"),
+    STAR("*"),
+    SLASH("/"),
 
     // Reserved keywords
     ACCEPT,
@@ -36,6 +36,7 @@ public enum TokenType {
     NOT,
     OR,
     OTHERWISE,
+    PARALLEL,
     PARENT,
     REPEAT,
     RETURN,
@@ -58,4 +59,19 @@ public enum TokenType {
 
     // End of file
     EOF;
+
+    /**
+     * The lexeme of every token of the type (of punctuation and
+     * non-keyword operators), or null if the lexemes differ.
+     * (Their lexemes are not interned in the symbol table.)
+     */
+    public final String lexeme;
+
+    TokenType() {
+        this(null);
+    }
+
+    TokenType(String lexeme) {
+        this.lexeme = lexeme;
+    }
 }
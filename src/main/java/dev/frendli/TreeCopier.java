@@ -0,0 +1,253 @@
+package dev.frendli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The tree copier - creates deep copies of resolved statements (e.g. the
+ * copies of an unrolled loop body) so that no node is shared by two places
+ * in the syntax tree. The copies keep the data stored by the resolver and
+ * the type inferrer. The copier may also inline the statements of a block
+ * into its enclosing scope (dropping the block's own scope), in which case
+ * the distances of the variables declared outside the block are adjusted.
+ */
+public class TreeCopier implements StatementVisitor<Statement>, ExpressionVisitor<Expression> {
+    /**
+     * Whether the scope of the copied statements is removed (i.e. the
+     * statements are inlined into the enclosing scope of their block).
+     */
+    private final boolean isRemovingScope;
+    /**
+     * Number of scopes created within the copied statements enclosing
+     * the node being copied.
+     */
+    private int depth = 0;
+
+    private TreeCopier(boolean isRemovingScope) {
+        this.isRemovingScope = isRemovingScope;
+    }
+
+    /**
+     * Copy a block, creating a new scope for the copy.
+     *
+     * @param block The block.
+     * @return The copy.
+     */
+    public static Statement.Block copyBlock(Statement.Block block) {
+        return (Statement.Block)new TreeCopier(false).copy(block);
+    }
+
+    /**
+     * Copy the statements of a block to execute them in the enclosing
+     * scope of the block. (The block must not declare any names itself.)
+     *
+     * @param block The block.
+     * @return The copies of its statements.
+     */
+    public static List<Statement> copyInlined(Statement.Block block) {
+        return new TreeCopier(true).copy(block.statements);
+    }
+
+    /**
+     * Check if a block declares any names in its own scope (i.e. not
+     * only in the scopes nested within it), so that it cannot be inlined.
+     *
+     * @param statements The statements of the block.
+     * @return Whether any names are declared.
+     */
+    public static boolean isDeclaring(List<Statement> statements) {
+        for (Statement statement : statements) {
+            if (statement instanceof Statement.Create || statement instanceof Statement.Define) {
+                return true;
+            }
+            // Sequences do not create a scope.
+            if (statement instanceof Statement.Sequence && isDeclaring(((Statement.Sequence)statement).statements)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public Statement visitBlockStatement(Statement.Block statement) {
+        depth++;
+        Statement.Block copy = new Statement.Block(copy(statement.statements));
+        depth--;
+        copy.containsDefinition = statement.containsDefinition;
+
+        return copy;
+    }
+
+    @Override
+    public Statement visitCreateStatement(Statement.Create statement) {
+        return new Statement.Create(statement.namePosition, copy(statement.initializer));
+    }
+
+    @Override
+    public Statement visitChangeStatement(Statement.Change statement) {
+        Statement.Change copy = new Statement.Change(statement.namePosition, copy(statement.assignment));
+        copy.distance = adjust(statement.distance);
+
+        return copy;
+    }
+
+    @Override
+    public Statement visitDefineStatement(Statement.Define statement) {
+        // The parameters and the statements of the body share one scope.
+        depth++;
+        Statement.Block body = new Statement.Block(copy(statement.body.statements));
+        depth--;
+        body.containsDefinition = statement.body.containsDefinition;
+
+        return new Statement.Define(statement.namePosition, statement.parameterPositions, body);
+    }
+
+    @Override
+    public Statement visitExpressionStatement(Statement.ExpressionStatement statement) {
+        return new Statement.ExpressionStatement(copy(statement.expression));
+    }
+
+    @Override
+    public Statement visitIfStatement(Statement.If statement) {
+        List<Statement.OtherwiseIf> otherwiseIfs = new ArrayList<>();
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            otherwiseIfs.add(new Statement.OtherwiseIf(copy(otherwiseIf.condition), copy(otherwiseIf.thenBranch), otherwiseIf.position));
+        }
+        Statement otherwiseBranch = (statement.otherwiseBranch == null) ? null : copy(statement.otherwiseBranch);
+
+        return new Statement.If(copy(statement.condition), copy(statement.thenBranch), otherwiseIfs, otherwiseBranch, statement.position);
+    }
+
+    @Override
+    public Statement visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        return new Statement.RepeatTimes(copy(statement.times), copy(statement.body), statement.position, statement.isParallel);
+    }
+
+    @Override
+    public Statement visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        return new Statement.RepeatWhile(copy(statement.condition), copy(statement.body), statement.position);
+    }
+
+    @Override
+    public Statement visitReturnStatement(Statement.Return statement) {
+        return new Statement.Return(statement.position);
+    }
+
+    @Override
+    public Statement visitReturnWithStatement(Statement.ReturnWith statement) {
+        return new Statement.ReturnWith(statement.position, copy(statement.value));
+    }
+
+    @Override
+    public Statement visitSequenceStatement(Statement.Sequence statement) {
+        return new Statement.Sequence(copy(statement.statements));
+    }
+
+    @Override
+    public Expression visitBinaryExpression(Expression.Binary expression) {
+        return withType(new Expression.Binary(copy(expression.left), expression.operatorPosition, copy(expression.right)), expression);
+    }
+
+    @Override
+    public Expression visitCallExpression(Expression.Call expression) {
+        List<Expression> arguments = new ArrayList<>();
+        for (Expression argument : expression.arguments) {
+            arguments.add(copy(argument));
+        }
+
+        return withType(new Expression.Call(copy(expression.callee), arguments, expression.position), expression);
+    }
+
+    @Override
+    public Expression visitGroupingExpression(Expression.Grouping expression) {
+        return withType(new Expression.Grouping(copy(expression.expression)), expression);
+    }
+
+    @Override
+    public Expression visitLiteralExpression(Expression.Literal expression) {
+        return withType(new Expression.Literal(expression.value), expression);
+    }
+
+    @Override
+    public Expression visitLogicalExpression(Expression.Logical expression) {
+        return withType(new Expression.Logical(copy(expression.left), expression.operatorPosition, copy(expression.right)), expression);
+    }
+
+    @Override
+    public Expression visitUnaryExpression(Expression.Unary expression) {
+        return withType(new Expression.Unary(expression.operatorPosition, copy(expression.right)), expression);
+    }
+
+    @Override
+    public Expression visitVariableExpression(Expression.Variable expression) {
+        Expression.Variable copy = new Expression.Variable(expression.namePosition);
+        copy.distance = adjust(expression.distance);
+
+        return withType(copy, expression);
+    }
+
+    /**
+     * Copy a list of statements.
+     *
+     * @param statements The statements.
+     * @return The copies.
+     */
+    private List<Statement> copy(List<Statement> statements) {
+        List<Statement> copies = new ArrayList<>(statements.size());
+        for (Statement statement : statements) {
+            copies.add(copy(statement));
+        }
+
+        return copies;
+    }
+
+    /**
+     * Copy a statement.
+     *
+     * @param statement The statement.
+     * @return The copy.
+     */
+    private Statement copy(Statement statement) {
+        return statement.accept(this);
+    }
+
+    /**
+     * Copy an expression.
+     *
+     * @param expression The expression.
+     * @return The copy.
+     */
+    private Expression copy(Expression expression) {
+        return expression.accept(this);
+    }
+
+    /**
+     * Adjust the distance of a variable to the scope it is declared in.
+     *
+     * @param distance The distance in the original statements (or -1 if unresolved).
+     * @return The distance in the copy.
+     */
+    private int adjust(int distance) {
+        // Variables declared outside the removed scope are one scope closer.
+        // (No variable is declared in the removed scope itself.)
+        if (isRemovingScope && distance > depth) {
+            return distance - 1;
+        }
+
+        return distance;
+    }
+
+    /**
+     * Keep the type proven for an expression in its copy.
+     *
+     * @param copy The copy.
+     * @param original The original expression.
+     * @return The copy.
+     */
+    private static Expression withType(Expression copy, Expression original) {
+        copy.provenType = original.provenType;
+
+        return copy;
+    }
+}
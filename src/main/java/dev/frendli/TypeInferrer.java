@@ -0,0 +1,474 @@
+package dev.frendli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The type inferrer - traverses the resolved syntax tree and annotates
+ * each expression with the type of value it is proven to evaluate to.
+ * The analysis is flow-sensitive: the type of a variable follows the
+ * values assigned to it along the control flow, and is merged where
+ * branches and loops join. Whenever a type cannot be proven (e.g. for
+ * parameters, call results, or variables that functions may change),
+ * the type is UNKNOWN and the interpreter keeps its runtime checks.
+ */
+public class TypeInferrer implements ExpressionVisitor<ValueType>, StatementVisitor<Void> {
+    /**
+     * A declared variable or function.
+     */
+    private static class Declaration {
+        /**
+         * The number of functions enclosing the declaration.
+         */
+        final int functionDepth;
+        /**
+         * The type of the value bound when declared.
+         */
+        final ValueType declaredType;
+
+        Declaration(int functionDepth, ValueType declaredType) {
+            this.functionDepth = functionDepth;
+            this.declaredType = declaredType;
+        }
+    }
+
+    /**
+     * Max number of times a loop body is analyzed before its variables
+     * are given up on. (The types only ever widen to UNKNOWN, so a fixed
+     * point is normally reached after a couple of passes.)
+     */
+    private static final int MAX_LOOP_PASSES = 32;
+    /**
+     * Stack of block scopes each mapping the declared names (symbol ids) to their declarations.
+     */
+    private final List<Map<Integer, Declaration>> scopes = new ArrayList<>();
+    /**
+     * Names (symbol ids) that are the target of a "change" statement anywhere in the program.
+     */
+    private final Set<Integer> changedNames = new HashSet<>();
+    /**
+     * Names (symbol ids) that are changed from within a function other than the one
+     * they are declared in. (Their types are never proven since the
+     * functions may be called at any time.)
+     */
+    private final Set<Integer> sharedNames = new HashSet<>();
+    /**
+     * The proven type of each declaration at the current point in the program.
+     */
+    private Map<Declaration, ValueType> types = new HashMap<>();
+    /**
+     * The number of functions enclosing the current point in the program.
+     */
+    private int functionDepth = 0;
+    /**
+     * Whether the first pass (only collecting changed names) is running.
+     */
+    private boolean isCollectingChanges = false;
+
+    /**
+     * Infer the types of all expressions in a list of resolved statements.
+     *
+     * @param statements The statements.
+     */
+    public void infer(List<Statement> statements) {
+        // The first pass collects which names are changed (and from where)
+        // since a change may appear after a use of the variable in a function.
+        // The second pass overwrites every annotation made by the first one.
+        isCollectingChanges = true;
+        inferInGlobalScope(statements);
+        isCollectingChanges = false;
+        inferInGlobalScope(statements);
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        createScope();
+        inferStatements(statement.statements);
+        discardScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visitCreateStatement(Statement.Create statement) {
+        ValueType type = infer(statement.initializer);
+        declare(statement.namePosition, type);
+
+        return null;
+    }
+
+    @Override
+    public Void visitChangeStatement(Statement.Change statement) {
+        ValueType type = infer(statement.assignment);
+        Declaration declaration = lookUp(statement.namePosition);
+        boolean isInOtherFunction = (declaration == null || declaration.functionDepth != functionDepth);
+
+        if (isCollectingChanges) {
+            changedNames.add(SourcePosition.getSymbol(statement.namePosition));
+            if (isInOtherFunction && functionDepth > 0) {
+                sharedNames.add(SourcePosition.getSymbol(statement.namePosition));
+            }
+        }
+
+        if (!isInOtherFunction) {
+            types.put(declaration, isShared(statement.namePosition) ? ValueType.UNKNOWN : type);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitDefineStatement(Statement.Define statement) {
+        // Declare the name before inferring the body to allow for recursion.
+        declare(statement.namePosition, ValueType.FUNCTION);
+
+        // The body may run at any later point in the program, so no types
+        // in the enclosing function's flow are carried into it.
+        Map<Declaration, ValueType> enclosingTypes = types;
+        types = new HashMap<>();
+        functionDepth++;
+
+        createScope();
+        for (long parameter : statement.parameterPositions) {
+            declare(parameter, ValueType.UNKNOWN);
+        }
+        inferStatements(statement.body.statements);
+        discardScope();
+
+        functionDepth--;
+        types = enclosingTypes;
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        infer(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        infer(statement.condition);
+
+        // Each branch starts from the types after the conditions (which cannot
+        // change any types), and the types after the statement are the merge
+        // of the types at the end of every branch taken.
+        Map<Declaration, ValueType> beforeBranches = types;
+        types = new HashMap<>(beforeBranches);
+        infer(statement.thenBranch);
+        Map<Declaration, ValueType> merged = types;
+
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            types = new HashMap<>(beforeBranches);
+            infer(otherwiseIf.condition);
+            infer(otherwiseIf.thenBranch);
+            merged = merge(merged, types);
+        }
+
+        types = new HashMap<>(beforeBranches);
+        if (statement.otherwiseBranch != null) {
+            infer(statement.otherwiseBranch);
+        }
+        types = merge(merged, types);
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        infer(statement.times);
+        inferLoop(null, statement.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        inferLoop(statement.condition, statement.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnWithStatement(Statement.ReturnWith statement) {
+        infer(statement.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSequenceStatement(Statement.Sequence statement) {
+        inferStatements(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public ValueType visitBinaryExpression(Expression.Binary expression) {
+        ValueType left = infer(expression.left);
+        ValueType right = infer(expression.right);
+
+        switch (SourcePosition.getType(expression.operatorPosition)) {
+            case EQUALS_WORD:
+            case UNEQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_EQUALS:
+                return ValueType.BOOLEAN;
+            case MINUS:
+            case SLASH:
+            case STAR:
+                return ValueType.NUMBER;
+            case PLUS:
+                // If the operation does not fail, both operands are of the same
+                // type. Hence, one proven operand is enough to know the result.
+                if (left == ValueType.NUMBER || right == ValueType.NUMBER) {
+                    return ValueType.NUMBER;
+                }
+                if (left == ValueType.TEXT || right == ValueType.TEXT) {
+                    return ValueType.TEXT;
+                }
+                return ValueType.UNKNOWN;
+        }
+
+        return ValueType.UNKNOWN;
+    }
+
+    @Override
+    public ValueType visitCallExpression(Expression.Call expression) {
+        infer(expression.callee);
+        for (Expression argument : expression.arguments) {
+            infer(argument);
+        }
+
+        return ValueType.UNKNOWN;
+    }
+
+    @Override
+    public ValueType visitGroupingExpression(Expression.Grouping expression) {
+        return infer(expression.expression);
+    }
+
+    @Override
+    public ValueType visitLiteralExpression(Expression.Literal expression) {
+        return ValueType.of(expression.value);
+    }
+
+    @Override
+    public ValueType visitLogicalExpression(Expression.Logical expression) {
+        infer(expression.left);
+        infer(expression.right);
+
+        return ValueType.BOOLEAN;
+    }
+
+    @Override
+    public ValueType visitUnaryExpression(Expression.Unary expression) {
+        infer(expression.right);
+
+        switch (SourcePosition.getType(expression.operatorPosition)) {
+            case MINUS:
+                return ValueType.NUMBER;
+            case NOT:
+                return ValueType.BOOLEAN;
+        }
+
+        return ValueType.UNKNOWN;
+    }
+
+    @Override
+    public ValueType visitVariableExpression(Expression.Variable expression) {
+        long name = expression.namePosition;
+        Declaration declaration = lookUp(name);
+
+        // Names not declared in this program (i.e. natives) are not proven.
+        if (declaration == null || isShared(name)) {
+            return ValueType.UNKNOWN;
+        }
+
+        // Variables of enclosing functions may have changed since the
+        // current function was defined unless they are never changed.
+        if (declaration.functionDepth != functionDepth) {
+            return changedNames.contains(SourcePosition.getSymbol(name)) ? ValueType.UNKNOWN : declaration.declaredType;
+        }
+
+        return types.getOrDefault(declaration, ValueType.UNKNOWN);
+    }
+
+    /**
+     * Infer the types in a list of statements from the global scope.
+     *
+     * @param statements The statements.
+     */
+    private void inferInGlobalScope(List<Statement> statements) {
+        scopes.clear();
+        types = new HashMap<>();
+        functionDepth = 0;
+
+        createScope();
+        inferStatements(statements);
+        discardScope();
+    }
+
+    /**
+     * Infer the types in a list of statements.
+     *
+     * @param statements The statements.
+     */
+    private void inferStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            infer(statement);
+        }
+    }
+
+    /**
+     * Infer the types in a statement.
+     *
+     * @param statement The statement.
+     */
+    private void infer(Statement statement) {
+        statement.accept(this);
+    }
+
+    /**
+     * Infer and annotate the type of an expression.
+     *
+     * @param expression The expression.
+     * @return The proven type.
+     */
+    private ValueType infer(Expression expression) {
+        ValueType type = expression.accept(this);
+        expression.provenType = type;
+
+        return type;
+    }
+
+    /**
+     * Infer the types in a loop by analyzing the body until the types
+     * at the start of an iteration no longer change.
+     *
+     * @param condition The condition checked before each iteration (or null).
+     * @param body The body of the loop.
+     */
+    private void inferLoop(Expression condition, Statement body) {
+        Map<Declaration, ValueType> atStart = types;
+        for (int pass = 0; pass < MAX_LOOP_PASSES; pass++) {
+            types = new HashMap<>(atStart);
+            if (condition != null) {
+                infer(condition);
+            }
+            infer(body);
+
+            // The last pass (which made the final annotations) was done
+            // with types that also hold after any number of iterations.
+            Map<Declaration, ValueType> merged = merge(atStart, types);
+            if (merged.equals(atStart)) {
+                types = atStart;
+                return;
+            }
+            atStart = merged;
+        }
+
+        // Give up on all variables in the current function.
+        atStart.replaceAll((declaration, type) -> ValueType.UNKNOWN);
+        types = atStart;
+        if (condition != null) {
+            infer(condition);
+        }
+        infer(body);
+        types = atStart;
+    }
+
+    /**
+     * Merge the types of two control flow paths joining.
+     *
+     * @param first The types at the end of the first path.
+     * @param second The types at the end of the second path.
+     * @return The merged types.
+     */
+    private Map<Declaration, ValueType> merge(Map<Declaration, ValueType> first, Map<Declaration, ValueType> second) {
+        // Declarations only found in one of the paths belong
+        // to scopes that have already been discarded.
+        Map<Declaration, ValueType> merged = new HashMap<>();
+        for (Map.Entry<Declaration, ValueType> entry : first.entrySet()) {
+            ValueType other = second.get(entry.getKey());
+            if (other != null) {
+                merged.put(entry.getKey(), entry.getValue().merge(other));
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Declare a name in the innermost scope.
+     *
+     * @param name The position of the name.
+     * @param type The type of the value bound.
+     */
+    private void declare(long name, ValueType type) {
+        if (isShared(name)) {
+            type = ValueType.UNKNOWN;
+        }
+
+        Declaration declaration = new Declaration(functionDepth, type);
+        scopes.get(scopes.size() - 1).put(SourcePosition.getSymbol(name), declaration);
+        types.put(declaration, type);
+    }
+
+    /**
+     * Look up the declaration of a name, starting from the innermost scope.
+     *
+     * @param name The position of the name.
+     * @return The declaration, or null if not declared in this program.
+     */
+    private Declaration lookUp(long name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Declaration declaration = scopes.get(i).get(SourcePosition.getSymbol(name));
+            if (declaration != null) {
+                return declaration;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if a name may be changed by functions at any time.
+     *
+     * @param name The position of the name.
+     * @return Whether the name is shared.
+     */
+    private boolean isShared(long name) {
+        return sharedNames.contains(SourcePosition.getSymbol(name));
+    }
+
+    /**
+     * Create a new scope.
+     */
+    private void createScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    /**
+     * Discard the innermost scope and the types of its declarations.
+     */
+    private void discardScope() {
+        Map<Integer, Declaration> scope = scopes.remove(scopes.size() - 1);
+        for (Declaration declaration : scope.values()) {
+            types.remove(declaration);
+        }
+    }
+}
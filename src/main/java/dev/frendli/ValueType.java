@@ -0,0 +1,52 @@
+package dev.frendli;
+
+/**
+ * The type of value an expression is statically proven to evaluate to.
+ */
+public enum ValueType {
+    BOOLEAN,
+    EMPTY,
+    FUNCTION,
+    NUMBER,
+    TEXT,
+    /**
+     * The type cannot be proven (e.g. parameters and call results).
+     */
+    UNKNOWN;
+
+    /**
+     * Get the type of a runtime value.
+     *
+     * @param value The value.
+     * @return The type of the value.
+     */
+    public static ValueType of(Object value) {
+        if (value == null) {
+            return EMPTY;
+        }
+        if (value instanceof Double) {
+            return NUMBER;
+        }
+        if (Rope.isText(value)) {
+            return TEXT;
+        }
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        if (value instanceof FrendliCallable) {
+            return FUNCTION;
+        }
+
+        return UNKNOWN;
+    }
+
+    /**
+     * Merge two types at a point where control flow joins.
+     *
+     * @param other The other type.
+     * @return The type if both are the same, otherwise UNKNOWN.
+     */
+    public ValueType merge(ValueType other) {
+        return this == other ? this : UNKNOWN;
+    }
+}
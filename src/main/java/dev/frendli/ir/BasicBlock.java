@@ -0,0 +1,58 @@
+package dev.frendli.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block - a straight-line sequence of instructions entered only
+ * at the start and exited only by the terminator at the end.
+ */
+public class BasicBlock {
+    /**
+     * The number of the block (unique within its function).
+     */
+    public final int id;
+    /**
+     * The phis, evaluated simultaneously when entering the block.
+     */
+    public final List<Instruction> phis = new ArrayList<>();
+    /**
+     * The instructions, ending with a terminator.
+     */
+    public final List<Instruction> instructions = new ArrayList<>();
+    /**
+     * The blocks that jump or branch to this block.
+     */
+    public final List<BasicBlock> predecessors = new ArrayList<>();
+    /**
+     * The number of statements starting in the block (counted towards
+     * the statement limit of the program when the block is entered).
+     */
+    int statementCount = 0;
+    /**
+     * Whether all predecessors are known. (Used during SSA construction.)
+     */
+    boolean isSealed = false;
+
+    BasicBlock(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Check if the block ends with a terminator.
+     *
+     * @return Whether the block is terminated.
+     */
+    public boolean isTerminated() {
+        return !instructions.isEmpty() && instructions.get(instructions.size() - 1).opcode.isTerminator();
+    }
+
+    /**
+     * Get the name of the block.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return "block" + id;
+    }
+}
@@ -0,0 +1,394 @@
+package dev.frendli.ir;
+
+import dev.frendli.Expression;
+import dev.frendli.ExpressionVisitor;
+import dev.frendli.SourcePosition;
+import dev.frendli.Statement;
+import dev.frendli.StatementVisitor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The capture analyzer - traverses the resolved syntax tree (in the same
+ * way as the resolver) to find the declaration each name refers to, and
+ * which local variables are captured by functions defined within the
+ * function declaring them. Captured variables are stored in cells, while
+ * all other local variables become SSA values.
+ */
+class CaptureAnalyzer implements ExpressionVisitor<Void>, StatementVisitor<Void> {
+    /**
+     * A declared variable, function, or parameter.
+     */
+    static class Declaration {
+        /**
+         * The position of the name declared.
+         */
+        final long name;
+        /**
+         * The number of functions enclosing the declaration.
+         */
+        final int functionDepth;
+        /**
+         * Whether it is declared in the global scope.
+         */
+        final boolean isGlobal;
+        /**
+         * Whether it is referenced from a function defined within the declaring function.
+         */
+        boolean isCaptured = false;
+
+        Declaration(long name, int functionDepth, boolean isGlobal) {
+            this.name = name;
+            this.functionDepth = functionDepth;
+            this.isGlobal = isGlobal;
+        }
+    }
+
+    /**
+     * The declarations (the values) made by "create" and "define"
+     * statements (the keys).
+     */
+    private final Map<Statement, Declaration> declarations = new IdentityHashMap<>();
+    /**
+     * The declarations of the parameters of each function (in order).
+     */
+    private final Map<Statement.Define, Declaration[]> parameters = new IdentityHashMap<>();
+    /**
+     * The declarations (the values) referred to by variable expressions
+     * and "change" statements (the keys). Names not declared in the
+     * program (i.e. natives) are not included.
+     */
+    private final Map<Object, Declaration> references = new IdentityHashMap<>();
+    /**
+     * The variables of enclosing functions used by each function.
+     */
+    private final Map<Statement.Define, Set<Declaration>> freeVariables = new IdentityHashMap<>();
+    /**
+     * Stack of block scopes each mapping the declared names (symbol ids) to their declarations.
+     * (The first scope is always the global scope.)
+     */
+    private final List<Map<Integer, Declaration>> scopes = new ArrayList<>();
+    /**
+     * Stack of the functions enclosing the current point in the program.
+     */
+    private final List<Statement.Define> functions = new ArrayList<>();
+
+    /**
+     * Analyze a list of resolved statements.
+     *
+     * @param statements The statements.
+     */
+    void analyze(List<Statement> statements) {
+        createScope();
+        analyzeStatements(statements);
+        discardScope();
+    }
+
+    /**
+     * Get the declaration made by a "create" or "define" statement.
+     *
+     * @param declaring The declaring statement.
+     * @return The declaration.
+     */
+    Declaration getDeclaration(Statement declaring) {
+        return declarations.get(declaring);
+    }
+
+    /**
+     * Get the declaration made by a parameter of a function.
+     *
+     * @param function The function.
+     * @param index The index of the parameter.
+     * @return The declaration.
+     */
+    Declaration getParameter(Statement.Define function, int index) {
+        return parameters.get(function)[index];
+    }
+
+    /**
+     * Get the declaration referred to by a variable expression or "change" statement.
+     *
+     * @param referring The referring expression or statement.
+     * @return The declaration, or null if not declared in the program.
+     */
+    Declaration getReference(Object referring) {
+        return references.get(referring);
+    }
+
+    /**
+     * Get the variables of enclosing functions used by a function.
+     *
+     * @param function The function.
+     * @return The free variables in the order they are captured.
+     */
+    List<Declaration> getFreeVariables(Statement.Define function) {
+        return new ArrayList<>(freeVariables.getOrDefault(function, Collections.emptySet()));
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        createScope();
+        analyzeStatements(statement.statements);
+        discardScope();
+
+        return null;
+    }
+
+    @Override
+    public Void visitCreateStatement(Statement.Create statement) {
+        declare(statement, statement.namePosition);
+        analyze(statement.initializer);
+
+        return null;
+    }
+
+    @Override
+    public Void visitChangeStatement(Statement.Change statement) {
+        analyze(statement.assignment);
+        refer(statement, statement.namePosition);
+
+        return null;
+    }
+
+    @Override
+    public Void visitDefineStatement(Statement.Define statement) {
+        declare(statement, statement.namePosition);
+
+        functions.add(statement);
+        freeVariables.put(statement, new LinkedHashSet<>());
+        createScope();
+        Declaration[] declaredParameters = new Declaration[statement.parameterPositions.length];
+        for (int i = 0; i < declaredParameters.length; i++) {
+            declaredParameters[i] = declare(statement.parameterPositions[i]);
+        }
+        parameters.put(statement, declaredParameters);
+        analyzeStatements(statement.body.statements);
+        discardScope();
+        functions.remove(functions.size() - 1);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        analyze(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        analyze(statement.condition);
+        analyze(statement.thenBranch);
+
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            analyze(otherwiseIf.condition);
+            analyze(otherwiseIf.thenBranch);
+        }
+
+        if (statement.otherwiseBranch != null) {
+            analyze(statement.otherwiseBranch);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        analyze(statement.times);
+        analyze(statement.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        analyze(statement.condition);
+        analyze(statement.body);
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        return null;
+    }
+
+    @Override
+    public Void visitReturnWithStatement(Statement.ReturnWith statement) {
+        analyze(statement.value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSequenceStatement(Statement.Sequence statement) {
+        // Copies of the same block (e.g. an unrolled loop body) refer to
+        // the same declarations, so each block is only analyzed once.
+        Set<Statement> analyzed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Statement inner : statement.statements) {
+            if (analyzed.add(inner)) {
+                analyze(inner);
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpression(Expression.Binary expression) {
+        analyze(expression.left);
+        analyze(expression.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpression(Expression.Call expression) {
+        analyze(expression.callee);
+        for (Expression argument : expression.arguments) {
+            analyze(argument);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpression(Expression.Grouping expression) {
+        analyze(expression.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpression(Expression.Literal expression) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpression(Expression.Logical expression) {
+        analyze(expression.left);
+        analyze(expression.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpression(Expression.Unary expression) {
+        analyze(expression.right);
+
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpression(Expression.Variable expression) {
+        refer(expression, expression.namePosition);
+
+        return null;
+    }
+
+    /**
+     * Declare a name made by a statement in the innermost scope.
+     *
+     * @param declaring The declaring statement.
+     * @param name The position of the name.
+     */
+    private void declare(Statement declaring, long name) {
+        declarations.put(declaring, declare(name));
+    }
+
+    /**
+     * Declare a name in the innermost scope.
+     *
+     * @param name The position of the name.
+     * @return The declaration.
+     */
+    private Declaration declare(long name) {
+        boolean isGlobal = (scopes.size() == 1);
+        Declaration declaration = new Declaration(name, functions.size(), isGlobal);
+        scopes.get(scopes.size() - 1).put(SourcePosition.getSymbol(name), declaration);
+
+        return declaration;
+    }
+
+    /**
+     * Find the declaration a name refers to, and mark it as captured
+     * if it is declared in an enclosing function.
+     *
+     * @param referring The referring expression or statement.
+     * @param name The position of the name.
+     */
+    private void refer(Object referring, long name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Declaration declaration = scopes.get(i).get(SourcePosition.getSymbol(name));
+            if (declaration == null) {
+                continue;
+            }
+
+            references.put(referring, declaration);
+
+            // Global variables are looked up by name rather than captured.
+            if (!declaration.isGlobal && declaration.functionDepth < functions.size()) {
+                declaration.isCaptured = true;
+
+                // Every function in between needs the variable in order
+                // to pass it on when creating the closures within it.
+                for (int depth = declaration.functionDepth; depth < functions.size(); depth++) {
+                    freeVariables.get(functions.get(depth)).add(declaration);
+                }
+            }
+
+            return;
+        }
+    }
+
+    /**
+     * Analyze a list of statements.
+     *
+     * @param statements The statements.
+     */
+    private void analyzeStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            analyze(statement);
+        }
+    }
+
+    /**
+     * Analyze a statement.
+     *
+     * @param statement The statement.
+     */
+    private void analyze(Statement statement) {
+        statement.accept(this);
+    }
+
+    /**
+     * Analyze an expression.
+     *
+     * @param expression The expression.
+     */
+    private void analyze(Expression expression) {
+        expression.accept(this);
+    }
+
+    /**
+     * Create a new scope.
+     */
+    private void createScope() {
+        scopes.add(new HashMap<>());
+    }
+
+    /**
+     * Discard the innermost scope.
+     */
+    private void discardScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+}
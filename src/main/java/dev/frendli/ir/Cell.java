@@ -0,0 +1,9 @@
+package dev.frendli.ir;
+
+/**
+ * A cell - the storage of a local variable captured by a closure,
+ * shared between the declaring function and its closures.
+ */
+class Cell {
+    Object value;
+}
@@ -0,0 +1,77 @@
+package dev.frendli.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An instruction in a basic block. An instruction producing a result
+ * is also the SSA value of that result, defined exactly once.
+ */
+public class Instruction {
+    /**
+     * The operation performed.
+     */
+    public final Opcode opcode;
+    /**
+     * The number of the value (unique within its function).
+     */
+    public final int id;
+    /**
+     * The values operated on. (The operands of a phi are
+     * in the same order as the predecessors of its block.)
+     */
+    public final List<Instruction> operands;
+    /**
+     * The constant value, parameter index, or free variable index.
+     */
+    public final Object constant;
+    /**
+     * The packed position of the nearest token (for runtime errors),
+     * which is also the name of global variables (see SourcePosition),
+     * or SourcePosition.NONE if no location.
+     */
+    public final long position;
+    /**
+     * The function of a closure.
+     */
+    IrFunction function;
+    /**
+     * The blocks jumped or branched to.
+     */
+    BasicBlock[] targets;
+
+    Instruction(int id, Opcode opcode, List<Instruction> operands, Object constant, long position) {
+        this.id = id;
+        this.opcode = opcode;
+        this.operands = new ArrayList<>(operands);
+        this.constant = constant;
+        this.position = position;
+    }
+
+    /**
+     * Get the function of a closure.
+     *
+     * @return The function.
+     */
+    public IrFunction getFunction() {
+        return function;
+    }
+
+    /**
+     * Get the blocks jumped or branched to.
+     *
+     * @return The target blocks.
+     */
+    public BasicBlock[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Get the name of the value.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return "v" + id;
+    }
+}
@@ -0,0 +1,46 @@
+package dev.frendli.ir;
+
+import dev.frendli.FrendliCallable;
+import dev.frendli.Interpreter;
+
+import java.util.List;
+
+/**
+ * A user-defined function executed by the IR interpreter (runtime representation).
+ */
+class IrClosure implements FrendliCallable {
+    /**
+     * The interpreter executing the function.
+     */
+    private final IrInterpreter interpreter;
+    /**
+     * The IR of the function.
+     */
+    final IrFunction function;
+    /**
+     * The cells of the captured variables.
+     */
+    final Cell[] cells;
+
+    IrClosure(IrInterpreter interpreter, IrFunction function, Cell[] cells) {
+        this.interpreter = interpreter;
+        this.function = function;
+        this.cells = cells;
+    }
+
+    @Override
+    public int arity() {
+        return function.arity;
+    }
+
+    @Override
+    public Object call(Interpreter unused, List<Object> arguments) {
+        // Closures are always executed by the IR interpreter they were created in.
+        return interpreter.call(this, arguments);
+    }
+
+    @Override
+    public String toString() {
+        return "<definition: " + function.getName() + ">";
+    }
+}
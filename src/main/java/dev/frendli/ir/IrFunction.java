@@ -0,0 +1,93 @@
+package dev.frendli.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function in the IR - a control flow graph of basic blocks.
+ * (The top-level statements of a program form the main function.)
+ */
+public class IrFunction {
+    /**
+     * The name of the function (null for main).
+     */
+    public final String name;
+    /**
+     * The number of parameters.
+     */
+    public final int arity;
+    /**
+     * The number of variables captured from enclosing functions.
+     */
+    public final int freeVariableCount;
+    /**
+     * The blocks, starting with the entry block.
+     */
+    public final List<BasicBlock> blocks = new ArrayList<>();
+    /**
+     * The functions defined within this function.
+     */
+    public final List<IrFunction> nestedFunctions = new ArrayList<>();
+    /**
+     * The number of values defined (used for numbering).
+     */
+    private int valueCount = 0;
+
+    IrFunction(String name, int arity, int freeVariableCount) {
+        this.name = name;
+        this.arity = arity;
+        this.freeVariableCount = freeVariableCount;
+    }
+
+    /**
+     * Get the block executed first.
+     *
+     * @return The entry block.
+     */
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * Get the number of values defined.
+     *
+     * @return The number of values.
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * Create a new block (added last).
+     *
+     * @return The block.
+     */
+    BasicBlock createBlock() {
+        BasicBlock block = new BasicBlock(blocks.size());
+        blocks.add(block);
+
+        return block;
+    }
+
+    /**
+     * Create a new instruction (not added to any block).
+     *
+     * @param opcode The operation.
+     * @param operands The operands.
+     * @param constant The constant, index, or null.
+     * @param position The position of the nearest token, or SourcePosition.NONE.
+     * @return The instruction.
+     */
+    Instruction createInstruction(Opcode opcode, List<Instruction> operands, Object constant, long position) {
+        return new Instruction(valueCount++, opcode, operands, constant, position);
+    }
+
+    /**
+     * Get the name of the function.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name == null ? "main" : name;
+    }
+}
@@ -0,0 +1,581 @@
+package dev.frendli.ir;
+
+import dev.frendli.AllocationMeter;
+import dev.frendli.Environment;
+import dev.frendli.ErrorReporter;
+import dev.frendli.ExitCode;
+import dev.frendli.FrendliCallable;
+import dev.frendli.Interpreter;
+import dev.frendli.LimitError;
+import dev.frendli.Logger;
+import dev.frendli.NativeFunction;
+import dev.frendli.Numbers;
+import dev.frendli.Rope;
+import dev.frendli.RuntimeError;
+import dev.frendli.Scheduler;
+import dev.frendli.SourcePosition;
+import dev.frendli.StepMeter;
+import dev.frendli.Symbols;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The IR interpreter - executes the basic blocks of IR functions,
+ * with the same semantics (and runtime errors) as the interpreter
+ * of the syntax tree. The texts, allocations, and statements of the
+ * program are accounted for with the same meters (see AllocationMeter
+ * and StepMeter), so the program has the same limits. All functions
+ * run on the interpreter's thread, so programs using tasks or channels
+ * are rejected when compiled to IR (see NativeFunction.isConcurrent).
+ */
+public class IrInterpreter {
+    /**
+     * Reporter of runtime errors.
+     */
+    private final ErrorReporter reporter;
+    /**
+     * The global environment (global variables are looked up by name).
+     */
+    private final Environment globalEnvironment = new Environment();
+    /**
+     * The symbol table of the program being interpreted (for the names
+     * of the globals in errors).
+     */
+    private Symbols symbols = null;
+    /**
+     * Max number of nested calls (bounded by the heap rather than the Java stack).
+     */
+    private int maxCallDepth = Interpreter.DEFAULT_MAX_CALL_DEPTH;
+    /**
+     * Number of calls currently nested.
+     */
+    private int callDepth = 0;
+    /**
+     * Max number of bytes the program may allocate for its values.
+     */
+    private long allocationQuota = AllocationMeter.UNLIMITED;
+    /**
+     * The accounting of the bytes allocated by the program.
+     */
+    private AllocationMeter allocationMeter = new AllocationMeter(allocationQuota);
+    /**
+     * Max number of statements the program may execute.
+     */
+    private long maxStatementCount = Interpreter.UNLIMITED;
+    /**
+     * Max number of milliseconds (wall-clock time) the program may run for.
+     */
+    private long maxMilliseconds = Interpreter.UNLIMITED;
+    /**
+     * The scheduler sharing the threads with other programs, or null.
+     */
+    private Scheduler scheduler = null;
+    /**
+     * The counting of the statements executed and steps (jumps back
+     * and calls) taken by the program.
+     */
+    private StepMeter stepMeter = new StepMeter(Interpreter.UNLIMITED, Interpreter.UNLIMITED, null);
+    /**
+     * The native function displaying the output (which counts it).
+     */
+    private final NativeFunction.Display display;
+
+    public IrInterpreter(ErrorReporter reporter, Logger logger) {
+        Map<String, NativeFunction> natives = NativeFunction.createAll(logger);
+        for (Map.Entry<String, NativeFunction> entry : natives.entrySet()) {
+            globalEnvironment.defineNative(entry.getKey(), entry.getValue());
+        }
+        this.display = (NativeFunction.Display)natives.get("display");
+        this.reporter = reporter;
+    }
+
+    /**
+     * Interpret and execute an IR program.
+     *
+     * @param program The program.
+     * @param programSymbols The symbol table the program was compiled with.
+     */
+    public void interpret(IrProgram program, Symbols programSymbols) {
+        symbols = programSymbols;
+        allocationMeter = new AllocationMeter(allocationQuota);
+        stepMeter = new StepMeter(maxStatementCount, maxMilliseconds, scheduler);
+        display.resetOutput();
+        try {
+            execute(program.main, List.of(), new Cell[0]);
+        }
+        catch (RuntimeError error) {
+            reporter.runtimeError(error, programSymbols);
+        }
+    }
+
+    /**
+     * Set the max number of nested calls.
+     *
+     * @param newMaxCallDepth The max depth.
+     */
+    public void setMaxCallDepth(int newMaxCallDepth) {
+        maxCallDepth = newMaxCallDepth;
+    }
+
+    /**
+     * Set the max number of bytes the program may allocate for its values.
+     *
+     * @param quota The number of bytes (or AllocationMeter.UNLIMITED).
+     */
+    public void setAllocationQuota(long quota) {
+        allocationQuota = quota;
+    }
+
+    /**
+     * Set the max number of statements the program may execute.
+     *
+     * @param newMaxStatementCount The number of statements (or Interpreter.UNLIMITED).
+     */
+    public void setMaxStatementCount(long newMaxStatementCount) {
+        maxStatementCount = newMaxStatementCount;
+    }
+
+    /**
+     * Set the scheduler sharing the threads with other programs. The
+     * caller holds a slot of the scheduler while interpreting.
+     *
+     * @param newScheduler The scheduler (or null to never yield).
+     */
+    public void setScheduler(Scheduler newScheduler) {
+        scheduler = newScheduler;
+    }
+
+    /**
+     * Set the max number of milliseconds (wall-clock time) the program may run for.
+     *
+     * @param newMaxMilliseconds The number of milliseconds (or Interpreter.UNLIMITED).
+     */
+    public void setMaxMilliseconds(long newMaxMilliseconds) {
+        maxMilliseconds = newMaxMilliseconds;
+    }
+
+    /**
+     * Set the max number of bytes (UTF-8) the program may display.
+     *
+     * @param newMaxOutputBytes The number of bytes (or NativeFunction.UNLIMITED_OUTPUT).
+     */
+    public void setMaxOutputBytes(long newMaxOutputBytes) {
+        display.setMaxOutputBytes(newMaxOutputBytes);
+    }
+
+    /**
+     * Call a closure.
+     *
+     * @param closure The closure.
+     * @param arguments The arguments sent (already verified against the arity).
+     * @return The returned value.
+     */
+    Object call(IrClosure closure, List<Object> arguments) {
+        return execute(closure.function, arguments, closure.cells);
+    }
+
+    /**
+     * Execute an IR function, including all calls it makes to other
+     * IR functions. The frames of the calls are kept on a stack in
+     * the heap (linked by their callers) rather than on the Java
+     * stack, so the depth of recursion is only bounded by maxCallDepth.
+     *
+     * @param function The function.
+     * @param arguments The arguments sent.
+     * @param cells The cells of the captured variables.
+     * @return The returned value.
+     */
+    private Object execute(IrFunction function, List<Object> arguments, Cell[] cells) {
+        int baseDepth = callDepth;
+        Frame frame = new Frame(function, arguments, cells, null, null);
+        stepMeter.countStatements(frame.block.statementCount);
+
+        try {
+            while (true) {
+                Instruction instruction = frame.block.instructions.get(frame.index++);
+                List<Instruction> operands = instruction.operands;
+                Object[] values = frame.values;
+                switch (instruction.opcode) {
+                    case CONSTANT:
+                        values[instruction.id] = instruction.constant;
+                        break;
+                    case PARAMETER:
+                        values[instruction.id] = frame.arguments.get((int)instruction.constant);
+                        break;
+                    case BINARY:
+                        values[instruction.id] = binary(instruction, value(operands.get(0), values), value(operands.get(1), values));
+                        break;
+                    case UNARY:
+                        values[instruction.id] = unary(instruction.position, value(operands.get(0), values));
+                        break;
+                    case TEST:
+                        values[instruction.id] = isTrue(value(operands.get(0), values), instruction.position);
+                        break;
+                    case CHECK_TIMES:
+                        values[instruction.id] = verifyPositiveInteger(value(operands.get(0), values), instruction.position);
+                        break;
+                    case INCREMENT:
+                        values[instruction.id] = Numbers.valueOf((double)value(operands.get(0), values) + 1);
+                        break;
+                    case BELOW:
+                        values[instruction.id] = (double)value(operands.get(0), values) < (double)value(operands.get(1), values);
+                        break;
+                    case CALL:
+                        FrendliCallable callee = getCallee(instruction, values);
+                        List<Object> callArguments = getArguments(instruction, values, callee);
+                        if (callee instanceof IrClosure) {
+                            // Push the frame of the call; its caller resumes
+                            // (at the next instruction) once it returns.
+                            if (callDepth - baseDepth == maxCallDepth) {
+                                throw new LimitError(instruction.position, ExitCode.CALL_DEPTH_LIMIT_ERROR, Interpreter.getCallDepthMessage(maxCallDepth));
+                            }
+                            // Calls to IR functions also create a frame.
+                            allocationMeter.allocate(AllocationMeter.CALL_BYTES + AllocationMeter.ENVIRONMENT_BYTES, instruction.position);
+                            stepMeter.countStep(instruction.position);
+                            IrClosure closure = (IrClosure)callee;
+                            frame = new Frame(closure.function, callArguments, closure.cells, frame, instruction);
+                            stepMeter.countStatements(frame.block.statementCount);
+                            callDepth++;
+                        }
+                        else {
+                            // Natives do not use the (syntax tree) interpreter,
+                            // and only receive texts as strings, never as ropes.
+                            allocationMeter.allocate(AllocationMeter.CALL_BYTES, instruction.position);
+                            callArguments.replaceAll(Rope::flatten);
+                            try {
+                                values[instruction.id] = callee.call(null, callArguments);
+                            }
+                            catch (NativeFunction.Failure failure) {
+                                throw failure.toError(instruction.position);
+                            }
+                        }
+                        break;
+                    case CLOSURE:
+                        Cell[] captured = new Cell[operands.size()];
+                        for (int i = 0; i < captured.length; i++) {
+                            captured[i] = (Cell)value(operands.get(i), values);
+                        }
+                        allocationMeter.allocate(AllocationMeter.FUNCTION_BYTES, instruction.position);
+                        values[instruction.id] = new IrClosure(this, instruction.function, captured);
+                        break;
+                    case NEW_CELL:
+                        values[instruction.id] = new Cell();
+                        break;
+                    case LOAD_CELL:
+                        values[instruction.id] = ((Cell)value(operands.get(0), values)).value;
+                        break;
+                    case STORE_CELL:
+                        ((Cell)value(operands.get(0), values)).value = value(operands.get(1), values);
+                        break;
+                    case FREE:
+                        values[instruction.id] = frame.cells[(int)instruction.constant];
+                        break;
+                    case LOAD_GLOBAL:
+                        values[instruction.id] = globalEnvironment.get(instruction.position, symbols);
+                        break;
+                    case DEFINE_GLOBAL:
+                        globalEnvironment.define(instruction.position, symbols, value(operands.get(0), values));
+                        break;
+                    case STORE_GLOBAL:
+                        globalEnvironment.assign(instruction.position, symbols, value(operands.get(0), values));
+                        break;
+                    case JUMP:
+                        // Only the jumps of loops back to their headers have a location.
+                        if (instruction.position != SourcePosition.NONE) {
+                            allocationMeter.check(instruction.position);
+                            stepMeter.countStep(instruction.position);
+                        }
+                        frame.enter(instruction.targets[0]);
+                        stepMeter.countStatements(frame.block.statementCount);
+                        break;
+                    case BRANCH:
+                        frame.enter(instruction.targets[(boolean)value(operands.get(0), values) ? 0 : 1]);
+                        stepMeter.countStatements(frame.block.statementCount);
+                        break;
+                    case RETURN:
+                        Object result = value(operands.get(0), values);
+                        if (frame.caller == null) {
+                            return result;
+                        }
+                        // Pop the frame and resume its caller.
+                        frame.caller.values[frame.call.id] = result;
+                        frame = frame.caller;
+                        callDepth--;
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected instruction: " + instruction.opcode);
+                }
+            }
+        }
+        finally {
+            // Frames still on the stack are discarded when a runtime error is thrown.
+            callDepth = baseDepth;
+        }
+    }
+
+    /**
+     * Evaluate the phis of a block being entered. The phis are
+     * evaluated simultaneously (i.e. before any is assigned).
+     *
+     * @param block The block entered.
+     * @param previous The block entered from.
+     * @param values The values of the current function.
+     */
+    private static void enterBlock(BasicBlock block, BasicBlock previous, Object[] values) {
+        if (block.phis.isEmpty()) {
+            return;
+        }
+
+        int predecessorIndex = block.predecessors.indexOf(previous);
+        Object[] entered = new Object[block.phis.size()];
+        for (int i = 0; i < entered.length; i++) {
+            entered[i] = value(block.phis.get(i).operands.get(predecessorIndex), values);
+        }
+        for (int i = 0; i < entered.length; i++) {
+            values[block.phis.get(i).id] = entered[i];
+        }
+    }
+
+    /**
+     * Get the value of an operand.
+     *
+     * @param operand The operand.
+     * @param values The values of the current function.
+     * @return The value.
+     */
+    private static Object value(Instruction operand, Object[] values) {
+        return values[operand.id];
+    }
+
+    /**
+     * Get the callee of a call instruction, verifying that it can be called.
+     *
+     * @param instruction The call instruction.
+     * @param values The values of the current function.
+     * @return The callee.
+     */
+    private FrendliCallable getCallee(Instruction instruction, Object[] values) {
+        Object callee = value(instruction.operands.get(0), values);
+        if (!(callee instanceof FrendliCallable)) {
+            throw new RuntimeError(instruction.position, "You can only call what has previously been defined (with 'define').");
+        }
+
+        return (FrendliCallable)callee;
+    }
+
+    /**
+     * Get the arguments of a call instruction, verifying their number.
+     *
+     * @param instruction The call instruction.
+     * @param values The values of the current function.
+     * @param function The callee.
+     * @return The arguments.
+     */
+    private List<Object> getArguments(Instruction instruction, Object[] values, FrendliCallable function) {
+        List<Object> arguments = new ArrayList<>();
+        for (int i = 1; i < instruction.operands.size(); i++) {
+            arguments.add(value(instruction.operands.get(i), values));
+        }
+
+        if (arguments.size() != function.arity()) {
+            throw new RuntimeError(instruction.position, "The number of arguments sent must be " + function.arity() + " but got " + arguments.size() + ".");
+        }
+
+        return arguments;
+    }
+
+    /**
+     * Apply a binary operator.
+     *
+     * @param instruction The binary instruction (located at the operator).
+     * @param left The left operand.
+     * @param right The right operand.
+     * @return The result.
+     */
+    private Object binary(Instruction instruction, Object left, Object right) {
+        long operator = instruction.position;
+        switch (SourcePosition.getType(operator)) {
+            case EQUALS_WORD:
+                return isEqual(left, right);
+            case UNEQUALS:
+                return !isEqual(left, right);
+            case GREATER_THAN:
+                verifyNumberOperands(left, right, operator);
+                return (double)left > (double)right;
+            case GREATER_THAN_EQUALS:
+                verifyNumberOperands(left, right, operator);
+                return (double)left >= (double)right;
+            case LESS_THAN:
+                verifyNumberOperands(left, right, operator);
+                return (double)left < (double)right;
+            case LESS_THAN_EQUALS:
+                verifyNumberOperands(left, right, operator);
+                return (double)left <= (double)right;
+            case MINUS:
+                verifyNumberOperands(left, right, operator);
+                return Numbers.valueOf((double)left - (double)right);
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return Numbers.valueOf((double)left + (double)right);
+                }
+                if (Rope.isText(left) && Rope.isText(right)) {
+                    return allocationMeter.concatenate(left, right, instruction.position);
+                }
+                throw new RuntimeError(operator, "The operands must be only numbers or only texts.");
+            case SLASH:
+                verifyNumberOperands(left, right, operator);
+                if ((double)right == 0) {
+                    throw new RuntimeError(operator, "Division by zero is not allowed. The operand must be a non-zero number.");
+                }
+                return Numbers.valueOf((double)left / (double)right);
+            case STAR:
+                verifyNumberOperands(left, right, operator);
+                return Numbers.valueOf((double)left * (double)right);
+        }
+
+        return null;
+    }
+
+    /**
+     * Apply a unary operator.
+     *
+     * @param operator The operator.
+     * @param right The operand.
+     * @return The result.
+     */
+    private Object unary(long operator, Object right) {
+        switch (SourcePosition.getType(operator)) {
+            case MINUS:
+                if (!(right instanceof Double)) {
+                    throw new RuntimeError(operator, "The operand must be a number.");
+                }
+                return Numbers.valueOf(-(double)right);
+            case NOT:
+                return !isTrue(right, operator);
+        }
+
+        return null;
+    }
+
+    /**
+     * Check if two values are equal.
+     *
+     * @param first The first value.
+     * @param second The second value.
+     * @return Whether they are equal.
+     */
+    private boolean isEqual(Object first, Object second) {
+        if (first == null) {
+            return second == null;
+        }
+
+        // Texts are equal by content whether strings or ropes.
+        return Rope.flatten(first).equals(Rope.flatten(second));
+    }
+
+    /**
+     * Check if an operand is true, verifying that it is a boolean.
+     *
+     * @param operand The operand.
+     * @param location The location of the nearest token.
+     * @return Whether it is true.
+     */
+    private boolean isTrue(Object operand, long location) {
+        if (operand instanceof Boolean) {
+            return (boolean)operand;
+        }
+
+        throw new RuntimeError(location, "The operand must be a boolean ('true' or 'false').");
+    }
+
+    /**
+     * Verify that the operands are numbers and throw a RuntimeError if not.
+     *
+     * @param left The left operand.
+     * @param right The right operand.
+     * @param location The location of the nearest token.
+     */
+    private void verifyNumberOperands(Object left, Object right, long location) {
+        if (left instanceof Double && right instanceof Double) {
+            return;
+        }
+
+        throw new RuntimeError(location, "The operands must be numbers.");
+    }
+
+    /**
+     * Verify that the number of times to repeat is a positive integer.
+     *
+     * @param number The number.
+     * @param location The location of the nearest token.
+     * @return The number.
+     */
+    private Object verifyPositiveInteger(Object number, long location) {
+        if (!(number instanceof Double)) {
+            throw new RuntimeError(location, "The operand must be a number.");
+        }
+        double numberDouble = (double)number;
+        if (numberDouble > 0 && Math.floor(numberDouble) == numberDouble) {
+            return number;
+        }
+
+        throw new RuntimeError(location, "The number must be a positive integer.");
+    }
+
+    /**
+     * The frame of a call to an IR function (kept in the heap).
+     */
+    private static final class Frame {
+        /**
+         * The arguments sent.
+         */
+        final List<Object> arguments;
+        /**
+         * The cells of the captured variables.
+         */
+        final Cell[] cells;
+        /**
+         * The values of the function's instructions (indexed by id).
+         */
+        final Object[] values;
+        /**
+         * The frame of the caller to resume on return, or null
+         * if the caller is not executed by this frame's loop.
+         */
+        final Frame caller;
+        /**
+         * The call instruction in the caller (assigned the returned value).
+         */
+        final Instruction call;
+        /**
+         * The block being executed.
+         */
+        BasicBlock block = null;
+        /**
+         * The index of the next instruction to execute in the block.
+         */
+        int index = 0;
+
+        Frame(IrFunction function, List<Object> arguments, Cell[] cells, Frame caller, Instruction call) {
+            this.arguments = arguments;
+            this.cells = cells;
+            this.values = new Object[function.getValueCount()];
+            this.caller = caller;
+            this.call = call;
+            enter(function.getEntry());
+        }
+
+        /**
+         * Continue execution at the start of a block.
+         *
+         * @param target The block entered.
+         */
+        void enter(BasicBlock target) {
+            enterBlock(target, block, values);
+            block = target;
+            index = 0;
+        }
+    }
+}
@@ -0,0 +1,761 @@
+package dev.frendli.ir;
+
+import dev.frendli.Expression;
+import dev.frendli.ExpressionVisitor;
+import dev.frendli.SourcePosition;
+import dev.frendli.Statement;
+import dev.frendli.StatementVisitor;
+import dev.frendli.Symbols;
+import dev.frendli.TokenType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The IR lowering - translates the resolved (and optimized) syntax tree
+ * into the IR. Each function becomes a control flow graph of basic blocks,
+ * with explicit branches for "if" and loops, and explicit returns. Local
+ * variables not captured by any closure become SSA values, constructed
+ * directly during the translation (with phis only where needed), while
+ * captured variables are stored in cells and globals are looked up by name.
+ */
+public class IrLowering implements ExpressionVisitor<Instruction>, StatementVisitor<Void> {
+    /**
+     * The state of the function currently being lowered.
+     */
+    private static class FunctionState {
+        final IrFunction function;
+        /**
+         * The number of functions enclosing the body (0 for main).
+         */
+        final int depth;
+        /**
+         * The variables of enclosing functions used, in the order captured.
+         */
+        final List<CaptureAnalyzer.Declaration> freeVariables;
+        /**
+         * The SSA value currently bound to each local variable in each block.
+         */
+        final Map<CaptureAnalyzer.Declaration, Map<BasicBlock, Instruction>> definitions = new HashMap<>();
+        /**
+         * The phis created in blocks whose predecessors are not all known yet.
+         */
+        final Map<BasicBlock, Map<CaptureAnalyzer.Declaration, Instruction>> incompletePhis = new HashMap<>();
+        /**
+         * The block currently being appended to.
+         */
+        BasicBlock block;
+
+        FunctionState(IrFunction function, int depth, List<CaptureAnalyzer.Declaration> freeVariables) {
+            this.function = function;
+            this.depth = depth;
+            this.freeVariables = freeVariables;
+        }
+    }
+
+    /**
+     * The symbol table of the program (for the names of the functions).
+     */
+    private final Symbols symbols;
+    /**
+     * The analysis of declarations and captured variables.
+     */
+    private final CaptureAnalyzer analyzer = new CaptureAnalyzer();
+    /**
+     * The state of the function currently being lowered.
+     */
+    private FunctionState state;
+
+    public IrLowering(Symbols symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Lower a list of resolved statements into an IR program.
+     *
+     * @param statements The statements.
+     * @return The program.
+     */
+    public IrProgram lower(List<Statement> statements) {
+        analyzer.analyze(statements);
+
+        IrFunction main = new IrFunction(null, 0, 0);
+        state = new FunctionState(main, 0, List.of());
+        startFunction();
+        lowerStatements(statements);
+        finishFunction();
+
+        return new IrProgram(main);
+    }
+
+    @Override
+    public Void visitBlockStatement(Statement.Block statement) {
+        // Scopes have already been resolved by the capture analyzer.
+        lowerStatements(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public Void visitCreateStatement(Statement.Create statement) {
+        // The name is declared before the initializer is evaluated
+        // (in the same way as the resolver and interpreter do).
+        CaptureAnalyzer.Declaration declaration = analyzer.getDeclaration(statement);
+        declareVariable(declaration);
+        Instruction value = lower(statement.initializer);
+        initializeVariable(declaration, value);
+
+        return null;
+    }
+
+    @Override
+    public Void visitChangeStatement(Statement.Change statement) {
+        Instruction value = lower(statement.assignment);
+        CaptureAnalyzer.Declaration declaration = analyzer.getReference(statement);
+
+        if (declaration == null || declaration.isGlobal) {
+            emit(Opcode.STORE_GLOBAL, List.of(value), null, statement.namePosition);
+        }
+        else if (declaration.isCaptured) {
+            emit(Opcode.STORE_CELL, List.of(getCell(declaration), value), null, statement.namePosition);
+        }
+        else {
+            writeVariable(declaration, state.block, value);
+        }
+
+        return null;
+    }
+
+    @Override
+    public Void visitDefineStatement(Statement.Define statement) {
+        // Declare the name before lowering the body to allow for recursion.
+        CaptureAnalyzer.Declaration declaration = analyzer.getDeclaration(statement);
+        declareVariable(declaration);
+
+        IrFunction function = lowerFunction(statement);
+        List<Instruction> cells = new ArrayList<>();
+        for (CaptureAnalyzer.Declaration freeVariable : analyzer.getFreeVariables(statement)) {
+            cells.add(getCell(freeVariable));
+        }
+        Instruction closure = emit(Opcode.CLOSURE, cells, null, statement.namePosition);
+        closure.function = function;
+
+        initializeVariable(declaration, closure);
+
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStatement(Statement.ExpressionStatement statement) {
+        lower(statement.expression);
+
+        return null;
+    }
+
+    @Override
+    public Void visitIfStatement(Statement.If statement) {
+        BasicBlock join = state.function.createBlock();
+
+        lowerBranch(statement.condition, statement.thenBranch, statement.position, join);
+        for (Statement.OtherwiseIf otherwiseIf : statement.otherwiseIfs) {
+            lowerBranch(otherwiseIf.condition, otherwiseIf.thenBranch, otherwiseIf.position, join);
+        }
+        if (statement.otherwiseBranch != null) {
+            lower(statement.otherwiseBranch);
+        }
+        jump(join);
+
+        seal(join);
+        state.block = join;
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatTimesStatement(Statement.RepeatTimes statement) {
+        // Parallel repetitions are lowered (and run) one after another,
+        // which the resolver ensures gives the same results.
+        Instruction times = emit(Opcode.CHECK_TIMES, List.of(lower(statement.times)), null, statement.position);
+
+        // The number of iterations done is kept in a variable of its own.
+        CaptureAnalyzer.Declaration counter = new CaptureAnalyzer.Declaration(statement.position, state.depth, false);
+        writeVariable(counter, state.block, emitConstant(0.0));
+
+        BasicBlock header = state.function.createBlock();
+        jump(header);
+        state.block = header;
+
+        Instruction isBelow = emit(Opcode.BELOW, List.of(readVariable(counter, header), times), null, statement.position);
+        BasicBlock body = state.function.createBlock();
+        BasicBlock exit = state.function.createBlock();
+        branch(isBelow, body, exit);
+        seal(body);
+        seal(exit);
+
+        state.block = body;
+        lower(statement.body);
+        Instruction incremented = emit(Opcode.INCREMENT, List.of(readVariable(counter, state.block)), null, statement.position);
+        writeVariable(counter, state.block, incremented);
+        jumpBack(header, statement.position);
+        seal(header);
+
+        state.block = exit;
+
+        return null;
+    }
+
+    @Override
+    public Void visitRepeatWhileStatement(Statement.RepeatWhile statement) {
+        BasicBlock header = state.function.createBlock();
+        jump(header);
+        state.block = header;
+
+        Instruction condition = emit(Opcode.TEST, List.of(lower(statement.condition)), null, statement.position);
+        BasicBlock body = state.function.createBlock();
+        BasicBlock exit = state.function.createBlock();
+        branch(condition, body, exit);
+        seal(body);
+        seal(exit);
+
+        state.block = body;
+        lower(statement.body);
+        jumpBack(header, statement.position);
+        seal(header);
+
+        state.block = exit;
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStatement(Statement.Return statement) {
+        lowerReturn(emitConstant(null), statement.position);
+
+        return null;
+    }
+
+    @Override
+    public Void visitReturnWithStatement(Statement.ReturnWith statement) {
+        lowerReturn(lower(statement.value), statement.position);
+
+        return null;
+    }
+
+    @Override
+    public Void visitSequenceStatement(Statement.Sequence statement) {
+        lowerStatements(statement.statements);
+
+        return null;
+    }
+
+    @Override
+    public Instruction visitBinaryExpression(Expression.Binary expression) {
+        Instruction left = lower(expression.left);
+        Instruction right = lower(expression.right);
+
+        return emit(Opcode.BINARY, List.of(left, right), null, expression.operatorPosition);
+    }
+
+    @Override
+    public Instruction visitCallExpression(Expression.Call expression) {
+        List<Instruction> operands = new ArrayList<>();
+        operands.add(lower(expression.callee));
+        for (Expression argument : expression.arguments) {
+            operands.add(lower(argument));
+        }
+
+        return emit(Opcode.CALL, operands, null, expression.position);
+    }
+
+    @Override
+    public Instruction visitGroupingExpression(Expression.Grouping expression) {
+        return lower(expression.expression);
+    }
+
+    @Override
+    public Instruction visitLiteralExpression(Expression.Literal expression) {
+        return emitConstant(expression.value);
+    }
+
+    @Override
+    public Instruction visitLogicalExpression(Expression.Logical expression) {
+        // The right operand is only evaluated if the left one does not
+        // decide the result, which becomes a phi in the joining block.
+        long operator = expression.operatorPosition;
+        boolean isOr = (SourcePosition.getType(operator) == TokenType.OR);
+        Instruction left = emit(Opcode.TEST, List.of(lower(expression.left)), null, operator);
+        Instruction decided = emitConstant(isOr);
+        BasicBlock decidedBlock = state.block;
+
+        BasicBlock rightBlock = state.function.createBlock();
+        BasicBlock join = state.function.createBlock();
+        if (isOr) {
+            branch(left, join, rightBlock);
+        }
+        else {
+            branch(left, rightBlock, join);
+        }
+        seal(rightBlock);
+
+        state.block = rightBlock;
+        Instruction right = emit(Opcode.TEST, List.of(lower(expression.right)), null, operator);
+        jump(join);
+        seal(join);
+
+        state.block = join;
+        Instruction phi = state.function.createInstruction(Opcode.PHI, List.of(), null, SourcePosition.NONE);
+        for (BasicBlock predecessor : join.predecessors) {
+            phi.operands.add(predecessor == decidedBlock ? decided : right);
+        }
+        join.phis.add(phi);
+
+        return phi;
+    }
+
+    @Override
+    public Instruction visitUnaryExpression(Expression.Unary expression) {
+        return emit(Opcode.UNARY, List.of(lower(expression.right)), null, expression.operatorPosition);
+    }
+
+    @Override
+    public Instruction visitVariableExpression(Expression.Variable expression) {
+        CaptureAnalyzer.Declaration declaration = analyzer.getReference(expression);
+
+        if (declaration == null || declaration.isGlobal) {
+            return emit(Opcode.LOAD_GLOBAL, List.of(), null, expression.namePosition);
+        }
+        if (declaration.isCaptured) {
+            return emit(Opcode.LOAD_CELL, List.of(getCell(declaration)), null, expression.namePosition);
+        }
+
+        return readVariable(declaration, state.block);
+    }
+
+    /**
+     * Lower a function into a new IR function.
+     *
+     * @param statement The function definition.
+     * @return The IR function.
+     */
+    private IrFunction lowerFunction(Statement.Define statement) {
+        FunctionState enclosing = state;
+        List<CaptureAnalyzer.Declaration> freeVariables = analyzer.getFreeVariables(statement);
+        IrFunction function = new IrFunction(SourcePosition.getLexeme(statement.namePosition, symbols), statement.parameterPositions.length, freeVariables.size());
+        state = new FunctionState(function, enclosing.depth + 1, freeVariables);
+        startFunction();
+
+        for (int i = 0; i < statement.parameterPositions.length; i++) {
+            CaptureAnalyzer.Declaration declaration = analyzer.getParameter(statement, i);
+            declareVariable(declaration);
+            initializeVariable(declaration, emit(Opcode.PARAMETER, List.of(), i, statement.parameterPositions[i]));
+        }
+        lowerStatements(statement.body.statements);
+        finishFunction();
+
+        state = enclosing;
+        enclosing.function.nestedFunctions.add(function);
+
+        return function;
+    }
+
+    /**
+     * Create the entry block of the current function.
+     */
+    private void startFunction() {
+        state.block = state.function.createBlock();
+        seal(state.block);
+    }
+
+    /**
+     * Add the implicit return to the current function and remove
+     * the blocks and phis that turned out to be unnecessary.
+     */
+    private void finishFunction() {
+        // Functions without any return statements implicitly return "empty".
+        lowerReturn(emitConstant(null), SourcePosition.NONE);
+        removeUnreachableBlocks();
+        removeTrivialPhis();
+    }
+
+    /**
+     * Lower one branch of an "if" statement, continuing in a
+     * new block for when the condition is false.
+     *
+     * @param condition The condition.
+     * @param thenBranch The statements when true.
+     * @param location The location of the condition.
+     * @param join The block joining all branches.
+     */
+    private void lowerBranch(Expression condition, Statement thenBranch, long location, BasicBlock join) {
+        Instruction isTrue = emit(Opcode.TEST, List.of(lower(condition)), null, location);
+        BasicBlock thenBlock = state.function.createBlock();
+        BasicBlock otherwiseBlock = state.function.createBlock();
+        branch(isTrue, thenBlock, otherwiseBlock);
+        seal(thenBlock);
+        seal(otherwiseBlock);
+
+        state.block = thenBlock;
+        lower(thenBranch);
+        jump(join);
+
+        state.block = otherwiseBlock;
+    }
+
+    /**
+     * Lower a return, continuing in a new (unreachable) block.
+     *
+     * @param value The returned value.
+     * @param location The location of the return statement.
+     */
+    private void lowerReturn(Instruction value, long location) {
+        emit(Opcode.RETURN, List.of(value), null, location);
+        state.block = state.function.createBlock();
+        seal(state.block);
+    }
+
+    /**
+     * Lower a list of statements.
+     *
+     * @param statements The statements.
+     */
+    private void lowerStatements(List<Statement> statements) {
+        for (Statement statement : statements) {
+            lower(statement);
+        }
+    }
+
+    /**
+     * Lower a statement.
+     *
+     * @param statement The statement.
+     */
+    private void lower(Statement statement) {
+        // Statements are counted (for the statement limit) as the
+        // interpreter of the syntax tree counts them when executed.
+        state.block.statementCount++;
+        statement.accept(this);
+    }
+
+    /**
+     * Lower an expression.
+     *
+     * @param expression The expression.
+     * @return The value of the expression.
+     */
+    private Instruction lower(Expression expression) {
+        return expression.accept(this);
+    }
+
+    /**
+     * Declare a variable before its initial value is known.
+     *
+     * @param declaration The declaration.
+     */
+    private void declareVariable(CaptureAnalyzer.Declaration declaration) {
+        if (declaration.isGlobal) {
+            return;
+        }
+
+        // Until initialized, a local variable is bound to "empty".
+        Instruction value = declaration.isCaptured
+            ? emit(Opcode.NEW_CELL, List.of(), null, declaration.name)
+            : emitConstant(null);
+        writeVariable(declaration, state.block, value);
+    }
+
+    /**
+     * Bind the initial value of a declared variable.
+     *
+     * @param declaration The declaration.
+     * @param value The value.
+     */
+    private void initializeVariable(CaptureAnalyzer.Declaration declaration, Instruction value) {
+        if (declaration.isGlobal) {
+            emit(Opcode.DEFINE_GLOBAL, List.of(value), null, declaration.name);
+        }
+        else if (declaration.isCaptured) {
+            emit(Opcode.STORE_CELL, List.of(getCell(declaration), value), null, declaration.name);
+        }
+        else {
+            writeVariable(declaration, state.block, value);
+        }
+    }
+
+    /**
+     * Get the cell of a captured variable.
+     *
+     * @param declaration The declaration of the variable.
+     * @return The value of the cell.
+     */
+    private Instruction getCell(CaptureAnalyzer.Declaration declaration) {
+        if (declaration.functionDepth == state.depth) {
+            return readVariable(declaration, state.block);
+        }
+
+        int index = state.freeVariables.indexOf(declaration);
+        return emit(Opcode.FREE, List.of(), index, declaration.name);
+    }
+
+    /**
+     * Bind a value to a local variable in a block.
+     *
+     * @param declaration The declaration of the variable.
+     * @param block The block.
+     * @param value The value.
+     */
+    private void writeVariable(CaptureAnalyzer.Declaration declaration, BasicBlock block, Instruction value) {
+        state.definitions.computeIfAbsent(declaration, key -> new HashMap<>()).put(block, value);
+    }
+
+    /**
+     * Read the value bound to a local variable in a block.
+     *
+     * @param declaration The declaration of the variable.
+     * @param block The block.
+     * @return The value.
+     */
+    private Instruction readVariable(CaptureAnalyzer.Declaration declaration, BasicBlock block) {
+        Map<BasicBlock, Instruction> definitions = state.definitions.get(declaration);
+        if (definitions != null && definitions.containsKey(block)) {
+            return definitions.get(block);
+        }
+
+        // Look in the predecessors, placing a phi where they join.
+        Instruction value;
+        if (!block.isSealed) {
+            value = createPhi(block);
+            state.incompletePhis.computeIfAbsent(block, key -> new HashMap<>()).put(declaration, value);
+        }
+        else if (block.predecessors.size() == 1) {
+            value = readVariable(declaration, block.predecessors.get(0));
+        }
+        else if (block.predecessors.isEmpty()) {
+            // Only unreachable blocks lack predecessors.
+            value = state.function.createInstruction(Opcode.CONSTANT, List.of(), null, SourcePosition.NONE);
+            block.instructions.add(0, value);
+        }
+        else {
+            // Bind the phi before reading the predecessors to break cycles.
+            value = createPhi(block);
+            writeVariable(declaration, block, value);
+            addPhiOperands(declaration, value, block);
+        }
+        writeVariable(declaration, block, value);
+
+        return value;
+    }
+
+    /**
+     * Create an empty phi at the start of a block.
+     *
+     * @param block The block.
+     * @return The phi.
+     */
+    private Instruction createPhi(BasicBlock block) {
+        Instruction phi = state.function.createInstruction(Opcode.PHI, List.of(), null, SourcePosition.NONE);
+        block.phis.add(phi);
+
+        return phi;
+    }
+
+    /**
+     * Add the values of a variable at the end of each predecessor to a phi.
+     *
+     * @param declaration The declaration of the variable.
+     * @param phi The phi.
+     * @param block The block of the phi.
+     */
+    private void addPhiOperands(CaptureAnalyzer.Declaration declaration, Instruction phi, BasicBlock block) {
+        for (BasicBlock predecessor : block.predecessors) {
+            phi.operands.add(readVariable(declaration, predecessor));
+        }
+    }
+
+    /**
+     * Mark that all predecessors of a block are known and
+     * complete the phis created before then.
+     *
+     * @param block The block.
+     */
+    private void seal(BasicBlock block) {
+        Map<CaptureAnalyzer.Declaration, Instruction> phis = state.incompletePhis.remove(block);
+        if (phis != null) {
+            for (Map.Entry<CaptureAnalyzer.Declaration, Instruction> entry : phis.entrySet()) {
+                addPhiOperands(entry.getKey(), entry.getValue(), block);
+            }
+        }
+
+        block.isSealed = true;
+    }
+
+    /**
+     * Remove the blocks that cannot be reached from the entry block.
+     */
+    private void removeUnreachableBlocks() {
+        List<BasicBlock> blocks = state.function.blocks;
+        Set<BasicBlock> reachable = new HashSet<>();
+        List<BasicBlock> pending = new ArrayList<>(List.of(state.function.getEntry()));
+        while (!pending.isEmpty()) {
+            BasicBlock block = pending.remove(pending.size() - 1);
+            if (reachable.add(block) && block.isTerminated()) {
+                BasicBlock[] targets = block.instructions.get(block.instructions.size() - 1).targets;
+                if (targets != null) {
+                    pending.addAll(Arrays.asList(targets));
+                }
+            }
+        }
+
+        // Remove the edges (and phi operands) from unreachable predecessors.
+        for (BasicBlock block : reachable) {
+            for (int i = block.predecessors.size() - 1; i >= 0; i--) {
+                if (!reachable.contains(block.predecessors.get(i))) {
+                    block.predecessors.remove(i);
+                    for (Instruction phi : block.phis) {
+                        phi.operands.remove(i);
+                    }
+                }
+            }
+        }
+        blocks.removeIf(block -> !reachable.contains(block));
+    }
+
+    /**
+     * Remove the phis whose operands are all the same value (or the phi
+     * itself), and replace all uses of them with that value.
+     */
+    private void removeTrivialPhis() {
+        Map<Instruction, Instruction> replacements = new IdentityHashMap<>();
+        boolean isChanged = true;
+        while (isChanged) {
+            isChanged = false;
+            for (BasicBlock block : state.function.blocks) {
+                for (Instruction phi : block.phis) {
+                    if (replacements.containsKey(phi)) {
+                        continue;
+                    }
+
+                    Set<Instruction> values = new LinkedHashSet<>();
+                    for (Instruction operand : phi.operands) {
+                        Instruction value = replace(operand, replacements);
+                        if (value != phi) {
+                            values.add(value);
+                        }
+                    }
+                    if (values.size() == 1) {
+                        replacements.put(phi, values.iterator().next());
+                        isChanged = true;
+                    }
+                }
+            }
+        }
+
+        for (BasicBlock block : state.function.blocks) {
+            block.phis.removeIf(replacements::containsKey);
+            for (Instruction phi : block.phis) {
+                phi.operands.replaceAll(operand -> replace(operand, replacements));
+            }
+            for (Instruction instruction : block.instructions) {
+                instruction.operands.replaceAll(operand -> replace(operand, replacements));
+            }
+        }
+    }
+
+    /**
+     * Follow the replacements of a value.
+     *
+     * @param value The value.
+     * @param replacements The replaced values mapped to their replacements.
+     * @return The final replacement, or the value itself.
+     */
+    private Instruction replace(Instruction value, Map<Instruction, Instruction> replacements) {
+        while (replacements.containsKey(value)) {
+            value = replacements.get(value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Append an instruction to the current block.
+     *
+     * @param opcode The operation.
+     * @param operands The operands.
+     * @param constant The constant, index, or null.
+     * @param location The position of the nearest token, or SourcePosition.NONE.
+     * @return The instruction.
+     */
+    private Instruction emit(Opcode opcode, List<Instruction> operands, Object constant, long location) {
+        Instruction instruction = state.function.createInstruction(opcode, operands, constant, location);
+        state.block.instructions.add(instruction);
+
+        return instruction;
+    }
+
+    /**
+     * Append a constant to the current block.
+     *
+     * @param value The constant value.
+     * @return The instruction.
+     */
+    private Instruction emitConstant(Object value) {
+        return emit(Opcode.CONSTANT, List.of(), value, SourcePosition.NONE);
+    }
+
+    /**
+     * End the current block with a jump (unless already ended).
+     *
+     * @param target The block to jump to.
+     */
+    private void jump(BasicBlock target) {
+        emitJump(target, SourcePosition.NONE);
+    }
+
+    /**
+     * End the current block of a loop's body with a jump back to its
+     * header. The jump has the loop's location, so the interpreter
+     * can check its limits (e.g. its time) when loops repeat.
+     *
+     * @param header The header of the loop.
+     * @param location The location of the loop.
+     */
+    private void jumpBack(BasicBlock header, long location) {
+        emitJump(header, location);
+    }
+
+    /**
+     * End the current block with a jump (unless already ended).
+     *
+     * @param target The block to jump to.
+     * @param location The location of the loop if jumping back to its header, or SourcePosition.NONE.
+     */
+    private void emitJump(BasicBlock target, long location) {
+        if (state.block.isTerminated()) {
+            return;
+        }
+
+        Instruction jump = emit(Opcode.JUMP, List.of(), null, location);
+        jump.targets = new BasicBlock[]{ target };
+        target.predecessors.add(state.block);
+    }
+
+    /**
+     * End the current block with a conditional branch.
+     *
+     * @param condition The boolean condition.
+     * @param whenTrue The block to branch to when true.
+     * @param whenFalse The block to branch to when false.
+     */
+    private void branch(Instruction condition, BasicBlock whenTrue, BasicBlock whenFalse) {
+        Instruction branch = emit(Opcode.BRANCH, List.of(condition), null, SourcePosition.NONE);
+        branch.targets = new BasicBlock[]{ whenTrue, whenFalse };
+        whenTrue.predecessors.add(state.block);
+        whenFalse.predecessors.add(state.block);
+    }
+}
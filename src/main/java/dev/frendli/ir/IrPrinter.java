@@ -0,0 +1,142 @@
+package dev.frendli.ir;
+
+import dev.frendli.SourcePosition;
+import dev.frendli.Symbols;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The IR printer - creates a readable text dump of an IR program
+ * (used to inspect what the lowering and optimizations produce).
+ */
+public class IrPrinter {
+    /**
+     * The symbol table the program was compiled with (for the names of the globals).
+     */
+    private final Symbols symbols;
+
+    public IrPrinter(Symbols symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Print an IR program.
+     *
+     * @param program The program.
+     * @return The text of each function, nested functions first.
+     */
+    public String print(IrProgram program) {
+        StringBuilder builder = new StringBuilder();
+        printFunction(program.main, builder);
+
+        return builder.toString().stripTrailing();
+    }
+
+    /**
+     * Print a function after its nested functions.
+     *
+     * @param function The function.
+     * @param builder The text printed so far.
+     */
+    private void printFunction(IrFunction function, StringBuilder builder) {
+        for (IrFunction nested : function.nestedFunctions) {
+            printFunction(nested, builder);
+        }
+
+        builder.append("function ").append(function.getName())
+            .append("(parameters: ").append(function.arity)
+            .append(", free: ").append(function.freeVariableCount).append(")\n");
+
+        for (BasicBlock block : function.blocks) {
+            builder.append("  ").append(block.getName());
+            if (!block.predecessors.isEmpty()) {
+                List<String> predecessors = new ArrayList<>();
+                for (BasicBlock predecessor : block.predecessors) {
+                    predecessors.add(predecessor.getName());
+                }
+                builder.append(" <- ").append(String.join(", ", predecessors));
+            }
+            builder.append(":\n");
+
+            for (Instruction phi : block.phis) {
+                printInstruction(phi, builder);
+            }
+            for (Instruction instruction : block.instructions) {
+                printInstruction(instruction, builder);
+            }
+        }
+        builder.append("\n");
+    }
+
+    /**
+     * Print an instruction on a line of its own.
+     *
+     * @param instruction The instruction.
+     * @param builder The text printed so far.
+     */
+    private void printInstruction(Instruction instruction, StringBuilder builder) {
+        builder.append("    ");
+        if (instruction.opcode.hasResult()) {
+            builder.append(instruction.getName()).append(" = ");
+        }
+        builder.append(instruction.opcode.name().toLowerCase());
+
+        List<String> arguments = new ArrayList<>();
+        switch (instruction.opcode) {
+            case CONSTANT:
+                arguments.add(printConstant(instruction.constant));
+                break;
+            case PARAMETER:
+            case FREE:
+                arguments.add(String.valueOf(instruction.constant));
+                break;
+            case BINARY:
+            case UNARY:
+                arguments.add(SourcePosition.getLexeme(instruction.position, symbols));
+                break;
+            case CLOSURE:
+                arguments.add(instruction.function.getName());
+                break;
+            case LOAD_GLOBAL:
+            case DEFINE_GLOBAL:
+            case STORE_GLOBAL:
+                arguments.add(SourcePosition.getLexeme(instruction.position, symbols));
+                break;
+        }
+        for (Instruction operand : instruction.operands) {
+            arguments.add(operand.getName());
+        }
+        if (instruction.targets != null) {
+            for (BasicBlock target : instruction.targets) {
+                arguments.add(target.getName());
+            }
+        }
+
+        if (!arguments.isEmpty()) {
+            builder.append(" ").append(String.join(", ", arguments));
+        }
+        builder.append("\n");
+    }
+
+    /**
+     * Print a constant in the same way as it is written in Frendli.
+     *
+     * @param value The constant value.
+     * @return The text.
+     */
+    private String printConstant(Object value) {
+        if (value == null) {
+            return "empty";
+        }
+        if (value instanceof String) {
+            return "\"" + value + "\"";
+        }
+        if (value instanceof Double) {
+            String text = value.toString();
+            return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+        }
+
+        return value.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package dev.frendli.ir;
+
+/**
+ * A program in the mid-level intermediate representation (IR).
+ */
+public class IrProgram {
+    /**
+     * The function containing the top-level statements.
+     */
+    public final IrFunction main;
+
+    IrProgram(IrFunction main) {
+        this.main = main;
+    }
+}
@@ -0,0 +1,63 @@
+package dev.frendli.ir;
+
+/**
+ * The operation performed by an instruction.
+ */
+public enum Opcode {
+    // Values
+    CONSTANT,
+    PARAMETER,
+    PHI,
+
+    // Operations
+    BINARY,
+    UNARY,
+    TEST,
+    CHECK_TIMES,
+    INCREMENT,
+    BELOW,
+    CALL,
+    CLOSURE,
+
+    // Variables
+    NEW_CELL,
+    LOAD_CELL,
+    STORE_CELL,
+    FREE,
+    LOAD_GLOBAL,
+    DEFINE_GLOBAL,
+    STORE_GLOBAL,
+
+    // Terminators
+    JUMP,
+    BRANCH,
+    RETURN;
+
+    /**
+     * Check if the operation ends a basic block.
+     *
+     * @return Whether it is a terminator.
+     */
+    public boolean isTerminator() {
+        return this == JUMP || this == BRANCH || this == RETURN;
+    }
+
+    /**
+     * Check if the operation produces a value.
+     *
+     * @return Whether it produces a value.
+     */
+    public boolean hasResult() {
+        switch (this) {
+            case STORE_CELL:
+            case DEFINE_GLOBAL:
+            case STORE_GLOBAL:
+            case JUMP:
+            case BRANCH:
+            case RETURN:
+                return false;
+            default:
+                return true;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.stream.Collectors;
 
 public abstract class FrendliTest {
@@ -38,4 +39,11 @@ public abstract class FrendliTest {
     protected final String toAbsolutePath(String sourceFilePath) {
         return new File("src/test/java/tests/" + sourceFilePath).getAbsolutePath();
     }
+
+    protected final String[] toArguments(String sourceFilePath, String... options) {
+        String[] arguments = Arrays.copyOf(options, options.length + 1);
+        arguments[options.length] = toAbsolutePath(sourceFilePath);
+
+        return arguments;
+    }
 }
@@ -25,18 +25,22 @@ public abstract class FrendliTestExpectError extends FrendliTest {
         System.setSecurityManager(originalSecurityManager);
     }
 
-    protected String runExpectComptimeError(String sourceFilePath) {
-        return runExpectError(sourceFilePath, ExitCode.INPUT_DATA_ERROR);
+    protected String runExpectComptimeError(String sourceFilePath, String... options) {
+        return runExpectError(sourceFilePath, ExitCode.INPUT_DATA_ERROR, options);
     }
 
-    protected String runExpectRuntimeError(String sourceFilePath) {
-        return runExpectError(sourceFilePath, ExitCode.INTERNAL_SOFTWARE_ERROR);
+    protected String runExpectRuntimeError(String sourceFilePath, String... options) {
+        return runExpectError(sourceFilePath, ExitCode.INTERNAL_SOFTWARE_ERROR, options);
     }
 
-    private String runExpectError(String sourceFilePath, ExitCode exitCode) {
+    protected String runExpectLimitError(String sourceFilePath, ExitCode exitCode, String... options) {
+        return runExpectError(sourceFilePath, exitCode, options);
+    }
+
+    private String runExpectError(String sourceFilePath, ExitCode exitCode, String... options) {
         assertExits(
             exitCode.getValue(),
-            () -> Frendli.main(new String[]{ toAbsolutePath(sourceFilePath) })
+            () -> Frendli.main(toArguments(sourceFilePath, options))
         );
 
         return readOutput();
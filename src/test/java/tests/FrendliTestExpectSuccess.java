@@ -5,8 +5,8 @@ import dev.frendli.Frendli;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 
 public abstract class FrendliTestExpectSuccess extends FrendliTest {
-    protected String run(String sourceFilePath) {
-        assertDoesNotThrow(() -> Frendli.main(new String[]{ toAbsolutePath(sourceFilePath) }));
+    protected String run(String sourceFilePath, String... options) {
+        assertDoesNotThrow(() -> Frendli.main(toArguments(sourceFilePath, options)));
 
         return readOutput();
     }
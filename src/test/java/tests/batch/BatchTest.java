@@ -0,0 +1,99 @@
+package tests.batch;
+
+import tests.FrendliTestExpectSuccess;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BatchTest {
+    @Nested
+    public class BatchTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itCanRunBatchOfPrograms() {
+            String sourceDirectory = "batch/programs";
+            // The wall time of each program varies between runs.
+            String actual = sortSummaries(run(sourceDirectory, "--batch", "--threads=2"));
+            String expected = """
+                    Program display-greeting.frendli
+                      > Status: 0 (SUCCESS)
+                      > Time: _ ms
+                      > Output:
+                         Howdy
+                      > Diagnostics:
+
+                    Program error-add-number-and-text.frendli
+                      > Status: 70 (INTERNAL_SOFTWARE_ERROR)
+                      > Time: _ ms
+                      > Output:
+                      > Diagnostics:
+                         Error
+                           > Where:
+                              > Line 1 at '+'
+                           > Message:
+                              > The operands must be only numbers or only texts.
+
+                    Program nested/count-to-three.frendli
+                      > Status: 0 (SUCCESS)
+                      > Time: _ ms
+                      > Output:
+                         1
+                         2
+                         3
+                      > Diagnostics:
+
+                    Ran 3 programs: 2 succeeded, 1 failed""";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanRunBatchWithProgramRunningForever() {
+            String sourceDirectory = "batch/time-limited";
+            String actual = sortSummaries(run(sourceDirectory, "--batch", "--max-time=200"));
+            String expected = """
+                    Program display-greeting.frendli
+                      > Status: 0 (SUCCESS)
+                      > Time: _ ms
+                      > Output:
+                         Howdy
+                      > Diagnostics:
+
+                    Program repeat-forever.frendli
+                      > Status: 82 (TIME_LIMIT_ERROR)
+                      > Time: _ ms
+                      > Output:
+                      > Diagnostics:
+                         Error
+                           > Where:
+                              > Line 1 at 'while'
+                           > Message:
+                              > The program has run for longer than it is allowed to (200 milliseconds). Make sure that loops stop repeating.
+
+                    Ran 2 programs: 1 succeeded, 1 failed""";
+            assertEquals(expected, actual);
+        }
+
+        /**
+         * Sort the summaries of the programs by their paths, as they are
+         * output in the order the programs are done, and hide their wall
+         * times, which vary between runs.
+         *
+         * @param output The output of the batch.
+         * @return The sorted summaries.
+         */
+        private String sortSummaries(String output) {
+            List<String> summaries = new ArrayList<>(Arrays.asList(output.replaceAll("Time: \\d+ ms", "Time: _ ms").split("\n\n")));
+            String total = summaries.remove(summaries.size() - 1);
+            Collections.sort(summaries);
+            summaries.add(total);
+
+            return String.join("\n\n", summaries);
+        }
+    }
+}
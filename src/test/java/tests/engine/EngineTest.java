@@ -0,0 +1,334 @@
+package tests.engine;
+
+import dev.frendli.CompiledProgram;
+import dev.frendli.ExitCode;
+import dev.frendli.FrendliContext;
+import dev.frendli.FrendliContextPool;
+import dev.frendli.FrendliEngine;
+import dev.frendli.Logger;
+import dev.frendli.Scheduler;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EngineTest {
+    private final FrendliEngine engine = new FrendliEngine();
+
+    @Nested
+    public class EngineTestExpectSuccess {
+        @Test
+        void itCanRunProgramsInSameContext() {
+            List<String> output = new ArrayList<>();
+            FrendliContext context = engine.createContext(output::add);
+
+            assertEquals(ExitCode.SUCCESS, context.execute("display(send \"Howdy\")\n"));
+            assertEquals(ExitCode.SUCCESS, context.execute("display(send 1 + 2)\n"));
+            assertEquals(List.of("Howdy", "3"), output);
+        }
+
+        @Test
+        void itCanExecuteCompiledProgramAfterProgramOfContext() {
+            List<String> output = new ArrayList<>();
+            FrendliContext context = engine.createContext(output::add);
+            CompiledProgram program = engine.compile("create name = \"compiled\"\ndisplay(send name)\n", output::add);
+
+            // The compiled program has names of its own, so it does not
+            // see the global created by the context's own program.
+            assertEquals(ExitCode.SUCCESS, context.execute("create name = \"own\"\n"));
+            assertEquals(ExitCode.SUCCESS, context.execute(program));
+            assertEquals(List.of("compiled"), output);
+        }
+
+        @Test
+        void itDoesNotInternLiteralsOfProgramsInSameContext() {
+            List<String> output = new ArrayList<>();
+            FrendliContext context = engine.createContext(output::add);
+
+            // Like the lines of an interactive session, each with new literals.
+            assertEquals(ExitCode.SUCCESS, context.execute("display(send \"line\")\n"));
+            int nameCount = context.getNameCount();
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(ExitCode.SUCCESS, context.execute("display(send " + i + " * 2 + 0.5)\ndisplay(send \"line " + i + "\")\n"));
+            }
+            assertEquals(nameCount, context.getNameCount());
+            assertEquals("line 999", output.get(output.size() - 1));
+        }
+
+        @Test
+        void itCanRunContextsInParallel() throws Exception {
+            final int CONTEXT_COUNT = 8;
+            ExecutorService executor = Executors.newFixedThreadPool(CONTEXT_COUNT);
+            try {
+                List<Future<List<String>>> results = new ArrayList<>();
+                for (int i = 0; i < CONTEXT_COUNT; i++) {
+                    String source = """
+                            create total = 0
+                            create count = %d
+                            repeat count times
+                                change total = total + %d
+                            display(send total)
+                            """.formatted(1000 + i, i);
+                    results.add(executor.submit(() -> {
+                        List<String> output = new ArrayList<>();
+                        ExitCode status = engine.createContext(output::add).execute(source);
+                        output.add(status.name());
+                        return output;
+                    }));
+                }
+
+                for (int i = 0; i < CONTEXT_COUNT; i++) {
+                    String total = String.valueOf((1000 + i) * i);
+                    assertEquals(List.of(total, "SUCCESS"), results.get(i).get());
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void itCanExecuteCompiledProgramInParallel() throws Exception {
+            final int CONTEXT_COUNT = 8;
+            CompiledProgram program = engine.compile("""
+                    define fibonacci(accept n)
+                        if n < 2
+                            return with n
+                        return with fibonacci(send n - 1) + fibonacci(send n - 2)
+
+                    create total = 0
+                    create i = 0
+                    repeat 15 times
+                        change total = total + fibonacci(send i)
+                        change i = i + 1
+                    display(send total)
+                    """, message -> {});
+
+            ExecutorService executor = Executors.newFixedThreadPool(CONTEXT_COUNT);
+            try {
+                List<Future<List<String>>> results = new ArrayList<>();
+                for (int i = 0; i < CONTEXT_COUNT; i++) {
+                    results.add(executor.submit(() -> {
+                        List<String> output = new ArrayList<>();
+                        ExitCode status = engine.createContext(output::add).execute(program);
+                        output.add(status.name());
+                        return output;
+                    }));
+                }
+
+                for (Future<List<String>> result : results) {
+                    assertEquals(List.of("986", "SUCCESS"), result.get());
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void itCanRunShortProgramWhileLongProgramTakesTurns() throws Exception {
+            FrendliEngine scheduledEngine = new FrendliEngine();
+            scheduledEngine.setScheduler(new Scheduler(1));
+            CountDownLatch started = new CountDownLatch(1);
+            List<String> longOutput = new ArrayList<>();
+            FrendliContext longContext = scheduledEngine.createContext(message -> {
+                longOutput.add(message);
+                started.countDown();
+            });
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<ExitCode> longStatus = executor.submit(() -> longContext.execute("""
+                        display(send "started")
+                        create i = 0
+                        repeat while i < 5000000
+                            change i = i + 1
+                        display(send i)
+                        """));
+                started.await();
+
+                // The only slot is taken by the long program, which yields
+                // it at the end of its time slice rather than once done.
+                List<String> shortOutput = new ArrayList<>();
+                assertEquals(ExitCode.SUCCESS, scheduledEngine.createContext(shortOutput::add).execute("display(send \"short\")\n"));
+                assertEquals(List.of("short"), shortOutput);
+                assertFalse(longStatus.isDone());
+
+                assertEquals(ExitCode.SUCCESS, longStatus.get());
+                assertEquals(List.of("started", "5000000"), longOutput);
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void itCanRunShortProgramWhileLongProgramWaits() throws Exception {
+            FrendliEngine scheduledEngine = new FrendliEngine();
+            scheduledEngine.setScheduler(new Scheduler(1));
+            scheduledEngine.setMaxMilliseconds(10_000);
+            CountDownLatch started = new CountDownLatch(1);
+            FrendliContext longContext = scheduledEngine.createContext(message -> started.countDown());
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<ExitCode> longStatus = executor.submit(() -> longContext.execute("""
+                        display(send "started")
+                        take(send channel(send 1))
+                        """));
+                started.await();
+
+                // The only slot is released by the long program while
+                // it waits, rather than once it is out of time.
+                List<String> shortOutput = new ArrayList<>();
+                assertTimeout(Duration.ofSeconds(5), () -> scheduledEngine.createContext(shortOutput::add).execute("display(send \"short\")\n"));
+                assertEquals(List.of("short"), shortOutput);
+                assertFalse(longStatus.isDone());
+            }
+            finally {
+                executor.shutdownNow();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+
+        @Test
+        void itCanReuseContextOfPool() {
+            FrendliContextPool pool = new FrendliContextPool(engine, 1);
+            String source = """
+                    create greeting = "Howdy"
+                    display(send greeting)
+                    """;
+
+            // The second program creates the same global in the same (reset) context.
+            List<String> first = new ArrayList<>();
+            List<String> second = new ArrayList<>();
+            assertEquals(ExitCode.SUCCESS, pool.execute(source, first::add, first::add));
+            assertEquals(ExitCode.SUCCESS, pool.execute(source, second::add, second::add));
+            assertEquals(List.of("Howdy"), first);
+            assertEquals(List.of("Howdy"), second);
+        }
+
+        @Test
+        void itStopsTasksOfProgramBeforeReusingContextOfPool() {
+            FrendliContextPool pool = new FrendliContextPool(engine, 1);
+            String source = """
+                    define chatter()
+                        repeat while true
+                            display(send "chatter")
+
+                    create task = start(send chatter)
+                    """;
+
+            // The task never waited for is stopped once its program is done.
+            List<String> first = Collections.synchronizedList(new ArrayList<>());
+            List<String> second = new ArrayList<>();
+            assertEquals(ExitCode.SUCCESS, pool.execute(source, first::add, first::add));
+            int firstSize = first.size();
+            assertEquals(ExitCode.SUCCESS, pool.execute("display(send \"second\")\n", second::add, second::add));
+            assertEquals(firstSize, first.size());
+            assertEquals(List.of("second"), second);
+        }
+
+        @Test
+        void itCanRunProgramsInPoolInParallel() throws Exception {
+            final int THREAD_COUNT = 8;
+            final int RUN_COUNT = 50;
+            FrendliContextPool pool = new FrendliContextPool(engine, 4);
+            ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+            try {
+                List<Future<List<String>>> results = new ArrayList<>();
+                for (int i = 0; i < THREAD_COUNT * RUN_COUNT; i++) {
+                    String source = """
+                            create total = %d
+                            change total = total + 1
+                            display(send total)
+                            """.formatted(i);
+                    results.add(executor.submit(() -> {
+                        List<String> output = new ArrayList<>();
+                        ExitCode status = pool.execute(source, output::add, output::add);
+                        output.add(status.name());
+                        return output;
+                    }));
+                }
+
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals(List.of(String.valueOf(i + 1), "SUCCESS"), results.get(i).get());
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Nested
+    public class EngineTestExpectError {
+        @Test
+        void itReturnsStatusOfCompileTimeError() {
+            Logger ignored = message -> {};
+            FrendliContext context = engine.createContext(ignored);
+
+            assertEquals(ExitCode.INPUT_DATA_ERROR, context.execute("display(send undefined)\n"));
+            assertEquals(ExitCode.SUCCESS, context.execute("display(send 1)\n"));
+        }
+
+        @Test
+        void itCannotCompileProgramWithCompileTimeError() {
+            List<String> errors = new ArrayList<>();
+
+            assertNull(engine.compile("display(send undefined)\n", errors::add));
+            assertEquals(1, errors.size());
+        }
+
+        @Test
+        void itReturnsStatusOfRuntimeError() {
+            List<String> output = new ArrayList<>();
+            FrendliContext context = engine.createContext(output::add);
+
+            assertEquals(ExitCode.INTERNAL_SOFTWARE_ERROR, context.execute("display(send 1 + \"one\")\n"));
+            assertEquals(1, output.size());
+        }
+
+        @Test
+        void itCannotRunProgramInterruptedByHost() throws Exception {
+            List<String> errors = new ArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            FrendliContext context = engine.createContext(message -> started.countDown(), errors::add);
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<ExitCode> status = executor.submit(() -> context.execute("""
+                        display(send "started")
+                        repeat while true
+                            display
+                        """));
+                started.await();
+                // Interrupts the thread running the program.
+                status.cancel(true);
+                executor.shutdown();
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+
+                assertEquals(1, errors.size());
+                assertTrue(errors.get(0).contains("The program was stopped before it was done."));
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -22,6 +22,18 @@ public class ConcatenateTest {
                     """.trim();
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCanConcatenateTextsInLoop() {
+            String sourceFile = "expressions/concatenate/concatenate-texts-in-loop.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    true
+                    false
+                    true
+                    ***********************************************************************b""";
+            assertEquals(expected, actual);
+        }
     }
 
     @Nested
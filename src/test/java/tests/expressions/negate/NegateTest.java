@@ -34,6 +34,17 @@ public class NegateTest {
                     """.trim();
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCanNegateZero() {
+            String sourceFile = "expressions/negate/negate-zero.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    -0
+                    0
+                    """.trim();
+            assertEquals(expected, actual);
+        }
     }
 
     @Nested
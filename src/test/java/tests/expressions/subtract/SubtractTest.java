@@ -82,5 +82,34 @@ public class SubtractTest {
                     """;
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCannotSubtractVariableChangedInLoop() {
+            String sourceFile = "expressions/subtract/error-subtract-variable-changed-in-loop.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    0
+                    Error
+                      > Where:
+                         > Line 4 at '-'
+                      > Message:
+                         > The operands must be numbers.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotSubtractVariableChangedByFunction() {
+            String sourceFile = "expressions/subtract/error-subtract-variable-changed-by-function.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 6 at '-'
+                      > Message:
+                         > The operands must be numbers.
+                    """;
+            assertEquals(expected, actual);
+        }
     }
 }
@@ -0,0 +1,158 @@
+package tests.ir;
+
+import tests.FrendliTestExpectSuccess;
+import tests.FrendliTestExpectError;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class IrTest {
+    @Nested
+    public class IrTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itExecutesLocalVariablesInLoops() {
+            String sourceFile = "ir/execute-local-variables-in-loops.frendli";
+            String actual = run(sourceFile, "--ir");
+            String expected = "112";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itExecutesClosureChangingCapturedVariable() {
+            String sourceFile = "ir/execute-closure-changing-captured-variable.frendli";
+            String actual = run(sourceFile, "--ir");
+            String expected = "3";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itExecutesRecursiveFunction() {
+            String sourceFile = "ir/execute-recursive-function.frendli";
+            String actual = run(sourceFile, "--ir");
+            String expected = """
+                    55
+                    aaa
+                    true""";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itDumpsIrInsteadOfExecuting() {
+            String sourceFile = "ir/dump-ir.frendli";
+            String actual = run(sourceFile, "--dump-ir");
+            String expected = """
+                    function main(parameters: 0, free: 0)
+                      block0:
+                        v0 = constant 3
+                        define_global count, v0
+                        v2 = constant 0
+                        define_global total, v2
+                        v4 = load_global count
+                        v5 = check_times v4
+                        v6 = constant 0
+                        jump block1
+                      block1 <- block0, block2:
+                        v8 = phi v6, v15
+                        v9 = below v8, v5
+                        branch v9, block2, block3
+                      block2 <- block1:
+                        v11 = load_global total
+                        v12 = constant 1
+                        v13 = binary +, v11, v12
+                        store_global total, v13
+                        v15 = increment v8
+                        jump block1
+                      block3 <- block1:
+                        v17 = constant empty
+                        return v17""";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itDumpsPureCallWithConstantArgumentsAsConstant() {
+            String sourceFile = "ir/dump-ir-pure-call.frendli";
+            String actual = run(sourceFile, "--dump-ir");
+            String expected = """
+                    function square(parameters: 1, free: 0)
+                      block0:
+                        v0 = constant empty
+                        v1 = parameter 0
+                        v2 = binary *, v1, v1
+                        return v2
+
+                    function main(parameters: 0, free: 0)
+                      block0:
+                        v0 = closure square
+                        define_global square, v0
+                        v2 = constant 144
+                        define_global area, v2
+                        v4 = constant empty
+                        return v4""";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itDumpsPureCallsOverBudgetOfProgramAsCalls() {
+            String sourceFile = "ir/dump-ir-pure-calls-over-budget.frendli";
+            String actual = run(sourceFile, "--dump-ir");
+            String expected = """
+                    function spin(parameters: 1, free: 0)
+                      block0:
+                        v0 = constant empty
+                        v1 = parameter 0
+                        v2 = constant empty
+                        v3 = constant 0
+                        v4 = check_times v1
+                        v5 = constant 0
+                        jump block1
+                      block1 <- block0, block2:
+                        v7 = phi v5, v13
+                        v10 = phi v3, v12
+                        v8 = below v7, v4
+                        branch v8, block2, block3
+                      block2 <- block1:
+                        v11 = constant 1
+                        v12 = binary +, v10, v11
+                        v13 = increment v7
+                        jump block1
+                      block3 <- block1:
+                        return v10
+
+                    function main(parameters: 0, free: 0)
+                      block0:
+                        v0 = closure spin
+                        define_global spin, v0
+                        v2 = constant 600000
+                        define_global first, v2
+                        v4 = load_global spin
+                        v5 = constant 700000
+                        v6 = call v4, v5
+                        define_global second, v6
+                        v8 = constant 600000
+                        define_global third, v8
+                        v10 = constant empty
+                        return v10""";
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Nested
+    public class IrTestExpectError extends FrendliTestExpectError {
+        @Test
+        void itReportsSameRuntimeErrorsAsInterpreter() {
+            String sourceFile = "ir/error-add-number-and-text.frendli";
+            String actual = runExpectRuntimeError(sourceFile, "--ir");
+            String expected = """
+                    3
+                    Error
+                      > Where:
+                         > Line 2 at '+'
+                      > Message:
+                         > The operands must be only numbers or only texts.
+                    """;
+            assertEquals(expected, actual);
+        }
+    }
+}
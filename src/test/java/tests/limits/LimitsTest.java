@@ -0,0 +1,272 @@
+package tests.limits;
+
+import dev.frendli.ExitCode;
+
+import tests.FrendliTestExpectError;
+import tests.FrendliTestExpectSuccess;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LimitsTest {
+    @Nested
+    public class LimitsTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itCanStayWithinAllocationBudget() {
+            String sourceFile = "limits/stay-within-allocation.frendli";
+            String actual = run(sourceFile, "--max-allocation=100000");
+            String expected = "1000";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanStayWithinAllocationBudgetCallingRepeatedly() {
+            // The frames of the calls are pooled, so only their arguments are allocated.
+            String sourceFile = "limits/stay-within-allocation-calling-repeatedly.frendli";
+            String actual = run(sourceFile, "--max-allocation=1000000");
+            String expected = "20000";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanRecurseDeeplyWithIr() {
+            String sourceFile = "limits/recurse-deeply-with-ir.frendli";
+            String actual = run(sourceFile, "--ir");
+            String expected = "50000";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanStayWithinStatementLimit() {
+            String sourceFile = "limits/stay-within-statements.frendli";
+            String actual = run(sourceFile, "--max-statements=1000");
+            String expected = "100";
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Nested
+    public class LimitsTestExpectError extends FrendliTestExpectError {
+        @Test
+        void itCannotExceedAllocationBudgetBuildingText() {
+            String sourceFile = "limits/error-exceed-allocation-building-text.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.ALLOCATION_LIMIT_ERROR, "--max-allocation=100000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at '+'
+                      > Message:
+                         > The program has allocated more memory in total than it is allowed to (100000 bytes).
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedAllocationBudgetCopyingText() {
+            String sourceFile = "limits/error-exceed-allocation-copying-text.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.ALLOCATION_LIMIT_ERROR, "--max-allocation=100000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 10 at '+'
+                      > Message:
+                         > The program has allocated more memory in total than it is allowed to (100000 bytes).
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedAllocationBudgetCreatingClosures() {
+            String sourceFile = "limits/error-exceed-allocation-creating-closures.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.ALLOCATION_LIMIT_ERROR, "--max-allocation=100000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at 'inner'
+                      > Message:
+                         > The program has allocated more memory in total than it is allowed to (100000 bytes).
+                    """;
+            assertEquals(expected, actual);
+        }
+    
+
+        @Test
+        void itCannotExceedCallDepth() {
+            String sourceFile = "limits/error-exceed-call-depth.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.CALL_DEPTH_LIMIT_ERROR, "--max-call-depth=100");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 5 at ')'
+                      > Message:
+                         > The calls are nested deeper than allowed (100 calls). Make sure that recursive definitions stop calling themselves.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedCallDepthWithIr() {
+            String sourceFile = "limits/error-exceed-call-depth.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.CALL_DEPTH_LIMIT_ERROR, "--ir", "--max-call-depth=100");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 5 at ')'
+                      > Message:
+                         > The calls are nested deeper than allowed (100 calls). Make sure that recursive definitions stop calling themselves.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotRecurseInfinitely() {
+            String sourceFile = "limits/error-recurse-infinitely.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.CALL_DEPTH_LIMIT_ERROR);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 3 at ')'
+                      > Message:
+                         > The calls are nested deeper than the stack of the Java runtime allows. Make sure that recursive definitions stop calling themselves.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedTimeLimit() {
+            String sourceFile = "limits/error-exceed-time-repeating-forever.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.TIME_LIMIT_ERROR, "--max-time=200");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 3 at 'while'
+                      > Message:
+                         > The program has run for longer than it is allowed to (200 milliseconds). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedTimeLimitWithIr() {
+            String sourceFile = "limits/error-exceed-time-repeating-forever.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.TIME_LIMIT_ERROR, "--ir", "--max-time=200");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 3 at 'while'
+                      > Message:
+                         > The program has run for longer than it is allowed to (200 milliseconds). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedTimeLimitTakingOutOfEmptyChannel() {
+            String sourceFile = "limits/error-exceed-time-taking-from-empty-channel.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.TIME_LIMIT_ERROR, "--max-time=200");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at ')'
+                      > Message:
+                         > The program has run for longer than it is allowed to (200 milliseconds). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedTaskCount() {
+            String sourceFile = "limits/error-exceed-task-count.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.TASK_LIMIT_ERROR, "--max-tasks=2");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 9 at ')'
+                      > Message:
+                         > The program has started more tasks running at once than it is allowed to (2 tasks). Make sure that tasks are done before starting more.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedStatementLimit() {
+            String sourceFile = "limits/error-exceed-statements-repeating-forever.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.STATEMENT_LIMIT_ERROR, "--max-statements=1000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 3 at 'while'
+                      > Message:
+                         > The program has executed more statements than it is allowed to (1000 statements). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedStatementLimitRepeatingInParallel() {
+            String sourceFile = "limits/error-exceed-statements-repeating-in-parallel.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.STATEMENT_LIMIT_ERROR, "--max-statements=1000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at 'repeat'
+                      > Message:
+                         > The program has executed more statements than it is allowed to (1000 statements). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedStatementLimitWithIr() {
+            String sourceFile = "limits/error-exceed-statements-repeating-forever.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.STATEMENT_LIMIT_ERROR, "--ir", "--max-statements=1000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 3 at 'while'
+                      > Message:
+                         > The program has executed more statements than it is allowed to (1000 statements). Make sure that loops stop repeating.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedAllocationBudgetBuildingTextWithIr() {
+            String sourceFile = "limits/error-exceed-allocation-building-text.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.ALLOCATION_LIMIT_ERROR, "--ir", "--max-allocation=100000");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at '+'
+                      > Message:
+                         > The program has allocated more memory in total than it is allowed to (100000 bytes).
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotExceedOutputLimit() {
+            String sourceFile = "limits/error-exceed-output-displaying-forever.frendli";
+            String actual = runExpectLimitError(sourceFile, ExitCode.OUTPUT_LIMIT_ERROR, "--max-output=20");
+            String expected = """
+                    1
+                    2
+                    3
+                    4
+                    5
+                    6
+                    7
+                    8
+                    9
+                    Error
+                      > Where:
+                         > Line 5 at ')'
+                      > Message:
+                         > The program has displayed more than it is allowed to (20 bytes).
+                    """;
+            assertEquals(expected, actual);
+        }
+    }
+}
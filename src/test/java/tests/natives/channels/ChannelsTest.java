@@ -0,0 +1,95 @@
+package tests.natives.channels;
+
+import tests.FrendliTestExpectError;
+import tests.FrendliTestExpectSuccess;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ChannelsTest {
+    @Nested
+    public class ChannelsTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itCanPassValuesBetweenTasks() {
+            String sourceFile = "natives/channels/pass-values-between-tasks.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    338350
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanCreateChannelHoldingManyValues() {
+            String sourceFile = "natives/channels/create-channel-holding-many-values.frendli";
+            String actual = run(sourceFile);
+            String expected = "210";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanTakeInOrderPut() {
+            String sourceFile = "natives/channels/take-in-order-put.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    first
+                    2
+                    empty
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Nested
+    public class ChannelsTestExpectError extends FrendliTestExpectError {
+        @Test
+        void itCannotTakeOutOfNonChannel() {
+            String sourceFile = "natives/channels/error-take-out-of-non-channel.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at ')'
+                      > Message:
+                         > You can only take out of a channel (created with 'channel').
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotCreateChannelHoldingZeroValues() {
+            String sourceFile = "natives/channels/error-create-channel-holding-zero-values.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at ')'
+                      > Message:
+                         > The number of values a channel holds must be a positive integer.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotCreateChannelWithIr() {
+            String sourceFile = "natives/channels/error-create-channel-with-ir.frendli";
+            String actual = runExpectComptimeError(sourceFile, "--ir");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at 'channel'
+                      > Message:
+                         > 'channel' cannot be used when executing the IR, since the IR interpreter runs all definitions on one thread.
+
+                    Error
+                      > Where:
+                         > Line 3 at 'put'
+                      > Message:
+                         > 'put' cannot be used when executing the IR, since the IR interpreter runs all definitions on one thread.
+                    """;
+            assertEquals(expected, actual);
+        }
+    }
+}
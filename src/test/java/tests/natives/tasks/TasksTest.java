@@ -0,0 +1,133 @@
+package tests.natives.tasks;
+
+import tests.FrendliTestExpectError;
+import tests.FrendliTestExpectSuccess;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TasksTest {
+    @Nested
+    public class TasksTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itCanStartAndWaitForTasks() {
+            String sourceFile = "natives/tasks/start-and-wait-for-tasks.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    500500
+                    5050
+                    500500
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanStartClosureOfArguments() {
+            String sourceFile = "natives/tasks/start-closure-of-arguments.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    144
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanReadGlobalsWhileCreatingGlobals() {
+            String sourceFile = "natives/tasks/read-globals-while-creating-globals.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    20000
+                    20000
+                    20000
+                    36
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanDisplayWithinTask() {
+            String sourceFile = "natives/tasks/display-within-task.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    from task
+                    empty
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Nested
+    public class TasksTestExpectError extends FrendliTestExpectError {
+        @Test
+        void itCannotStartTaskWithIr() {
+            String sourceFile = "natives/tasks/error-start-with-ir.frendli";
+            String actual = runExpectComptimeError(sourceFile, "--ir");
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 8 at 'start'
+                      > Message:
+                         > 'start' cannot be used when executing the IR, since the IR interpreter runs all definitions on one thread.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotHideErrorWithinTask() {
+            String sourceFile = "natives/tasks/error-within-task.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at '+'
+                      > Message:
+                         > The operands must be only numbers or only texts.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotStartDefinitionWithParameters() {
+            String sourceFile = "natives/tasks/error-start-with-parameters.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 5 at ')'
+                      > Message:
+                         > You can only start a definition without parameters, but it has 1.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotStartDefinitionChangingGlobal() {
+            String sourceFile = "natives/tasks/error-start-definition-changing-global.frendli";
+            String actual = runExpectComptimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 7 at 'increment'
+                      > Message:
+                         > You cannot start 'increment' since it changes what was created outside of it. A task may only change what it creates itself.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotWaitForNonTask() {
+            String sourceFile = "natives/tasks/error-wait-for-non-task.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at ')'
+                      > Message:
+                         > You can only wait for a task (created with 'start').
+                    """;
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -35,6 +35,19 @@ public class BlockTest {
             assertEquals(expected, actual);
         }
 
+        @Test
+        void itCanShadowVariableInNestedBlocks() {
+            String sourceFile = "scope/block/shadow-variable-in-nested-blocks.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    level3 level3
+                    level1 global
+                    level1 level2
+                    global global
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
         @Test
         void itCanShadowParameterViaAnotherParameter() {
             String sourceFile = "scope/block/shadow-parameter-via-parameter.frendli";
@@ -57,6 +70,26 @@ public class BlockTest {
                     """.trim();
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCanAccessManyLocalVariablesInBlock() {
+            String sourceFile = "scope/block/access-many-local-variables-in-block.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    65
+                    65""";
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanAccessLocalVariablesBeyondFirstHashTable() {
+            String sourceFile = "scope/block/access-local-variables-beyond-first-hash-table.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    230
+                    230""";
+            assertEquals(expected, actual);
+        }
     }
 
     @Nested
@@ -113,6 +113,18 @@ public class DefineTest {
             assertEquals(expected, actual);
         }
 
+        @Test
+        void itCanCallFunctionManyTimesWithLocalVariables() {
+            String sourceFile = "statements/define/call-function-many-times-with-local-variables.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    50
+                    6
+                    200
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
         @Test
         void itDoesNotExecuteBodyWhenDefiningFunction() {
             String sourceFile = "statements/define/define-function-no-body-execution.frendli";
@@ -140,6 +152,19 @@ public class DefineTest {
                     """.trim();
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCanCallPureFunctionWithConstantArguments() {
+            String sourceFile = "statements/define/call-pure-function-with-constant-arguments.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    65536
+                    256
+                    negative
+                    positive number
+                    1000000""";
+            assertEquals(expected, actual);
+        }
     }
 
     @Nested
@@ -241,5 +266,20 @@ public class DefineTest {
                     """;
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itReportsRuntimeErrorOfPureFunctionWithConstantArguments() {
+            String sourceFile = "statements/define/error-call-pure-function-causing-runtime-error.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    2
+                    Error
+                      > Where:
+                         > Line 2 at '/'
+                      > Message:
+                         > Division by zero is not allowed. The operand must be a non-zero number.
+                    """;
+            assertEquals(expected, actual);
+        }
     }
 }
@@ -0,0 +1,118 @@
+package tests.statements.repeat_parallel;
+
+import tests.FrendliTestExpectError;
+import tests.FrendliTestExpectSuccess;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RepeatParallelTest {
+    @Nested
+    public class RepeatParallelTestExpectSuccess extends FrendliTestExpectSuccess {
+        @Test
+        void itCanRepeatParallelTimes() {
+            String sourceFile = "statements/repeat_parallel/repeat-parallel-times.frendli";
+            String actual = run(sourceFile);
+            String expected = "500500\n".repeat(16).trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanChangeVariableCreatedWithinParallel() {
+            // The order of the repetitions' output is not defined,
+            // but each displays the same value before the last line.
+            String sourceFile = "statements/repeat_parallel/change-variable-created-within.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    11
+                    11
+                    11
+                    10
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanCallDefinitionChangingOwnVariablesWithinParallel() {
+            String sourceFile = "statements/repeat_parallel/call-definition-changing-own-variables.frendli";
+            String actual = run(sourceFile);
+            String expected = "30";
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Nested
+    public class RepeatParallelTestExpectError extends FrendliTestExpectError {
+        @Test
+        void itCannotChangeOuterVariableWithinParallel() {
+            String sourceFile = "statements/repeat_parallel/error-change-outer-variable.frendli";
+            String actual = runExpectComptimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at 'total'
+                      > Message:
+                         > You cannot change 'total' within 'repeat parallel' since it was created outside of it. Each repetition may only change what it creates itself.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotCallDefinitionChangingOuterVariableWithinParallel() {
+            String sourceFile = "statements/repeat_parallel/error-call-definition-changing-outer-variable.frendli";
+            String actual = runExpectComptimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 12 at 'addTwice'
+                      > Message:
+                         > You cannot call 'addTwice' within 'repeat parallel' since it changes what was created outside of it. Each repetition may only change what it creates itself.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotReturnWithinParallel() {
+            String sourceFile = "statements/repeat_parallel/error-return-within-parallel.frendli";
+            String actual = runExpectComptimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at 'with'
+                      > Message:
+                         > You cannot return from within 'repeat parallel'.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotRepeatParallelNonIntegerTimes() {
+            String sourceFile = "statements/repeat_parallel/error-repeat-parallel-non-integer-times.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 2 at 'repeat'
+                      > Message:
+                         > The number must be a positive integer.
+                    """;
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCannotAddNumberAndTextWithinParallel() {
+            String sourceFile = "statements/repeat_parallel/error-add-number-and-text-within-parallel.frendli";
+            String actual = runExpectRuntimeError(sourceFile);
+            String expected = """
+                    Error
+                      > Where:
+                         > Line 4 at '+'
+                      > Message:
+                         > The operands must be only numbers or only texts.
+                    """;
+            assertEquals(expected, actual);
+        }
+    }
+}
@@ -69,6 +69,66 @@ public class RepeatTimesTest {
                     """.trim();
             assertEquals(expected, actual);
         }
+
+        @Test
+        void itCanRepeatManyTimesWithNestedLoop() {
+            String sourceFile = "statements/repeat_times/repeat-many-times-with-nested-loop.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    **********
+                    **********
+                    **********
+                    30
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanCaptureNewScopeEachIteration() {
+            String sourceFile = "statements/repeat_times/capture-new-scope-each-iteration.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    1
+                    2
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanUnrollBodyReferringToOuterScopes() {
+            String sourceFile = "statements/repeat_times/unroll-body-referring-to-outer-scopes.frendli";
+            String actual = run(sourceFile);
+            String expected = """
+                    20
+                    captured
+                    20
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanRunBodyReferringToOuterScopesWithoutUnrolling() {
+            String sourceFile = "statements/repeat_times/unroll-body-referring-to-outer-scopes.frendli";
+            String actual = run(sourceFile, "--max-unrolled-times=0", "--unroll-factor=1");
+            String expected = """
+                    20
+                    captured
+                    20
+                    """.trim();
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void itCanUnrollBodyReferringToOuterScopesByFactor() {
+            String sourceFile = "statements/repeat_times/unroll-body-referring-to-outer-scopes.frendli";
+            String actual = run(sourceFile, "--max-unrolled-times=2", "--unroll-factor=3");
+            String expected = """
+                    20
+                    captured
+                    20
+                    """.trim();
+            assertEquals(expected, actual);
+        }
     }
 
     @Nested